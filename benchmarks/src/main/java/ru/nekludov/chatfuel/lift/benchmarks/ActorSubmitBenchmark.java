@@ -0,0 +1,123 @@
+package ru.nekludov.chatfuel.lift.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.nekludov.chatfuel.lift.jdk.LiftActor;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+import ru.nekludov.chatfuel.lift.sim.VirtualTimeScheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка выполнения команды лифта при одновременных нажатиях из нескольких потоков:
+ * очередь актора против прежнего synchronized на объекте лифта.
+ * На обоих путях выполняется одна и та же команда: нажатие кнопки в лифте и одно событие таймера,
+ * и на обоих путях измеряется время от отправки команды до ее выполнения. Поток, отправивший команду актору,
+ * ждет ее выполнения, поэтому в очереди не больше команд, чем потоков, - очередь не растет,
+ * и измеряется конкуренция за очередь и передача команды, а не работа сборщика мусора с накопившимися командами.
+ * Режим SampleTime дает перцентили (p99, p99.9) задержки.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ActorSubmitBenchmark
+{
+
+    private static final int FLOORS = 20;
+
+    /**
+     * Лифт в виртуальном времени: команда нажимает очередную кнопку и выполняет одно событие таймера
+     * (как прежний контроллер, где и нажатия, и таймеры шли под монитором лифта).
+     */
+    static final class LiftCommand implements Runnable
+    {
+        final VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        final Lift lift = new Lift(new BenchmarkConfig(FLOORS), MoveStrategies.SIMPLE_NEAREST, scheduler,
+                new CountingListener());
+        int next;
+
+        @Override
+        public void run()
+        {
+            lift.go(1 + next++ % FLOORS);
+            scheduler.runNext();
+        }
+    }
+
+    /**
+     * Команда актору от одного потока: выполняет команду лифта и отмечает, что она выполнена.
+     */
+    static final class Completion implements Runnable
+    {
+        LiftCommand command;
+        volatile boolean done;
+
+        @Override
+        public void run()
+        {
+            command.run();
+            done = true;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Producer
+    {
+        final Completion completion = new Completion();
+    }
+
+    LiftActor actor;
+    // команды актора выполняются только в его потоке
+    final LiftCommand actorCommand = new LiftCommand();
+    final LiftCommand lockedCommand = new LiftCommand();
+
+    @Setup
+    public void setUp()
+    {
+        actor = new LiftActor("bench-actor", Throwable::printStackTrace);
+        actor.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException
+    {
+        actor.stop();
+    }
+
+    @Benchmark
+    public void actorSubmit(Producer producer)
+    {
+        Completion completion = producer.completion;
+        completion.command = actorCommand;
+        completion.done = false;
+        actor.submit(completion);
+        while (!completion.done) {
+            // уступаем процессор актору: потоков-отправителей может быть больше, чем ядер
+            Thread.yield();
+        }
+    }
+
+    @Benchmark
+    public void synchronizedCall()
+    {
+        synchronized (lockedCommand) {
+            lockedCommand.run();
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package ru.nekludov.chatfuel.lift.benchmarks;
+
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+/**
+ * Параметры лифта для бенчмарков: по умолчанию этаж проезжается за 3 единицы времени, двери открыты 2 единицы.
+ */
+class BenchmarkConfig implements Lift.Config
+{
+
+    private final int floorCount;
+    private final int floorHeight;
+    private final int liftSpeed;
+    private final long openCloseTime;
+    private final boolean express;
+    private final int capacity;
+
+    BenchmarkConfig(int floorCount)
+    {
+        this(floorCount, 300, 100, 2);
+    }
+
+    BenchmarkConfig(int floorCount, boolean express)
+    {
+        this(floorCount, 300, 100, 2, express);
+    }
+
+    BenchmarkConfig(int floorCount, int floorHeight, int liftSpeed, long openCloseTime)
+    {
+        this(floorCount, floorHeight, liftSpeed, openCloseTime, false);
+    }
+
+    BenchmarkConfig(int floorCount, int floorHeight, int liftSpeed, long openCloseTime, boolean express)
+    {
+        this(floorCount, floorHeight, liftSpeed, openCloseTime, express, Integer.MAX_VALUE);
+    }
+
+    BenchmarkConfig(int floorCount, int floorHeight, int liftSpeed, long openCloseTime, boolean express,
+                    int capacity)
+    {
+        this.floorCount = floorCount;
+        this.floorHeight = floorHeight;
+        this.liftSpeed = liftSpeed;
+        this.openCloseTime = openCloseTime;
+        this.express = express;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public int getFloorCount()
+    {
+        return floorCount;
+    }
+
+    @Override
+    public int getFloorHeight()
+    {
+        return floorHeight;
+    }
+
+    @Override
+    public int getLiftSpeed()
+    {
+        return liftSpeed;
+    }
+
+    @Override
+    public long getOpenCloseTime()
+    {
+        return openCloseTime;
+    }
+
+    @Override
+    public boolean isExpress()
+    {
+        return express;
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public String toString()
+    {
+        return floorCount + " floors, floor time " + floorHeight / liftSpeed + ", door time " + openCloseTime;
+    }
+
+}
@@ -0,0 +1,111 @@
+package ru.nekludov.chatfuel.lift.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.nekludov.chatfuel.lift.model.ButtonPresses;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+import ru.nekludov.chatfuel.lift.sim.VirtualTimeScheduler;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пачка нажатий с повторами (толпа в час пик жмет одни и те же кнопки): по одному call/go на нажатие
+ * против одной {@link Lift#press(ButtonPresses)} на пачку. Пачка нажимается, пока лифт стоит,
+ * затем лифт отрабатывает все вызовы в виртуальном времени.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ButtonPressBenchmark
+{
+
+    private static final int FLOORS = 20;
+    private static final int BATCHES = 256;
+
+    // нажатий в пачке (различных кнопок в ней не больше distinct)
+    @Param({"8", "64"})
+    int presses;
+
+    @Param({"4"})
+    int distinct;
+
+    VirtualTimeScheduler scheduler;
+    CountingListener listener;
+    Lift lift;
+    ButtonPresses batch;
+
+    int[][] floors = new int[BATCHES][];
+    boolean[][] inside = new boolean[BATCHES][];
+    int next;
+
+    @Setup
+    public void setUp()
+    {
+        scheduler = new VirtualTimeScheduler();
+        listener = new CountingListener();
+        lift = new Lift(new BenchmarkConfig(FLOORS), MoveStrategies.LOOK, scheduler, listener);
+        batch = new ButtonPresses(1, FLOORS);
+        Random random = new Random(42);
+        for (int b = 0; b < BATCHES; b++) {
+            int[] buttons = new int[distinct];
+            for (int i = 0; i < distinct; i++) {
+                buttons[i] = 1 + random.nextInt(FLOORS);
+            }
+            floors[b] = new int[presses];
+            inside[b] = new boolean[presses];
+            for (int i = 0; i < presses; i++) {
+                int button = random.nextInt(distinct);
+                floors[b][i] = buttons[button];
+                inside[b][i] = (button & 1) == 0;
+            }
+        }
+    }
+
+    @Benchmark
+    public long perPress()
+    {
+        int b = next++ & (BATCHES - 1);
+        for (int i = 0; i < presses; i++) {
+            if (inside[b][i]) {
+                lift.go(floors[b][i]);
+            }
+            else {
+                lift.call(floors[b][i]);
+            }
+        }
+        scheduler.runAll();
+        return listener.floorsEntered;
+    }
+
+    @Benchmark
+    public long batched()
+    {
+        int b = next++ & (BATCHES - 1);
+        for (int i = 0; i < presses; i++) {
+            if (inside[b][i]) {
+                batch.go(floors[b][i]);
+            }
+            else {
+                batch.call(floors[b][i], Lift.Direction.NONE);
+            }
+        }
+        lift.press(batch);
+        scheduler.runAll();
+        return listener.floorsEntered;
+    }
+
+}
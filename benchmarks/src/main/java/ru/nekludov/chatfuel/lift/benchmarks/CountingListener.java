@@ -0,0 +1,32 @@
+package ru.nekludov.chatfuel.lift.benchmarks;
+
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+/**
+ * Слушатель, который только считает события (чтобы JIT не выбросил работу лифта).
+ */
+class CountingListener implements Lift.Listener
+{
+
+    long doorOpened;
+    long doorClosed;
+    long floorsEntered;
+
+    @Override
+    public void onDoorOpened()
+    {
+        doorOpened++;
+    }
+
+    @Override
+    public void onDoorClosed()
+    {
+        doorClosed++;
+    }
+
+    @Override
+    public void onEnterFloor(int floor)
+    {
+        floorsEntered++;
+    }
+}
@@ -0,0 +1,59 @@
+package ru.nekludov.chatfuel.lift.benchmarks;
+
+import ru.nekludov.chatfuel.lift.model.EnergyModel;
+import ru.nekludov.chatfuel.lift.model.EnergySavingStrategy;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+
+/**
+ * Расход энергии на обслуженный запрос (по {@link EnergyModel#DEFAULT}) в сравнении с SIMPLE_NEAREST:
+ * пуски, развороты, проеханные этажи и циклы дверей на пассажира и цена в ожидании.
+ * {@link EnergySavingStrategy} - LOOK, который, стоя без дела, ждет до HOLD единиц времени,
+ * пока не наберется BATCH этажей с запросами.
+ *
+ * Запуск: java -cp target/benchmarks.jar ru.nekludov.chatfuel.lift.benchmarks.EnergyComparison [этажей] [пассажиров]
+ */
+public class EnergyComparison
+{
+
+    private static final double[] DENSITIES = {0.005, 0.01, 0.02, 0.05};
+
+    private static final int BATCH = 3;
+
+    public static void main(String[] args)
+    {
+        int floors = args.length > 0 ? Integer.valueOf(args[0]) : 20;
+        int passengers = args.length > 1 ? Integer.valueOf(args[1]) : 100000;
+
+        String[] names = {"SIMPLE_NEAREST", "LOOK", "LOOK+hold 10", "LOOK+hold 30"};
+        Lift.MoveStrategy[] strategies = {
+                MoveStrategies.SIMPLE_NEAREST,
+                MoveStrategies.LOOK,
+                new EnergySavingStrategy(MoveStrategies.LOOK, 10, BATCH),
+                new EnergySavingStrategy(MoveStrategies.LOOK, 30, BATCH)};
+        EnergyModel model = EnergyModel.DEFAULT;
+
+        System.out.printf("%d floors, %d passengers, start = 5 floors, door cycle = 0.5 floor%n", floors, passengers);
+        System.out.printf("%-8s %-15s %8s %9s %8s %10s %8s %8s %8s %9s%n", "density", "strategy", "wait", "p99 wait",
+                "starts", "reversals", "floors", "doors", "energy", "vs base");
+        for (double density : DENSITIES) {
+            TrafficSimulation simulation = new TrafficSimulation(floors, passengers, density, 42);
+            double base = 0;
+            for (int i = 0; i < strategies.length; i++) {
+                simulation.run(strategies[i]);
+                double served = simulation.served;
+                double energy = model.energy(simulation.starts, simulation.floorsTravelled, simulation.doorCycles)
+                        / served;
+                if (i == 0) {
+                    base = energy;
+                }
+                System.out.printf("%-8s %-15s %8.1f %9d %8.3f %10.3f %8.3f %8.3f %8.3f %8.1f%%%n", density, names[i],
+                        simulation.meanWait(), simulation.waits.getValueAtPercentile(99),
+                        simulation.starts / served, simulation.reversals / served,
+                        simulation.floorsTravelled / served, simulation.doorCycles / served,
+                        energy, 100 * (energy / base - 1));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+package ru.nekludov.chatfuel.lift.benchmarks;
+
+/**
+ * Пропускная способность группы лифтов в утренний пик: обычные вызовы против вызовов с этажом назначения
+ * (см. {@link UpPeakSimulation}). С ростом интенсивности потока ожидание сначала растет медленно, а после
+ * предела пропускной способности - неограниченно; предел виден по строке, где перевезенных за 1000 единиц
+ * времени становится меньше приходящих.
+ *
+ * Запуск: java -cp target/benchmarks.jar ru.nekludov.chatfuel.lift.benchmarks.HandlingCapacity
+ * [этажей] [кабин] [вместимость] [пассажиров]
+ */
+public class HandlingCapacity
+{
+
+    private static final double[] DENSITIES = {0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.8};
+
+    public static void main(String[] args)
+    {
+        int floors = args.length > 0 ? Integer.valueOf(args[0]) : 20;
+        int cars = args.length > 1 ? Integer.valueOf(args[1]) : 4;
+        int capacity = args.length > 2 ? Integer.valueOf(args[2]) : 12;
+        int passengers = args.length > 3 ? Integer.valueOf(args[3]) : 20000;
+
+        BenchmarkConfig cfg = new BenchmarkConfig(floors, 300, 100, 2, false, capacity);
+        System.out.printf("up-peak: %s, %d cars of %d passengers, %d passengers%n", cfg, cars, capacity, passengers);
+        System.out.printf("%-8s %-12s %10s %10s %10s %12s %10s%n",
+                "density", "calls", "wait", "p99 wait", "journey", "throughput", "stops");
+        for (double density : DENSITIES) {
+            UpPeakSimulation simulation = new UpPeakSimulation(cfg, cars, passengers, density, 42);
+            for (boolean destinationDispatch : new boolean[]{false, true}) {
+                simulation.run(destinationDispatch);
+                System.out.printf("%-8s %-12s %10.1f %10d %10.1f %12.1f %10d%n", density,
+                        destinationDispatch ? "destination" : "hall", simulation.meanWait(),
+                        simulation.waits.getValueAtPercentile(99), simulation.meanJourney(),
+                        simulation.throughput(), simulation.doorCycles);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package ru.nekludov.chatfuel.lift.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+import ru.nekludov.chatfuel.lift.sim.VirtualTimeScheduler;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полный цикл обработки одного нажатия: call/go, движение до этажа (operate на каждом этаже
+ * или одно событие прибытия в экспресс-режиме), открытие и закрытие дверей - в виртуальном времени.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LiftCycleBenchmark
+{
+
+    private static final int FLOORS_SEQUENCE = 1024;
+
+    @Param({"5", "20", "100"})
+    int floors;
+
+    @Param({"false", "true"})
+    boolean express;
+
+    // публикация снимков состояния (Lift.enableSnapshots), например -p snapshots=true
+    @Param({"false"})
+    boolean snapshots;
+
+    VirtualTimeScheduler scheduler;
+    CountingListener listener;
+    Lift lift;
+
+    int[] targets = new int[FLOORS_SEQUENCE];
+    int next;
+
+    @Setup
+    public void setUp()
+    {
+        scheduler = new VirtualTimeScheduler();
+        listener = new CountingListener();
+        lift = new Lift(new BenchmarkConfig(floors, express), MoveStrategies.SIMPLE_NEAREST, scheduler, listener);
+        if (snapshots) {
+            lift.enableSnapshots();
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < FLOORS_SEQUENCE; i++) {
+            targets[i] = 1 + random.nextInt(floors);
+        }
+    }
+
+    @Benchmark
+    public long callCycle()
+    {
+        lift.call(targets[next++ & (FLOORS_SEQUENCE - 1)]);
+        scheduler.runAll();
+        return listener.floorsEntered;
+    }
+
+    @Benchmark
+    public long goCycle()
+    {
+        lift.go(targets[next++ & (FLOORS_SEQUENCE - 1)]);
+        scheduler.runAll();
+        return listener.floorsEntered;
+    }
+
+}
@@ -0,0 +1,191 @@
+package ru.nekludov.chatfuel.lift.benchmarks;
+
+import ru.nekludov.chatfuel.lift.metrics.LatencyHistogram;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Сравнение стратегий движения методом Монте-Карло на сетке сценариев:
+ * параметры дома и лифта (этажей, время проезда этажа, время дверей) x интенсивность потока пассажиров.
+ *
+ * Каждый прогон - независимое однопоточное моделирование {@link TrafficSimulation} со своим случайным потоком
+ * пассажиров; все стратегии прогоняются на одном и том же потоке, чтобы разница между ними не тонула в разбросе.
+ * Прогоны распределяются по ядрам через fork-join: каждый рабочий поток копит статистику в собственном
+ * контейнере, контейнеры объединяются только в конце, поэтому общих изменяемых данных у потоков нет
+ * и время почти линейно уменьшается с числом ядер.
+ *
+ * Запуск: java -cp target/benchmarks.jar ru.nekludov.chatfuel.lift.benchmarks.MonteCarloEvaluator
+ * [прогонов на сценарий] [пассажиров в прогоне] [потоков]
+ */
+public class MonteCarloEvaluator
+{
+
+    private static final String[] NAMES = {"SIMPLE_NEAREST", "LOOK", "SCAN"};
+    private static final Lift.MoveStrategy[] STRATEGIES = {
+            MoveStrategies.SIMPLE_NEAREST, MoveStrategies.LOOK, MoveStrategies.SCAN};
+
+    private static final int[] FLOOR_COUNTS = {10, 20, 40};
+    private static final int[] LIFT_SPEEDS = {100, 150};
+    private static final long[] OPEN_CLOSE_TIMES = {2, 5};
+    private static final double[] DENSITIES = {0.05, 0.1, 0.2};
+
+    private final Lift.Config[] configs;
+    private final int runs;
+    private final int passengers;
+
+    MonteCarloEvaluator(int runs, int passengers)
+    {
+        this.runs = runs;
+        this.passengers = passengers;
+        configs = new Lift.Config[FLOOR_COUNTS.length * LIFT_SPEEDS.length * OPEN_CLOSE_TIMES.length];
+        int i = 0;
+        for (int floors : FLOOR_COUNTS) {
+            for (int speed : LIFT_SPEEDS) {
+                for (long openCloseTime : OPEN_CLOSE_TIMES) {
+                    configs[i++] = new BenchmarkConfig(floors, 300, speed, openCloseTime);
+                }
+            }
+        }
+    }
+
+    int getScenarioCount()
+    {
+        return configs.length * DENSITIES.length;
+    }
+
+    /**
+     * Выполнить все прогоны в пуле из threads потоков.
+     */
+    Results evaluate(int threads) throws InterruptedException, ExecutionException
+    {
+        int tasks = getScenarioCount() * runs;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> IntStream.range(0, tasks).parallel()
+                    .collect(() -> new Results(getScenarioCount()), this::run, Results::merge)).get();
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Один прогон: все стратегии на одном потоке пассажиров. Поток определяется номером задачи,
+     * поэтому результат не зависит от количества потоков и порядка выполнения.
+     */
+    private void run(Results results, int task)
+    {
+        int scenario = task / runs;
+        Lift.Config cfg = configs[scenario / DENSITIES.length];
+        double density = DENSITIES[scenario % DENSITIES.length];
+        TrafficSimulation simulation = new TrafficSimulation(cfg, passengers, density, task);
+        for (int s = 0; s < STRATEGIES.length; s++) {
+            results.stats[scenario][s].add(simulation.run(STRATEGIES[s]));
+        }
+    }
+
+    /**
+     * Накопленная статистика по сценариям и стратегиям.
+     */
+    static final class Results
+    {
+        final Stats[][] stats;
+
+        Results(int scenarios)
+        {
+            stats = new Stats[scenarios][STRATEGIES.length];
+            for (Stats[] row : stats) {
+                for (int s = 0; s < row.length; s++) {
+                    row[s] = new Stats();
+                }
+            }
+        }
+
+        void merge(Results other)
+        {
+            for (int i = 0; i < stats.length; i++) {
+                for (int s = 0; s < stats[i].length; s++) {
+                    stats[i][s].merge(other.stats[i][s]);
+                }
+            }
+        }
+    }
+
+    static final class Stats
+    {
+        long runs;
+        long passengers;
+        long served;
+        long waitTotal;
+        long rideTotal;
+        final LatencyHistogram waits = new LatencyHistogram();
+
+        void add(TrafficSimulation simulation)
+        {
+            runs++;
+            passengers += simulation.getPassengers();
+            served += simulation.served;
+            waitTotal += simulation.waitTotal;
+            rideTotal += simulation.rideTotal;
+            waits.add(simulation.waits);
+        }
+
+        void merge(Stats other)
+        {
+            runs += other.runs;
+            passengers += other.passengers;
+            served += other.served;
+            waitTotal += other.waitTotal;
+            rideTotal += other.rideTotal;
+            waits.add(other.waits);
+        }
+
+        double meanWait()
+        {
+            return passengers == 0 ? 0 : (double) waitTotal / passengers;
+        }
+
+        double meanRide()
+        {
+            return served == 0 ? 0 : (double) rideTotal / served;
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int runs = args.length > 0 ? Integer.valueOf(args[0]) : 100;
+        int passengers = args.length > 1 ? Integer.valueOf(args[1]) : 10000;
+        int threads = args.length > 2 ? Integer.valueOf(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        MonteCarloEvaluator evaluator = new MonteCarloEvaluator(runs, passengers);
+        long start = System.nanoTime();
+        Results results = evaluator.evaluate(threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%-40s %-8s %-15s %10s %10s %10s %10s%n",
+                "config", "density", "strategy", "wait", "p99 wait", "max wait", "ride");
+        for (int i = 0; i < evaluator.getScenarioCount(); i++) {
+            Stats[] row = results.stats[i];
+            int best = 0;
+            for (int s = 1; s < row.length; s++) {
+                if (row[s].meanWait() < row[best].meanWait()) {
+                    best = s;
+                }
+            }
+            for (int s = 0; s < row.length; s++) {
+                System.out.printf("%-40s %-8s %-15s %10.1f %10d %10d %10.1f%s%n",
+                        evaluator.configs[i / DENSITIES.length], DENSITIES[i % DENSITIES.length], NAMES[s],
+                        row[s].meanWait(), row[s].waits.getValueAtPercentile(99), row[s].waits.getMax(),
+                        row[s].meanRide(), s == best ? " *" : "");
+            }
+        }
+        long simulations = (long) evaluator.getScenarioCount() * runs * STRATEGIES.length;
+        System.out.printf("%d simulations of %d passengers in %.1f s on %d threads (%.1f simulations/s)%n",
+                simulations, passengers, seconds, threads, simulations / seconds);
+    }
+
+}
@@ -0,0 +1,85 @@
+package ru.nekludov.chatfuel.lift.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.nekludov.chatfuel.lift.model.FloorSet;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Одно решение стратегии движения на заранее сгенерированных наборах нажатых кнопок.
+ * density - доля этажей, на которых нажата кнопка вызова (и, независимо, кнопка в лифте).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveStrategyBenchmark
+{
+
+    private static final int STATES = 1024;
+
+    @Param({"10", "20", "100", "1000"})
+    int floors;
+
+    @Param({"0.05", "0.25", "0.75"})
+    double density;
+
+    FloorSet[] callSets = new FloorSet[STATES];
+    FloorSet[] goSets = new FloorSet[STATES];
+    int[] currentFloors = new int[STATES];
+    int next;
+
+    @Setup
+    public void setUp()
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < STATES; i++) {
+            callSets[i] = randomSet(random);
+            goSets[i] = randomSet(random);
+            currentFloors[i] = 1 + random.nextInt(floors);
+        }
+    }
+
+    private FloorSet randomSet(Random random)
+    {
+        FloorSet set = new FloorSet(1, floors);
+        for (int floor = 1; floor <= floors; floor++) {
+            if (random.nextDouble() < density) {
+                set.set(floor);
+            }
+        }
+        return set;
+    }
+
+    @Benchmark
+    public int simpleNearest()
+    {
+        int i = next++ & (STATES - 1);
+        return MoveStrategies.SIMPLE_NEAREST.getTargetFloor(
+                callSets[i], callSets[i], goSets[i], currentFloors[i], Lift.NO_FLOOR, Lift.Direction.NONE);
+    }
+
+    @Benchmark
+    public int look()
+    {
+        int i = next++ & (STATES - 1);
+        return MoveStrategies.LOOK.getTargetFloor(
+                callSets[i], callSets[i], goSets[i], currentFloors[i], Lift.NO_FLOOR, Lift.Direction.UP);
+    }
+
+}
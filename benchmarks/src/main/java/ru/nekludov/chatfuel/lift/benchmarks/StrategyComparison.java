@@ -0,0 +1,85 @@
+package ru.nekludov.chatfuel.lift.benchmarks;
+
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+import ru.nekludov.chatfuel.lift.model.ParkingStrategy;
+
+/**
+ * Сравнение стратегий движения по качеству обслуживания (а не по скорости вычислений):
+ * среднее и максимальное ожидание лифта, среднее время поездки, пропускная способность,
+ * количество остановок и пройденных этажей на одном и том же потоке пассажиров.
+ * Отдельно - утренний пик (большинство пассажиров едет из вестибюля): LOOK с упреждающей парковкой и без нее,
+ * и пик в лифте ограниченной вместимости: знает ли лифт свою загрузку (полный проезжает вызовы) или нет.
+ *
+ * Запуск: java -cp target/benchmarks.jar ru.nekludov.chatfuel.lift.benchmarks.StrategyComparison [этажей] [пассажиров]
+ */
+public class StrategyComparison
+{
+
+    private static final String[] NAMES = {"SIMPLE_NEAREST", "LOOK", "SCAN"};
+    private static final Lift.MoveStrategy[] STRATEGIES = {
+            MoveStrategies.SIMPLE_NEAREST, MoveStrategies.LOOK, MoveStrategies.SCAN};
+
+    private static final double[] DENSITIES = {0.01, 0.05, 0.1, 0.2};
+
+    private static final double LOBBY_SHARE = 0.8;
+
+    private static final int CAPACITY = 8;
+    private static final double[] PEAK_DENSITIES = {0.05, 0.07, 0.1, 0.2};
+
+    public static void main(String[] args)
+    {
+        int floors = args.length > 0 ? Integer.valueOf(args[0]) : 20;
+        int passengers = args.length > 1 ? Integer.valueOf(args[1]) : 100000;
+
+        System.out.printf("%d floors, %d passengers%n", floors, passengers);
+        System.out.printf("%-8s %-15s %10s %10s %10s %12s %10s %12s%n",
+                "density", "strategy", "wait", "max wait", "ride", "throughput", "stops", "floors");
+        for (double density : DENSITIES) {
+            TrafficSimulation simulation = new TrafficSimulation(floors, passengers, density, 42);
+            for (int i = 0; i < STRATEGIES.length; i++) {
+                simulation.run(STRATEGIES[i]);
+                System.out.printf("%-8s %-15s %10.1f %10d %10.1f %12.4f %10d %12d%n",
+                        density, NAMES[i], simulation.meanWait(), simulation.waitMax, simulation.meanRide(),
+                        (double) simulation.served / simulation.finishTime,
+                        simulation.doorCycles, simulation.floorsTravelled);
+            }
+        }
+
+        System.out.printf("%nmorning peak, %.0f%% of passengers from the lobby%n", LOBBY_SHARE * 100);
+        System.out.printf("%-8s %-15s %10s %10s %10s %10s%n", "density", "strategy", "wait", "p99 wait", "max wait",
+                "floors");
+        for (double density : DENSITIES) {
+            BenchmarkConfig cfg = new BenchmarkConfig(floors);
+            TrafficSimulation simulation = new TrafficSimulation(cfg, passengers, density, LOBBY_SHARE, 42);
+            print(density, "LOOK", simulation.run(MoveStrategies.LOOK));
+            // сутки не моделируем - один интервал, вызовы забываются за 1000 единиц времени
+            ParkingStrategy parking = new ParkingStrategy(cfg, MoveStrategies.LOOK, simulation::now,
+                    Long.MAX_VALUE, 1, 1000);
+            print(density, "LOOK+parking", simulation.run(parking, parking));
+        }
+
+        System.out.printf("%nmorning peak, car capacity %d%n", CAPACITY);
+        System.out.printf("%-8s %-15s %10s %10s %12s %10s %12s%n", "density", "load", "wait", "p99 wait", "throughput",
+                "stops", "empty stops");
+        for (double density : PEAK_DENSITIES) {
+            BenchmarkConfig cfg = new BenchmarkConfig(floors, 300, 100, 2, false, CAPACITY);
+            TrafficSimulation simulation = new TrafficSimulation(cfg, passengers, density, LOBBY_SHARE, 42);
+            for (boolean reportLoad : new boolean[]{false, true}) {
+                simulation.run(MoveStrategies.LOOK, null, reportLoad);
+                System.out.printf("%-8s %-15s %10.1f %10d %12.4f %10d %12d%n", density,
+                        reportLoad ? "reported" : "unknown", simulation.meanWait(),
+                        simulation.waits.getValueAtPercentile(99),
+                        (double) simulation.served / simulation.finishTime,
+                        simulation.doorCycles, simulation.emptyStops);
+            }
+        }
+    }
+
+    private static void print(double density, String name, TrafficSimulation simulation)
+    {
+        System.out.printf("%-8s %-15s %10.1f %10d %10d %10d%n", density, name, simulation.meanWait(),
+                simulation.waits.getValueAtPercentile(99), simulation.waitMax, simulation.floorsTravelled);
+    }
+
+}
@@ -0,0 +1,63 @@
+package ru.nekludov.chatfuel.lift.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Моделирование потока пассажиров (см. {@link TrafficSimulation}) с разными стратегиями.
+ * density - среднее количество новых пассажиров за единицу времени.
+ * Результат - время вычислений на одного пассажира, включая всю работу лифта.
+ * Качество обслуживания (ожидание, пропускную способность) сравнивает {@link StrategyComparison}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrafficScenarioBenchmark
+{
+
+    static final int PASSENGERS = 10000;
+
+    @Param({"10", "20", "100"})
+    int floors;
+
+    @Param({"0.01", "0.05", "0.2"})
+    double density;
+
+    @Param({"SIMPLE_NEAREST", "LOOK", "SCAN"})
+    String strategy;
+
+    TrafficSimulation simulation;
+    Lift.MoveStrategy moveStrategy;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException
+    {
+        simulation = new TrafficSimulation(floors, PASSENGERS, density, 42);
+        moveStrategy = (Lift.MoveStrategy) MoveStrategies.class.getField(strategy).get(null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PASSENGERS)
+    public long traffic()
+    {
+        return simulation.run(moveStrategy).finishTime;
+    }
+
+}
@@ -0,0 +1,295 @@
+package ru.nekludov.chatfuel.lift.benchmarks;
+
+import ru.nekludov.chatfuel.lift.metrics.LatencyHistogram;
+import ru.nekludov.chatfuel.lift.model.CompositeListener;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.sim.VirtualTimeScheduler;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Моделирование потока пассажиров через один лифт в виртуальном времени.
+ *
+ * Пассажир появляется на своем этаже и вызывает лифт кнопкой "вверх" или "вниз"; когда на этаже открываются двери
+ * лифта, идущего в его сторону (или в обе стороны), - входит и нажимает в лифте кнопку своего этажа назначения;
+ * выходит, когда там открываются двери.
+ * В лифт помещается {@link Lift.Config#getCapacity()} пассажиров; не поместившиеся снова вызывают лифт,
+ * когда он уедет. Загрузку можно сообщать лифту (тогда полный лифт проезжает вызовы с этажей) или нет -
+ * тогда лифт останавливается по вызовам, даже когда в него никто не войдет.
+ * Очереди пассажиров по этажам - односвязные списки на массивах, без аллокаций во время прогона.
+ */
+class TrafficSimulation implements Lift.Listener
+{
+
+    private static final int NONE = -1;
+
+    private final Lift.Config cfg;
+    private final int lowestFloor;
+    private final int capacity;
+    private final long[] arrivals;
+    private final int[] origins;
+    private final int[] destinations;
+
+    // очередь ожидающих на этаже и едущих на этаж (индекс - этаж - lowestFloor)
+    private final int[] waitingHead;
+    private final int[] waitingTail;
+    private final int[] ridingHead;
+    private final int[] next;
+    private final long[] boardTimes;
+
+    private VirtualTimeScheduler scheduler;
+    private Lift lift;
+    private boolean reportLoad;
+    private int currentFloor;
+    private boolean doorOpen;
+    private int load;
+    // этаж, где остались не поместившиеся в лифт пассажиры: вызывают лифт снова, когда он уедет
+    private int recallFloor;
+
+    long served;
+    long waitTotal;
+    long waitMax;
+    long rideTotal;
+    long doorCycles;
+    // остановки, на которых никто не вышел и не вошел
+    long emptyStops;
+    long floorsTravelled;
+    // пуски и развороты по счетчикам лифта
+    long starts;
+    long reversals;
+    long finishTime;
+    final LatencyHistogram waits = new LatencyHistogram();
+
+    /**
+     * @param density среднее количество новых пассажиров за единицу времени
+     */
+    TrafficSimulation(int floors, int passengers, double density, long seed)
+    {
+        this(new BenchmarkConfig(floors), passengers, density, seed);
+    }
+
+    TrafficSimulation(Lift.Config cfg, int passengers, double density, long seed)
+    {
+        this(cfg, passengers, density, 0, seed);
+    }
+
+    /**
+     * @param lobbyShare доля пассажиров, которые едут с нижнего этажа (утренний пик)
+     */
+    TrafficSimulation(Lift.Config cfg, int passengers, double density, double lobbyShare, long seed)
+    {
+        this.cfg = cfg;
+        this.lowestFloor = cfg.getLowestFloor();
+        this.capacity = cfg.getCapacity();
+        int floors = cfg.getFloorCount();
+        arrivals = new long[passengers];
+        origins = new int[passengers];
+        destinations = new int[passengers];
+        Random random = new Random(seed);
+        double time = 0;
+        for (int i = 0; i < passengers; i++) {
+            time += -Math.log(1 - random.nextDouble()) / density;
+            arrivals[i] = (long) time;
+            origins[i] = lobbyShare > 0 && random.nextDouble() < lobbyShare
+                    ? lowestFloor
+                    : lowestFloor + random.nextInt(floors);
+            int destination = lowestFloor + random.nextInt(floors - 1);
+            destinations[i] = destination >= origins[i] ? destination + 1 : destination;
+        }
+        waitingHead = new int[floors];
+        waitingTail = new int[floors];
+        ridingHead = new int[floors];
+        next = new int[passengers];
+        boardTimes = new long[passengers];
+    }
+
+    int getPassengers()
+    {
+        return arrivals.length;
+    }
+
+    /**
+     * Текущее время прогона.
+     */
+    long now()
+    {
+        return scheduler.now();
+    }
+
+    /**
+     * Прогнать всех пассажиров через лифт с заданной стратегией.
+     */
+    TrafficSimulation run(Lift.MoveStrategy strategy)
+    {
+        return run(strategy, null);
+    }
+
+    /**
+     * Прогнать всех пассажиров через лифт с заданной стратегией; события лифта получает и observer
+     * (например, обучающаяся стратегия), если задан.
+     */
+    TrafficSimulation run(Lift.MoveStrategy strategy, Lift.Listener observer)
+    {
+        return run(strategy, observer, true);
+    }
+
+    /**
+     * Прогнать всех пассажиров через лифт; reportLoad - сообщать ли лифту, сколько в нем пассажиров.
+     */
+    TrafficSimulation run(Lift.MoveStrategy strategy, Lift.Listener observer, boolean reportLoad)
+    {
+        Arrays.fill(waitingHead, NONE);
+        Arrays.fill(waitingTail, NONE);
+        Arrays.fill(ridingHead, NONE);
+        served = waitTotal = waitMax = rideTotal = doorCycles = emptyStops = floorsTravelled = 0;
+        waits.reset();
+        this.reportLoad = reportLoad;
+        load = 0;
+        recallFloor = NONE;
+
+        scheduler = new VirtualTimeScheduler();
+        lift = new Lift(cfg, strategy, scheduler, observer == null ? this : new CompositeListener(this, observer));
+        currentFloor = lift.getCurrentFloor();
+        doorOpen = false;
+        for (int i = 0; i < arrivals.length; i++) {
+            scheduler.runUntil(arrivals[i]);
+            int f = origins[i] - lowestFloor;
+            next[i] = NONE;
+            if (waitingTail[f] == NONE) {
+                waitingHead[f] = i;
+            }
+            else {
+                next[waitingTail[f]] = i;
+            }
+            waitingTail[f] = i;
+            if (doorOpen && origins[i] == currentFloor && boards(i)) {
+                // лифт в нужную сторону стоит на этаже с открытыми дверями - сразу входим (или ждем следующего)
+                board();
+            }
+            else {
+                lift.call(origins[i], direction(i));
+            }
+        }
+        scheduler.runAll();
+        finishTime = scheduler.now();
+        starts = lift.getStarts();
+        reversals = lift.getReversals();
+        return this;
+    }
+
+    @Override
+    public void onDoorOpened()
+    {
+        doorOpen = true;
+        doorCycles++;
+        long now = scheduler.now();
+        int f = currentFloor - lowestFloor;
+        int alighted = 0;
+        for (int p = ridingHead[f]; p != NONE; p = next[p]) {
+            rideTotal += now - boardTimes[p];
+            served++;
+            alighted++;
+        }
+        ridingHead[f] = NONE;
+        load -= alighted;
+        if (reportLoad && alighted > 0) {
+            lift.alight(alighted);
+        }
+        if (board() + alighted == 0) {
+            emptyStops++;
+        }
+    }
+
+    /**
+     * @return сколько пассажиров вошло
+     */
+    private int board()
+    {
+        long now = scheduler.now();
+        int f = currentFloor - lowestFloor;
+        int p = waitingHead[f];
+        waitingHead[f] = waitingTail[f] = NONE;
+        int boarded = 0;
+        while (p != NONE) {
+            int following = next[p];
+            boolean full = load + boarded >= capacity;
+            if (full) {
+                recallFloor = currentFloor;
+            }
+            if (full || !boards(p)) {
+                // лифт полный или идет в другую сторону - остаемся ждать
+                next[p] = NONE;
+                if (waitingTail[f] == NONE) {
+                    waitingHead[f] = p;
+                }
+                else {
+                    next[waitingTail[f]] = p;
+                }
+                waitingTail[f] = p;
+                p = following;
+                continue;
+            }
+            long wait = now - arrivals[p];
+            waitTotal += wait;
+            waitMax = Math.max(waitMax, wait);
+            waits.record(wait);
+            boardTimes[p] = now;
+            int d = destinations[p] - lowestFloor;
+            next[p] = ridingHead[d];
+            ridingHead[d] = p;
+            // двери уже открыты - лифт только запомнит кнопку
+            lift.go(destinations[p]);
+            boarded++;
+            p = following;
+        }
+        load += boarded;
+        if (reportLoad && boarded > 0) {
+            lift.board(boarded);
+        }
+        return boarded;
+    }
+
+    private Lift.Direction direction(int passenger)
+    {
+        return destinations[passenger] > origins[passenger] ? Lift.Direction.UP : Lift.Direction.DOWN;
+    }
+
+    private boolean boards(int passenger)
+    {
+        Lift.Direction direction = lift.getDirection();
+        return direction == Lift.Direction.NONE || direction == direction(passenger);
+    }
+
+    @Override
+    public void onDoorClosed()
+    {
+        doorOpen = false;
+    }
+
+    @Override
+    public void onEnterFloor(int floor)
+    {
+        currentFloor = floor;
+        floorsTravelled++;
+        if (recallFloor != NONE) {
+            // лифт уехал - не поместившиеся нажимают кнопку снова (у открытого лифта нажатие игнорируется)
+            int f = recallFloor - lowestFloor;
+            recallFloor = NONE;
+            for (int p = waitingHead[f]; p != NONE; p = next[p]) {
+                lift.call(origins[p], direction(p));
+            }
+        }
+    }
+
+    double meanWait()
+    {
+        return (double) waitTotal / arrivals.length;
+    }
+
+    double meanRide()
+    {
+        return served == 0 ? 0 : (double) rideTotal / served;
+    }
+
+}
@@ -0,0 +1,238 @@
+package ru.nekludov.chatfuel.lift.benchmarks;
+
+import ru.nekludov.chatfuel.lift.group.GroupDispatcher;
+import ru.nekludov.chatfuel.lift.metrics.LatencyHistogram;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+import ru.nekludov.chatfuel.lift.sim.VirtualTimeScheduler;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Утренний пик в группе лифтов: все пассажиры приходят в вестибюль (нижний этаж) и едут на случайные этажи выше.
+ * В кабину помещается {@link Lift.Config#getCapacity()} пассажиров - кто не поместился, ждет следующую.
+ * Загрузку кабин знает диспетчер, и полные кабины проезжают вызовы с этажей.
+ *
+ * Два способа вызова:
+ *      * обычный - пассажир нажимает "вверх" в вестибюле, садится в подошедшую кабину и нажимает свой этаж в ней;
+ *      * с этажом назначения - пассажир вводит этаж в вестибюле ({@link GroupDispatcher#request(int, int)})
+ *        и садится в назначенную ему кабину.
+ * Очереди пассажиров - односвязные списки на массивах, как в {@link TrafficSimulation}.
+ */
+class UpPeakSimulation implements GroupDispatcher.Listener
+{
+
+    private static final int NONE = -1;
+
+    private final Lift.Config cfg;
+    private final int cars;
+    private final int lobby;
+    private final int capacity;
+    private final long[] arrivals;
+    private final int[] destinations;
+
+    // очередь в вестибюле (обычный вызов) или к каждой кабине (индекс - кабина; с этажом назначения)
+    private final int[] waitingHead;
+    private final int[] waitingTail;
+    // едущие в кабине на этаж (индекс - кабина * этажей + этаж - lobby)
+    private final int[] ridingHead;
+    private final int[] next;
+    private final int[] carFloor;
+    private final boolean[] doorOpen;
+
+    private VirtualTimeScheduler scheduler;
+    private GroupDispatcher dispatcher;
+    private boolean destinationDispatch;
+
+    long served;
+    long waitTotal;
+    long journeyTotal;
+    long doorCycles;
+    final LatencyHistogram waits = new LatencyHistogram();
+
+    /**
+     * @param density среднее количество новых пассажиров за единицу времени
+     */
+    UpPeakSimulation(Lift.Config cfg, int cars, int passengers, double density, long seed)
+    {
+        this.cfg = cfg;
+        this.cars = cars;
+        this.lobby = cfg.getLowestFloor();
+        this.capacity = cfg.getCapacity();
+        int floors = cfg.getFloorCount();
+        arrivals = new long[passengers];
+        destinations = new int[passengers];
+        Random random = new Random(seed);
+        double time = 0;
+        for (int i = 0; i < passengers; i++) {
+            time += -Math.log(1 - random.nextDouble()) / density;
+            arrivals[i] = (long) time;
+            destinations[i] = lobby + 1 + random.nextInt(floors - 1);
+        }
+        waitingHead = new int[cars];
+        waitingTail = new int[cars];
+        ridingHead = new int[cars * floors];
+        next = new int[passengers];
+        carFloor = new int[cars];
+        doorOpen = new boolean[cars];
+    }
+
+    UpPeakSimulation run(boolean destinationDispatch)
+    {
+        this.destinationDispatch = destinationDispatch;
+        Arrays.fill(waitingHead, NONE);
+        Arrays.fill(waitingTail, NONE);
+        Arrays.fill(ridingHead, NONE);
+        Arrays.fill(doorOpen, false);
+        served = waitTotal = journeyTotal = doorCycles = 0;
+        waits.reset();
+
+        scheduler = new VirtualTimeScheduler();
+        dispatcher = new GroupDispatcher(cars, cfg, MoveStrategies.LOOK, scheduler, this);
+        Arrays.fill(carFloor, lobby);
+        for (int i = 0; i < arrivals.length; i++) {
+            scheduler.runUntil(arrivals[i]);
+            arrive(i);
+        }
+        scheduler.runAll();
+        return this;
+    }
+
+    private void arrive(int passenger)
+    {
+        if (destinationDispatch) {
+            int car = dispatcher.request(lobby, destinations[passenger]);
+            enqueue(car, passenger);
+            if (doorOpen[car] && carFloor[car] == lobby) {
+                board(car, car);
+            }
+            return;
+        }
+        enqueue(0, passenger);
+        for (int car = 0; car < cars; car++) {
+            if (doorOpen[car] && carFloor[car] == lobby && dispatcher.getLoad(car) < capacity) {
+                board(car, 0);
+                return;
+            }
+        }
+        dispatcher.call(lobby, Lift.Direction.UP);
+    }
+
+    private void enqueue(int queue, int passenger)
+    {
+        next[passenger] = NONE;
+        if (waitingTail[queue] == NONE) {
+            waitingHead[queue] = passenger;
+        }
+        else {
+            next[waitingTail[queue]] = passenger;
+        }
+        waitingTail[queue] = passenger;
+    }
+
+    /**
+     * Пассажиры из очереди входят в кабину, пока есть место.
+     */
+    private void board(int car, int queue)
+    {
+        if (dispatcher.getDirection(car) == Lift.Direction.DOWN) {
+            return;
+        }
+        long now = scheduler.now();
+        int floors = cfg.getFloorCount();
+        int boarded = 0;
+        while (waitingHead[queue] != NONE && dispatcher.getLoad(car) + boarded < capacity) {
+            int p = waitingHead[queue];
+            waitingHead[queue] = next[p];
+            if (waitingHead[queue] == NONE) {
+                waitingTail[queue] = NONE;
+            }
+            long wait = now - arrivals[p];
+            waitTotal += wait;
+            waits.record(wait);
+            boarded++;
+            int index = car * floors + destinations[p] - lobby;
+            next[p] = ridingHead[index];
+            ridingHead[index] = p;
+            if (!destinationDispatch) {
+                dispatcher.go(car, destinations[p]);
+            }
+        }
+        if (boarded > 0) {
+            dispatcher.board(car, boarded);
+        }
+    }
+
+    @Override
+    public void onDoorOpened(int car)
+    {
+        doorOpen[car] = true;
+        doorCycles++;
+        long now = scheduler.now();
+        int index = car * cfg.getFloorCount() + carFloor[car] - lobby;
+        int alighted = 0;
+        for (int p = ridingHead[index]; p != NONE; p = next[p]) {
+            journeyTotal += now - arrivals[p];
+            served++;
+            alighted++;
+        }
+        ridingHead[index] = NONE;
+        if (alighted > 0) {
+            dispatcher.alight(car, alighted);
+        }
+        if (carFloor[car] == lobby) {
+            board(car, destinationDispatch ? car : 0);
+        }
+    }
+
+    @Override
+    public void onDoorClosed(int car)
+    {
+        doorOpen[car] = false;
+    }
+
+    @Override
+    public void onEnterFloor(int car, int floor)
+    {
+        boolean departed = carFloor[car] == lobby;
+        carFloor[car] = floor;
+        if (!departed) {
+            return;
+        }
+        // не поместившиеся нажимают кнопку снова, когда полная кабина уехала,
+        // иначе она открывала бы двери в вестибюле снова и снова
+        if (!destinationDispatch) {
+            if (waitingHead[0] != NONE) {
+                dispatcher.call(lobby, Lift.Direction.UP);
+            }
+            return;
+        }
+        int p = waitingHead[car];
+        waitingHead[car] = waitingTail[car] = NONE;
+        while (p != NONE) {
+            int following = next[p];
+            enqueue(dispatcher.request(lobby, destinations[p]), p);
+            p = following;
+        }
+    }
+
+    double meanWait()
+    {
+        return (double) waitTotal / arrivals.length;
+    }
+
+    double meanJourney()
+    {
+        return served == 0 ? 0 : (double) journeyTotal / served;
+    }
+
+    /**
+     * Перевезено пассажиров за 1000 единиц времени.
+     */
+    double throughput()
+    {
+        return 1000.0 * served / scheduler.now();
+    }
+
+}
@@ -0,0 +1,517 @@
+package ru.nekludov.chatfuel.lift.group;
+
+import ru.nekludov.chatfuel.lift.model.Kinematics;
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Групповой диспетчер: управляет группой лифтов (кабин) одного дома и назначает
+ * каждый вызов с этажа одной кабине - той, которая по оценке приедет раньше остальных.
+ *
+ * Состояние кабин, нужное для оценки времени прибытия, диспетчер ведет сам (по событиям кабин)
+ * в компактных массивах примитивов, поэтому назначение вызова - это один проход по массивам без аллокаций.
+ *
+ * Запросы с этажом назначения ({@link #request(int, int)}) диспетчер группирует: пассажир попадает в кабину,
+ * которая и так останавливается на его этаже назначения, если она приедет не намного позже других,
+ * и в одну кабину назначается не больше пассажиров с этажа, чем в нее помещается. Кабины делают меньше
+ * остановок за рейс, и пропускная способность в часы пик растет.
+ *
+ * Вызов с этажа полной кабине назначается, только если полны все кабины: полная кабина вызовы проезжает.
+ *
+ * Как и модель лифта, диспетчер однопоточный: все вызовы методов и все команды планировщика
+ * должны выполняться последовательно (внешней синхронизацией или в одном потоке).
+ */
+public class GroupDispatcher
+{
+
+    public static final int NO_CAR = -1;
+
+    private static final int DIRECTIONS = Lift.Direction.values().length;
+
+    /**
+     * События всех кабин группы с номером кабины.
+     */
+    public interface Listener
+    {
+        void onDoorOpened(int car);
+        void onDoorClosed(int car);
+        void onEnterFloor(int car, int floor);
+    }
+
+    private final Lift[] lifts;
+    private final int lowestFloor;
+    private final int highestFloor;
+    private final Kinematics kinematics;
+    private final long openCloseTime;
+    // во сколько обходится кабине лишняя остановка: двери плюс торможение и разгон
+    private final long stopCost;
+    private final int floorCount;
+    private final int capacity;
+    private final Listener listener;
+
+    // состояние кабин: i-й элемент относится к i-й кабине
+    private final int[] carFloor;
+    private final int[] carDirection;
+    private final int[] carStopCount;
+    private final boolean[] carDoorOpen;
+    // биты назначенных кабине остановок: wordsPerCar слов на кабину, бит этажа f - (f - lowestFloor)
+    private final int wordsPerCar;
+    private final long[] carStops;
+
+    // кабина, которой назначен вызов с этажа (индекс - (f - lowestFloor) * 3 + направление вызова)
+    private final int[] hallCallCar;
+    // назначенные кабине пассажиры, которых она еще не забрала
+    // (индекс - (car * floorCount + этаж - lowestFloor) * 2, плюс 1 для пассажиров вниз)
+    private final int[] carWaiting;
+
+    public GroupDispatcher(int carCount, Lift.Config cfg, Lift.MoveStrategy moveStrategy, Lift.Scheduler scheduler,
+                           Listener listener)
+    {
+        checkArgument(carCount > 0, "Wrong car count");
+        this.lowestFloor = cfg.getLowestFloor();
+        this.highestFloor = lowestFloor + cfg.getFloorCount() - 1;
+        this.openCloseTime = cfg.getOpenCloseTime() * cfg.getTimeResolution();
+        this.floorCount = cfg.getFloorCount();
+        this.capacity = cfg.getCapacity();
+        this.listener = listener;
+
+        carFloor = new int[carCount];
+        carDirection = new int[carCount];
+        carStopCount = new int[carCount];
+        carDoorOpen = new boolean[carCount];
+        wordsPerCar = (cfg.getFloorCount() + 63) >>> 6;
+        carStops = new long[carCount * wordsPerCar];
+        hallCallCar = new int[cfg.getFloorCount() * DIRECTIONS];
+        Arrays.fill(hallCallCar, NO_CAR);
+        carWaiting = new int[carCount * cfg.getFloorCount() * 2];
+
+        lifts = new Lift[carCount];
+        for (int i = 0; i < carCount; i++) {
+            lifts[i] = new Lift(cfg, moveStrategy, scheduler, new CarListener(i));
+            carFloor[i] = lifts[i].getCurrentFloor();
+        }
+        kinematics = lifts[0].getKinematics();
+        stopCost = openCloseTime + 2 * kinematics.travelTime(1) - kinematics.travelTime(2);
+    }
+
+    public int getCarCount()
+    {
+        return lifts.length;
+    }
+
+    /**
+     * Вызвать лифт на этаж из подъезда (кнопка без направления).
+     * @return номер кабины, которой назначен вызов
+     */
+    public int call(int floor)
+    {
+        return call(floor, Lift.Direction.NONE);
+    }
+
+    /**
+     * Вызвать лифт на этаж из подъезда кнопкой "вверх" или "вниз".
+     * @return номер кабины, которой назначен вызов
+     */
+    public int call(int floor, Lift.Direction direction)
+    {
+        checkFloor(floor);
+
+        int index = (floor - lowestFloor) * DIRECTIONS + direction.ordinal();
+        int car = hallCallCar[index];
+        if (car == NO_CAR) {
+            car = selectCar(floor, direction);
+            // если кабина обслужит вызов сразу (двери открыты на этом этаже), она сообщит об этом onCallServed
+            addStop(car, floor);
+            hallCallCar[index] = car;
+        }
+        lifts[car].call(floor, direction);
+        return car;
+    }
+
+    /**
+     * Вызвать лифт с этажа origin с указанием этажа назначения destination.
+     * @return номер кабины, которой назначен пассажир (ее номер показывается пассажиру)
+     */
+    public int request(int origin, int destination)
+    {
+        checkFloor(origin);
+        checkFloor(destination);
+        checkArgument(origin != destination, "Same origin and destination");
+
+        Lift.Direction direction = destination > origin ? Lift.Direction.UP : Lift.Direction.DOWN;
+        int car = selectCar(origin, destination, direction);
+        if (!boardsAtOnce(car, origin, direction)) {
+            addStop(car, origin);
+            carWaiting[waitingIndex(car, origin, direction)]++;
+        }
+        addStop(car, destination);
+        lifts[car].request(origin, destination);
+        return car;
+    }
+
+    /**
+     * Направление, в котором кабина едет или обслуживает текущую остановку (см. {@link Lift#getDirection()}).
+     */
+    public Lift.Direction getDirection(int car)
+    {
+        checkCar(car);
+        return lifts[car].getDirection();
+    }
+
+    /**
+     * Количество пассажиров в кабине.
+     */
+    public int getLoad(int car)
+    {
+        checkCar(car);
+        return lifts[car].getLoad();
+    }
+
+    /**
+     * В кабину вошли пассажиры (см. {@link Lift#board(int)}).
+     */
+    public void board(int car, int passengers)
+    {
+        checkCar(car);
+        lifts[car].board(passengers);
+    }
+
+    /**
+     * Из кабины вышли пассажиры (см. {@link Lift#alight(int)}).
+     */
+    public void alight(int car, int passengers)
+    {
+        checkCar(car);
+        lifts[car].alight(passengers);
+    }
+
+    /**
+     * Нажать на кнопку этажа внутри кабины.
+     */
+    public void go(int car, int floor)
+    {
+        checkCar(car);
+        checkFloor(floor);
+
+        addStop(car, floor);
+        lifts[car].go(floor);
+    }
+
+    /**
+     * Оценка времени, через которое кабина прибудет на этаж.
+     * Если этаж по ходу движения - кабина доедет до него, обслужив назначенные остановки по пути,
+     * а если этаж остался позади - сначала обслужит все остановки, доедет до крайней и развернется.
+     * Кабина с открытыми дверями сначала их закроет. Каждый перегон между остановками считается
+     * отдельной поездкой с разгоном и торможением (см. {@link Kinematics}).
+     */
+    public long estimateArrival(int car, int floor)
+    {
+        return estimateArrival(car, floor, Lift.Direction.NONE);
+    }
+
+    /**
+     * Оценка времени, через которое кабина прибудет на этаж для вызова в заданном направлении.
+     * Вызов против хода движения кабина обслужит только после разворота, даже если этаж впереди.
+     */
+    public long estimateArrival(int car, int floor, Lift.Direction callDirection)
+    {
+        checkCar(car);
+        checkFloor(floor);
+        int position = carFloor[car];
+        int stops = carStopCount[car];
+        long doorTime = carDoorOpen[car] ? openCloseTime : 0;
+        if (stops == 0) {
+            return kinematics.travelTime(Math.abs(floor - position)) + doorTime;
+        }
+        int direction = carDirection[car];
+        boolean opposite = direction != 0 && callDirection != Lift.Direction.NONE
+                && (callDirection == Lift.Direction.UP ? 1 : -1) != direction;
+        if (direction == 0 || ((floor - position) * direction >= 0 && !opposite)) {
+            // этаж по ходу движения: учитываем только остановки до него
+            return routeTime(car, position, floor, position) + doorTime;
+        }
+        int turn = direction > 0 ? Math.max(highestStop(car), floor) : Math.min(lowestStop(car), floor);
+        // крайняя остановка может оказаться позади, если кабина стоит на этаже с открытыми дверями
+        if ((turn - position) * direction < 0) {
+            turn = position;
+        }
+        long time = routeTime(car, position, turn, position) + doorTime;
+        if (turn != floor && hasStop(car, turn)) {
+            time += openCloseTime;
+        }
+        // на обратном пути остановки между кабиной и вызовом уже обслужены, остаются только остановки за кабиной
+        return time + ((floor - position) * direction < 0
+                ? routeTime(car, turn, floor, position)
+                : kinematics.travelTime(Math.abs(floor - turn)));
+    }
+
+    /**
+     * Время пути кабины с этажа from на этаж to с остановками на назначенных этажах,
+     * лежащих строго между from (или after, если он ближе к to) и to.
+     */
+    private long routeTime(int car, int from, int to, int after)
+    {
+        int step = to > from ? 1 : -1;
+        int start = (after - from) * step > 0 ? after : from;
+        long time = 0;
+        int previous = from;
+        int stop = nextStop(car, start, step);
+        while (stop != Lift.NO_FLOOR && (to - stop) * step > 0) {
+            time += kinematics.travelTime(Math.abs(stop - previous)) + openCloseTime;
+            previous = stop;
+            stop = nextStop(car, stop, step);
+        }
+        return time + kinematics.travelTime(Math.abs(to - previous));
+    }
+
+    private int selectCar(int floor, Lift.Direction direction)
+    {
+        int best = NO_CAR;
+        long bestEta = Long.MAX_VALUE;
+        int bestFull = 0;
+        long bestFullEta = Long.MAX_VALUE;
+        for (int car = 0; car < lifts.length; car++) {
+            long eta = estimateArrival(car, floor, direction);
+            if (!lifts[car].isFull()) {
+                if (eta < bestEta) {
+                    best = car;
+                    bestEta = eta;
+                }
+            }
+            else if (eta < bestFullEta) {
+                bestFull = car;
+                bestFullEta = eta;
+            }
+        }
+        return best == NO_CAR ? bestFull : best;
+    }
+
+    /**
+     * Кабина для пассажира с этажом назначения: минимум времени прибытия плюс цена лишней остановки,
+     * если кабина еще не останавливается на этаже назначения. Кабины, которым с этого этажа уже назначено
+     * столько пассажиров, сколько помещается, выбираются, только если свободных нет.
+     */
+    private int selectCar(int origin, int destination, Lift.Direction direction)
+    {
+        int best = NO_CAR;
+        long bestCost = Long.MAX_VALUE;
+        int bestFull = 0;
+        long bestFullCost = Long.MAX_VALUE;
+        for (int car = 0; car < lifts.length; car++) {
+            long cost = estimateArrival(car, origin, direction) + (hasStop(car, destination) ? 0 : stopCost);
+            if (carWaiting[waitingIndex(car, origin, direction)] < capacity) {
+                if (cost < bestCost) {
+                    best = car;
+                    bestCost = cost;
+                }
+            }
+            else if (cost < bestFullCost) {
+                bestFull = car;
+                bestFullCost = cost;
+            }
+        }
+        return best == NO_CAR ? bestFull : best;
+    }
+
+    /**
+     * Войдет ли пассажир в кабину сразу (как в {@link Lift#request(int, int)}): двери открыты на его этаже,
+     * в кабине есть место, и остановка обслуживает его направление.
+     */
+    private boolean boardsAtOnce(int car, int floor, Lift.Direction direction)
+    {
+        if (!carDoorOpen[car] || carFloor[car] != floor || lifts[car].isFull()) {
+            return false;
+        }
+        Lift.Direction stopDirection = lifts[car].getDirection();
+        return stopDirection == Lift.Direction.NONE || stopDirection == direction;
+    }
+
+    /**
+     * Назначить кабине остановку. Остановку на этаже, где кабина стоит с открытыми дверями,
+     * снимут события обслуживания (onGoServed, onCallServed), если кабина обслужит нажатие сразу.
+     */
+    private void addStop(int car, int floor)
+    {
+        int index = floor - lowestFloor;
+        int word = car * wordsPerCar + (index >>> 6);
+        long mask = 1L << index;
+        if ((carStops[word] & mask) == 0) {
+            carStops[word] |= mask;
+            carStopCount[car]++;
+        }
+    }
+
+    private int waitingIndex(int car, int floor, Lift.Direction direction)
+    {
+        return ((car * floorCount + floor - lowestFloor) << 1) + (direction == Lift.Direction.DOWN ? 1 : 0);
+    }
+
+    /**
+     * Кабина обслужила вызовы с этажа в направлении direction (NONE - все вызовы на этаже):
+     * назначенные ей пассажиры в этом направлении вошли.
+     */
+    private void clearCall(int car, int floor, Lift.Direction direction)
+    {
+        int base = (floor - lowestFloor) * DIRECTIONS;
+        for (int i = base; i < base + DIRECTIONS; i++) {
+            if (hallCallCar[i] == car && (direction == Lift.Direction.NONE || i == base + direction.ordinal())) {
+                hallCallCar[i] = NO_CAR;
+            }
+        }
+        if (direction != Lift.Direction.DOWN) {
+            carWaiting[waitingIndex(car, floor, Lift.Direction.UP)] = 0;
+        }
+        if (direction != Lift.Direction.UP) {
+            carWaiting[waitingIndex(car, floor, Lift.Direction.DOWN)] = 0;
+        }
+        clearStop(car, floor);
+    }
+
+    /**
+     * Снять остановку кабины на этаже, если на нем не осталось назначенных ей вызовов и пассажиров.
+     */
+    private void clearStop(int car, int floor)
+    {
+        int base = (floor - lowestFloor) * DIRECTIONS;
+        for (int i = base; i < base + DIRECTIONS; i++) {
+            if (hallCallCar[i] == car) {
+                return;
+            }
+        }
+        if (carWaiting[waitingIndex(car, floor, Lift.Direction.UP)] > 0
+                || carWaiting[waitingIndex(car, floor, Lift.Direction.DOWN)] > 0) {
+            return;
+        }
+        int index = floor - lowestFloor;
+        int word = car * wordsPerCar + (index >>> 6);
+        long mask = 1L << index;
+        if ((carStops[word] & mask) != 0) {
+            carStops[word] &= ~mask;
+            carStopCount[car]--;
+        }
+    }
+
+    private boolean hasStop(int car, int floor)
+    {
+        int index = floor - lowestFloor;
+        return (carStops[car * wordsPerCar + (index >>> 6)] & (1L << index)) != 0;
+    }
+
+    /**
+     * Ближайшая назначенная кабине остановка строго выше (step = 1) или ниже (step = -1) этажа
+     * или {@link Lift#NO_FLOOR}.
+     */
+    private int nextStop(int car, int floor, int step)
+    {
+        int base = car * wordsPerCar;
+        int index = floor - lowestFloor + step;
+        if (index < 0 || index >= wordsPerCar << 6) {
+            return Lift.NO_FLOOR;
+        }
+        int i = index >>> 6;
+        long word = carStops[base + i] & (step > 0 ? -1L << index : -1L >>> (63 - (index & 63)));
+        while (word == 0) {
+            i += step;
+            if (i < 0 || i >= wordsPerCar) {
+                return Lift.NO_FLOOR;
+            }
+            word = carStops[base + i];
+        }
+        return lowestFloor + (i << 6) + (step > 0
+                ? Long.numberOfTrailingZeros(word)
+                : 63 - Long.numberOfLeadingZeros(word));
+    }
+
+    private int highestStop(int car)
+    {
+        int base = car * wordsPerCar;
+        for (int i = wordsPerCar - 1; i >= 0; i--) {
+            long word = carStops[base + i];
+            if (word != 0) {
+                return lowestFloor + (i << 6) + 63 - Long.numberOfLeadingZeros(word);
+            }
+        }
+        return carFloor[car];
+    }
+
+    private int lowestStop(int car)
+    {
+        int base = car * wordsPerCar;
+        for (int i = 0; i < wordsPerCar; i++) {
+            long word = carStops[base + i];
+            if (word != 0) {
+                return lowestFloor + (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return carFloor[car];
+    }
+
+    private void checkCar(int car)
+    {
+        checkArgument(car >= 0 && car < lifts.length, "Invalid car");
+    }
+
+    private void checkFloor(int floor)
+    {
+        checkArgument(floor >= lowestFloor && floor <= highestFloor, "Invalid floor");
+    }
+
+    private class CarListener implements Lift.Listener
+    {
+
+        private final int car;
+
+        CarListener(int car)
+        {
+            this.car = car;
+        }
+
+        @Override
+        public void onDoorOpened()
+        {
+            carDoorOpen[car] = true;
+            if (carStopCount[car] == 0) {
+                carDirection[car] = 0;
+            }
+            listener.onDoorOpened(car);
+        }
+
+        @Override
+        public void onDoorClosed()
+        {
+            carDoorOpen[car] = false;
+            listener.onDoorClosed(car);
+        }
+
+        @Override
+        public void onEnterFloor(int floor)
+        {
+            carDirection[car] = Integer.signum(floor - carFloor[car]);
+            carFloor[car] = floor;
+            listener.onEnterFloor(car, floor);
+        }
+
+        @Override
+        public void onGo(int floor)
+        {
+            // этажи назначения нажимаются сами, когда кабина забирает пассажиров
+            addStop(car, floor);
+        }
+
+        @Override
+        public void onGoServed(int floor)
+        {
+            clearStop(car, floor);
+        }
+
+        @Override
+        public void onCallServed(int floor, Lift.Direction direction)
+        {
+            clearCall(car, floor, direction);
+        }
+    }
+
+}
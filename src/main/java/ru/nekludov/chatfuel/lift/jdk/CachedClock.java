@@ -0,0 +1,59 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Часы с кешированным текущим временем (в миллисекундах с начала эпохи).
+ *
+ * Отдельный поток обновляет значение с заданным шагом, а читатели получают его одним чтением
+ * volatile-поля - без системного вызова и без создания объектов. Точность - шаг обновления.
+ */
+public class CachedClock implements LongSupplier
+{
+
+    private final long resolutionNanos;
+    private final Thread thread;
+
+    private volatile long currentTimeMillis = System.currentTimeMillis();
+    private volatile boolean running = true;
+
+    public CachedClock(String name, long resolution, TimeUnit unit)
+    {
+        checkArgument(resolution > 0, "Wrong resolution");
+        this.resolutionNanos = unit.toNanos(resolution);
+        thread = new Thread(this::loop, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public long currentTimeMillis()
+    {
+        return currentTimeMillis;
+    }
+
+    @Override
+    public long getAsLong()
+    {
+        return currentTimeMillis;
+    }
+
+    public void stop() throws InterruptedException
+    {
+        running = false;
+        thread.interrupt();
+        thread.join();
+    }
+
+    private void loop()
+    {
+        while (running) {
+            LockSupport.parkNanos(this, resolutionNanos);
+            currentTimeMillis = System.currentTimeMillis();
+        }
+    }
+
+}
@@ -0,0 +1,225 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Асинхронный журнал событий.
+ *
+ * Запись события - это заполнение заранее созданной ячейки кольцевого буфера (время, текст, число)
+ * без форматирования, ввода-вывода и создания объектов; текст события обычно константа,
+ * а переменная часть (например, номер этажа) передается числом.
+ * Фоновый поток забирает события пачками, форматирует и пишет в канал одной операцией на пачку.
+ *
+ * Писать события можно из любого потока. Если буфер заполнен (вывод не успевает),
+ * событие отбрасывается и учитывается в счетчике {@link #getDropped()} - пишущий поток никогда не ждет вывода.
+ */
+public class EventLog
+{
+
+    private static final long NO_VALUE = Long.MIN_VALUE;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final int mask;
+    private final long[] times;
+    private final String[] messages;
+    private final long[] values;
+    // номер события, записанного в ячейку (ячейка готова к чтению, когда номер совпадает с ожидаемым)
+    private final AtomicLongArray published;
+
+    // следующий свободный номер события
+    private final AtomicLong claimed = new AtomicLong();
+    // номер первого еще не прочитанного события
+    private volatile long consumed;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongSupplier clock;
+    private final WritableByteChannel out;
+    private final Consumer<Throwable> errorHandler;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // только для потока вывода
+    private final StringBuilder batch = new StringBuilder();
+    private final ZoneId zone = ZoneId.systemDefault();
+    private long formattedSecond = Long.MIN_VALUE;
+    private String formattedTime;
+
+    /**
+     * @param capacity размер буфера (округляется вверх до степени двойки)
+     * @param clock текущее время в миллисекундах с начала эпохи (например, {@link CachedClock})
+     * @param out куда писать журнал
+     */
+    public EventLog(String name, int capacity, LongSupplier clock, WritableByteChannel out,
+                    Consumer<Throwable> errorHandler)
+    {
+        checkArgument(capacity > 0 && capacity <= 1 << 30, "Wrong capacity");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        times = new long[size];
+        messages = new String[size];
+        values = new long[size];
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+
+        this.clock = clock;
+        this.out = out;
+        this.errorHandler = errorHandler;
+        thread = new Thread(this::loop, name);
+        thread.setDaemon(true);
+    }
+
+    public void start()
+    {
+        thread.start();
+    }
+
+    /**
+     * Записать событие.
+     */
+    public void log(String message)
+    {
+        append(message, NO_VALUE);
+    }
+
+    /**
+     * Записать событие с числовым параметром (выводится через пробел после текста).
+     */
+    public void log(String message, long value)
+    {
+        append(message, value);
+    }
+
+    /**
+     * Количество отброшенных из-за переполнения буфера событий.
+     */
+    public long getDropped()
+    {
+        return dropped.sum();
+    }
+
+    /**
+     * Остановить поток вывода, предварительно записав все уже принятые события.
+     */
+    public void stop() throws InterruptedException
+    {
+        // без interrupt: прерывание закрыло бы канал вывода, а поток и так просыпается раз в миллисекунду
+        running = false;
+        thread.join();
+    }
+
+    private void append(String message, long value)
+    {
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed > mask) {
+                dropped.increment();
+                return;
+            }
+        }
+        while (!claimed.compareAndSet(seq, seq + 1));
+
+        int i = (int) seq & mask;
+        times[i] = clock.getAsLong();
+        messages[i] = message;
+        values[i] = value;
+        published.set(i, seq);
+    }
+
+    private void loop()
+    {
+        while (running) {
+            if (!drain()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        while (drain()) {
+            // дописываем оставшееся
+        }
+    }
+
+    /**
+     * Прочитать и вывести готовые события.
+     * @return false, если событий не было
+     */
+    private boolean drain()
+    {
+        long seq = consumed;
+        int i = (int) seq & mask;
+        if (published.get(i) != seq) {
+            return false;
+        }
+        batch.setLength(0);
+        do {
+            format(times[i], messages[i], values[i]);
+            messages[i] = null;
+            seq++;
+            i = (int) seq & mask;
+        }
+        while (published.get(i) == seq);
+        // ячейки свободны для записи, как только прочитаны - вывод идет уже из batch
+        consumed = seq;
+        write();
+        return true;
+    }
+
+    private void format(long time, String message, long value)
+    {
+        long second = Math.floorDiv(time, 1000);
+        if (second != formattedSecond) {
+            formattedSecond = second;
+            formattedTime = TIME_FORMAT.format(Instant.ofEpochSecond(second).atZone(zone));
+        }
+        long millis = Math.floorMod(time, 1000);
+        batch.append(formattedTime).append('.');
+        if (millis < 100) {
+            batch.append('0');
+        }
+        if (millis < 10) {
+            batch.append('0');
+        }
+        batch.append(millis).append(": ").append(message);
+        if (value != NO_VALUE) {
+            batch.append(' ').append(value);
+        }
+        batch.append('\n');
+    }
+
+    private void write()
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+        catch (IOException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Планировщик на основе "колеса таймеров" (hashed timing wheel) для большого количества лифтов.
+ *
+ * Время разбито на тики фиксированной длительности; задача попадает в ячейку колеса по номеру тика
+ * своего срабатывания, поэтому постановка задачи - O(1), а срабатывание запаздывает не больше, чем на один тик.
+ * Узлы задач переиспользуются через пул, так что в установившемся режиме планирование не создает мусора.
+ *
+ * Задачи выполняются через переданный Executor (например, в потоке актора лифта).
+ * Исключение в задаче передается обработчику ошибок и не останавливает поток колеса.
+ */
+public class HashedWheelScheduler implements Lift.Scheduler
+{
+
+    private static final int MAX_POOLED = 4096;
+
+    private static final class Node
+    {
+        long deadlineTick;
+        Runnable command;
+        Node next;
+    }
+
+    private final long tickNanos;
+    private final TimeUnit delayUnit;
+    private final Executor executor;
+    private final Consumer<Throwable> errorHandler;
+
+    private final Object lock = new Object();
+    // под lock:
+    private final Node[] wheel;
+    private final int mask;
+    private long tick;
+    private Node pool;
+    private int pooled;
+
+    private final long startTime;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * @param tickDuration длительность тика (точность срабатывания)
+     * @param wheelSize количество ячеек колеса (округляется вверх до степени двойки)
+     * @param delayUnit единица измерения задержек, которые передает лифт
+     * @param executor кем выполнять сработавшие задачи
+     */
+    public HashedWheelScheduler(String name, long tickDuration, TimeUnit tickUnit, int wheelSize, TimeUnit delayUnit,
+                                Executor executor, Consumer<Throwable> errorHandler)
+    {
+        checkArgument(tickDuration > 0, "Wrong tick duration");
+        checkArgument(wheelSize > 0 && wheelSize <= 1 << 30, "Wrong wheel size");
+        this.tickNanos = tickUnit.toNanos(tickDuration);
+        this.delayUnit = delayUnit;
+        this.executor = executor;
+        this.errorHandler = errorHandler;
+
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        wheel = new Node[size];
+        mask = size - 1;
+
+        startTime = System.nanoTime();
+        thread = new Thread(this::loop, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void schedule(long delay, Runnable command)
+    {
+        checkArgument(delay >= 0, "Negative delay");
+        long deadline = System.nanoTime() - startTime + delayUnit.toNanos(delay);
+        // округляем вверх: задача не должна сработать раньше срока
+        long deadlineTick = (deadline + tickNanos - 1) / tickNanos;
+        synchronized (lock) {
+            Node node = pool;
+            if (node != null) {
+                pool = node.next;
+                pooled--;
+            }
+            else {
+                node = new Node();
+            }
+            // уже обработанные тики не вернутся - такая задача сработает на ближайшем
+            node.deadlineTick = Math.max(deadlineTick, tick + 1);
+            node.command = command;
+            int bucket = (int) (node.deadlineTick & mask);
+            node.next = wheel[bucket];
+            wheel[bucket] = node;
+        }
+    }
+
+    /**
+     * Время с запуска колеса в единицах задержек.
+     */
+    @Override
+    public long now()
+    {
+        return delayUnit.convert(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Остановить поток колеса. Несработавшие задачи отбрасываются.
+     */
+    public void stop() throws InterruptedException
+    {
+        running = false;
+        thread.interrupt();
+        thread.join();
+    }
+
+    private void loop()
+    {
+        while (running) {
+            long current;
+            synchronized (lock) {
+                current = tick + 1;
+            }
+            long sleep = startTime + current * tickNanos - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+                continue;
+            }
+            Node expired;
+            synchronized (lock) {
+                tick = current;
+                expired = expire(current);
+            }
+            for (Node node = expired; node != null; node = node.next) {
+                run(node.command);
+                node.command = null;
+            }
+            if (expired != null) {
+                release(expired);
+            }
+        }
+    }
+
+    /**
+     * Отцепляет от ячейки текущего тика задачи, срок которых наступил (остальные - на следующих оборотах колеса).
+     * @return сработавшие задачи в порядке постановки
+     */
+    private Node expire(long current)
+    {
+        int bucket = (int) (current & mask);
+        // в ячейке новые задачи идут первыми, поэтому добавление в голову expired восстанавливает порядок постановки,
+        // а оставшиеся добавляем в хвост, чтобы порядок в ячейке не нарушался
+        Node expired = null;
+        Node remaining = null;
+        Node remainingTail = null;
+        Node node = wheel[bucket];
+        while (node != null) {
+            Node next = node.next;
+            if (node.deadlineTick <= current) {
+                node.next = expired;
+                expired = node;
+            }
+            else {
+                node.next = null;
+                if (remainingTail == null) {
+                    remaining = node;
+                }
+                else {
+                    remainingTail.next = node;
+                }
+                remainingTail = node;
+            }
+            node = next;
+        }
+        wheel[bucket] = remaining;
+        return expired;
+    }
+
+    private void release(Node first)
+    {
+        synchronized (lock) {
+            int room = MAX_POOLED - pooled;
+            if (room <= 0) {
+                return;
+            }
+            // в пул идет не больше room узлов, остаток цепочки отдается сборщику мусора
+            Node last = first;
+            int count = 1;
+            while (last.next != null && count < room) {
+                last = last.next;
+                count++;
+            }
+            last.next = pool;
+            pool = first;
+            pooled += count;
+        }
+    }
+
+    private void run(Runnable command)
+    {
+        try {
+            executor.execute(command);
+        }
+        catch (Throwable e) {
+            errorHandler.accept(e);
+        }
+    }
+
+}
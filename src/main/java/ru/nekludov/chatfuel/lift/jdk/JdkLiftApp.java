@@ -2,16 +2,25 @@ package ru.nekludov.chatfuel.lift.jdk;
 
 import ru.nekludov.chatfuel.lift.model.Lift;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 /**
- * Еденица измерения времени - секунды.
+ * Еденица измерения времени - секунды (лифт планирует события с точностью до миллисекунд).
  *
  * Формат текстовых команд для лифта для пользователя:
  *      * нажатие кнопки на этаже: qN
+ *      * нажатие кнопки "вверх" или "вниз" на этаже: uN, dN
  *      * нажатие кнопки в лифте: wN
  *      * выход: exit
  * Здесь N - число.
+ * Те же команды (по одной в строке) принимаются по TCP, если задан порт сервера (шестой параметр);
+ * подключенным клиентам сервер присылает события лифта.
+ * Если задан каталог журнала (седьмой параметр), незавершенные вызовы и этаж лифта восстанавливаются после перезапуска.
+ * Восьмой и девятый параметры - ускорение и рывок лифта (по умолчанию лифт сразу едет с полной скоростью).
  * Примеры:
  *      * вызвать лифт на первый этаж: q1
+ *      * вызвать лифт на третий этаж, чтобы ехать вниз: d3
  *      * поехать на лифте на пятый этаж: w5
  */
 public class JdkLiftApp
@@ -19,7 +28,9 @@ public class JdkLiftApp
 
     public static void main(String[] args)
     {
-        new JdkLiftController(new LiftConfig(args)).start();
+        int serverPort = args.length > 5 ? Integer.valueOf(args[5]) : JdkLiftController.NO_SERVER;
+        Path journalDirectory = args.length > 6 ? Paths.get(args[6]) : null;
+        new JdkLiftController("lift", new LiftConfig(args), serverPort, journalDirectory).start();
     }
 
     private static class LiftConfig implements Lift.Config
@@ -29,6 +40,9 @@ public class JdkLiftApp
         private final int floorHeight;
         private final int liftSpeed;
         private final long openCloseTime;
+        private final int lowestFloor;
+        private final int acceleration;
+        private final int jerk;
 
         public LiftConfig(String[] args)
         {
@@ -36,6 +50,9 @@ public class JdkLiftApp
             this.floorHeight = Integer.valueOf(args[1]);
             this.liftSpeed = Integer.valueOf(args[2]);
             this.openCloseTime = Long.valueOf(args[3]);
+            this.lowestFloor = args.length > 4 ? Integer.valueOf(args[4]) : 1;
+            this.acceleration = args.length > 7 ? Integer.valueOf(args[7]) : 0;
+            this.jerk = args.length > 8 ? Integer.valueOf(args[8]) : 0;
         }
 
         @Override
@@ -44,6 +61,12 @@ public class JdkLiftApp
             return floorCount;
         }
 
+        @Override
+        public int getLowestFloor()
+        {
+            return lowestFloor;
+        }
+
         @Override
         public int getFloorHeight()
         {
@@ -61,6 +84,24 @@ public class JdkLiftApp
         {
             return openCloseTime;
         }
+
+        @Override
+        public int getAcceleration()
+        {
+            return acceleration;
+        }
+
+        @Override
+        public int getJerk()
+        {
+            return jerk;
+        }
+
+        @Override
+        public int getTimeResolution()
+        {
+            return 1000;
+        }
     }
 
 }
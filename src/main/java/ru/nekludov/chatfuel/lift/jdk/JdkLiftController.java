@@ -1,73 +1,203 @@
 package ru.nekludov.chatfuel.lift.jdk;
 
+import ru.nekludov.chatfuel.lift.journal.LiftJournal;
+import ru.nekludov.chatfuel.lift.metrics.LiftMetrics;
+import ru.nekludov.chatfuel.lift.model.CompositeListener;
 import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.LiftSnapshot;
 import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+import ru.nekludov.chatfuel.lift.net.CommandHandler;
+import ru.nekludov.chatfuel.lift.net.CommandParser;
+import ru.nekludov.chatfuel.lift.net.LiftServer;
 
-import java.util.Date;
+import javax.management.ObjectName;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Objects;
 import java.util.Scanner;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
-public class JdkLiftController
+import static com.google.common.base.Preconditions.checkArgument;
+
+public class JdkLiftController implements CommandHandler
 {
 
+    public static final int NO_SERVER = -1;
+
     private final Lift lift;
 
-    private final Timer timer = new Timer();
+    // события пишутся в буфер журнала, а выводит их отдельный поток - медленный вывод не задерживает лифт
+    private final CachedClock clock = new CachedClock("lift-clock", 1, TimeUnit.MILLISECONDS);
+    private final EventLog eventLog = new EventLog("lift-log", 4096, clock,
+            Channels.newChannel(new FileOutputStream(FileDescriptor.out)), Throwable::printStackTrace);
+
+    // все обращения к модели лифта выполняются в потоке актора
+    private final LiftActor actor = new LiftActor("lift", this::logError);
+
+    // сработавшие таймеры лифта тоже передаются актору; задержки лифта - в миллисекундах
+    // (параметры лифта - в секундах, см. проверку Config.getTimeResolution() в конструкторе)
+    private final HashedWheelScheduler scheduler = new HashedWheelScheduler(
+            "lift-timer", 10, TimeUnit.MILLISECONDS, 512, TimeUnit.MILLISECONDS, actor::submit, this::logError);
+
+    // нажатия кнопок копятся до ближайшего тика таймера и передаются лифту одной пачкой
+    private final PressCoalescer presses;
+
+    // события лифта для подписчиков (панели, метрики): у каждого свой буфер, медленный подписчик не задерживает лифт
+    private final LiftEventPublisher events = new LiftEventPublisher(
+            clock, ForkJoinPool.commonPool(), 1024, this::logError);
+
+    // времена ожидания и поездки в миллисекундах, доступны через JMX
+    private final LiftMetrics metrics;
+    private final ObjectName metricsName;
+
+    // сетевой интерфейс для панелей управления (если задан порт)
+    private final LiftServer server;
+
+    // журнал для восстановления вызовов после перезапуска (если задан каталог)
+    private final LiftJournal journal;
+
+    /**
+     * @param name имя лифта (имя MBean метрик; у разных контроллеров в одной JVM имена должны различаться)
+     */
+    public JdkLiftController(String name, Lift.Config liftConfig)
+    {
+        this(name, liftConfig, NO_SERVER, null);
+    }
 
-    public JdkLiftController(Lift.Config liftConfig)
+    /**
+     * @param name имя лифта (имя MBean метрик; у разных контроллеров в одной JVM имена должны различаться)
+     * @param liftConfig параметры лифта; времена в секундах ({@link Lift.Config#getTimeResolution()} = 1000)
+     * @param serverPort порт для команд по TCP (см. {@link LiftServer}) или {@link #NO_SERVER} - только консоль
+     * @param journalDirectory каталог журнала лифта (см. {@link LiftJournal}) или null - без журнала
+     */
+    public JdkLiftController(String name, Lift.Config liftConfig, int serverPort, Path journalDirectory)
     {
+        // планировщик считает задержки в миллисекундах
+        checkArgument(liftConfig.getTimeResolution() == 1000, "Wrong time resolution");
+        try {
+            // поток сервера запускается в start(), поэтому передать ему this здесь безопасно
+            this.server = serverPort == NO_SERVER
+                    ? null
+                    : new LiftServer(new InetSocketAddress(serverPort), this, this::logError);
+            // снимки журнала пишутся в общем пуле, как и доставка событий
+            this.journal = journalDirectory == null
+                    ? null
+                    : new LiftJournal(journalDirectory, liftConfig, 65536, ForkJoinPool.commonPool(), this::logError);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.metrics = new LiftMetrics(liftConfig, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+        this.metricsName = metrics.registerMBean(name);
+        Lift.Listener logListener = new Lift.Listener()
+        {
+            @Override
+            public void onDoorOpened()
+            {
+                eventLog.log("DOOR OPEN");
+            }
+
+            @Override
+            public void onDoorClosed()
+            {
+                eventLog.log("DOOR CLOSE");
+            }
+
+            @Override
+            public void onEnterFloor(int floor)
+            {
+                eventLog.log("ENTER FLOOR", floor);
+            }
+        };
         this.lift = new Lift(
                 liftConfig,
                 MoveStrategies.SIMPLE_NEAREST,
-                new Lift.Scheduler()
-                {
-                    @Override
-                    public void schedule(long delay, Runnable command)
-                    {
-                        timer.schedule(new TimerTask()
-                        {
-                            @Override
-                            public void run()
-                            {
-                                synchronized (lift) {
-                                    command.run();
-                                }
-                            }
-                        }, delay * 1000);
-                    }
-                },
-                new Lift.Listener()
-                {
-                    @Override
-                    public void onDoorOpened()
-                    {
-                        log("DOOR OPEN");
-                    }
-
-                    @Override
-                    public void onDoorClosed()
-                    {
-                        log("DOOR CLOSE");
-                    }
-
-                    @Override
-                    public void onEnterFloor(int floor)
-                    {
-                        log("ENTER FLOOR " + floor);
-                    }
-                }
+                scheduler,
+                new CompositeListener(Stream.of(metrics, logListener, events, server, journal)
+                        .filter(Objects::nonNull)
+                        .toArray(Lift.Listener[]::new))
         );
+        lift.enableSnapshots();
+        this.presses = new PressCoalescer(liftConfig, lift, scheduler, 0);
+    }
+
+    @Override
+    public void call(int floor, Lift.Direction direction)
+    {
+        try {
+            presses.call(floor, direction);
+        }
+        catch (IllegalArgumentException e) {
+            logError(e);
+        }
+    }
+
+    @Override
+    public void go(int floor)
+    {
+        try {
+            presses.go(floor);
+        }
+        catch (IllegalArgumentException e) {
+            logError(e);
+        }
+    }
+
+    /**
+     * Поток событий лифта; подписываться можно из любого потока и в любой момент.
+     */
+    public Flow.Publisher<LiftEvent> getEvents()
+    {
+        return events;
+    }
+
+    /**
+     * Состояние лифта после последнего перехода; можно читать из любого потока без обращения к актору.
+     */
+    public LiftSnapshot getSnapshot()
+    {
+        return lift.getSnapshot();
     }
 
     private void log(String msg)
     {
-        System.out.println(new Date() + ": " + msg);
+        eventLog.log(msg);
+    }
+
+    private void log(String msg, int value)
+    {
+        eventLog.log(msg, value);
+    }
+
+    private void logError(Throwable e)
+    {
+        log("Error: " + e.getMessage());
     }
 
     public void start()
     {
+        eventLog.start();
+        actor.start();
+        if (journal != null) {
+            actor.submit(() -> journal.restore(lift));
+        }
+        if (server != null) {
+            server.start();
+            log("LISTENING ON PORT", server.getPort());
+        }
         log("LIFT IS READY");
+        // консоль понимает те же команды, что и сервер
+        CommandParser parser = new CommandParser(this, () -> log("Unknown command"));
         Scanner in = new Scanner(System.in);
         while (true) {
             System.out.print("> ");
@@ -75,30 +205,31 @@ public class JdkLiftController
             if ("exit".equalsIgnoreCase(cmd)) {
                 break;
             }
-            if (cmd.isEmpty()) {
-                continue;
-            }
-            try {
-                if (cmd.startsWith("q")) {
-                    synchronized (lift) {
-                        lift.call(Integer.valueOf(cmd.substring(1)));
-                    }
-                }
-                else if (cmd.startsWith("w")) {
-                    synchronized (lift) {
-                        lift.go(Integer.valueOf(cmd.substring(1)));
-                    }
-                }
-                else {
-                    log("Unknown command: " + cmd);
-                }
+            parser.parse(ByteBuffer.wrap((cmd + "\n").getBytes(StandardCharsets.US_ASCII)));
+        }
+        try {
+            if (server != null) {
+                server.stop();
             }
-            catch (Exception e) {
-                log("Error: " + e.getMessage());
+            scheduler.stop();
+            actor.stop();
+            events.close();
+            if (journal != null) {
+                journal.close();
             }
+            log("GOODBYE");
+            eventLog.stop();
+            clock.stop();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException e) {
+            logError(e);
+        }
+        finally {
+            metrics.unregisterMBean(metricsName);
         }
-        timer.cancel();
-        log("GOODBYE");
     }
 
 }
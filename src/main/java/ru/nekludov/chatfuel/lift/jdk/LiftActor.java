@@ -0,0 +1,90 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Однопоточный исполнитель команд для модели лифта.
+ *
+ * Все обращения к модели (нажатия кнопок, срабатывания таймеров) оформляются командами и
+ * ставятся в неблокирующую очередь; единственный поток актора выполняет их по очереди.
+ * Так модель остается однопоточной без synchronized, а отправители не ждут друг друга и сам лифт.
+ */
+public class LiftActor
+{
+
+    private final MpscQueue<Runnable> queue = new MpscQueue<>();
+    private final Consumer<Throwable> errorHandler;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+    private volatile boolean parked;
+
+    public LiftActor(String name, Consumer<Throwable> errorHandler)
+    {
+        this.errorHandler = errorHandler;
+        this.thread = new Thread(this::loop, name);
+    }
+
+    public void start()
+    {
+        thread.start();
+    }
+
+    /**
+     * Поставить команду в очередь. Можно вызывать из любого потока.
+     */
+    public void submit(Runnable command)
+    {
+        queue.offer(command);
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Выполняется ли вызывающий код в потоке актора.
+     */
+    public boolean inActorThread()
+    {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Остановить поток актора после выполнения уже поставленных команд.
+     */
+    public void stop() throws InterruptedException
+    {
+        submit(() -> running = false);
+        thread.join();
+    }
+
+    private void loop()
+    {
+        while (running) {
+            Runnable command = queue.poll();
+            if (command != null) {
+                execute(command);
+                continue;
+            }
+            parked = true;
+            // повторная проверка после выставления флага: иначе можно "проспать" команду,
+            // добавленную до того, как отправитель увидел флаг
+            if (queue.isEmpty()) {
+                LockSupport.park(this);
+            }
+            parked = false;
+        }
+    }
+
+    private void execute(Runnable command)
+    {
+        try {
+            command.run();
+        }
+        catch (Throwable e) {
+            errorHandler.accept(e);
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+/**
+ * Событие лифта для подписчиков {@link LiftEventPublisher} (неизменяемое).
+ * Типы событий соответствуют методам {@link Lift.Listener}.
+ */
+public final class LiftEvent
+{
+
+    public enum Type
+    {
+        DOOR_OPENED, DOOR_CLOSED, ENTER_FLOOR, CALL, REQUEST, GO, CALL_SERVED, GO_SERVED, BOARD, ALIGHT
+    }
+
+    private final Type type;
+    private final long time;
+    private final int floor;
+    private final Lift.Direction direction;
+    private final int value;
+
+    LiftEvent(Type type, long time, int floor, Lift.Direction direction, int value)
+    {
+        this.type = type;
+        this.time = time;
+        this.floor = floor;
+        this.direction = direction;
+        this.value = value;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * Время события по часам издателя.
+     */
+    public long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * Этаж события (для REQUEST - этаж вызова) или {@link Lift#NO_FLOOR} для событий дверей и загрузки.
+     */
+    public int getFloor()
+    {
+        return floor;
+    }
+
+    /**
+     * Направление вызова для CALL и CALL_SERVED, для остальных событий null.
+     */
+    public Lift.Direction getDirection()
+    {
+        return direction;
+    }
+
+    /**
+     * Этаж назначения для REQUEST, число пассажиров для BOARD и ALIGHT, для остальных событий 0.
+     */
+    public int getValue()
+    {
+        return value;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder().append(type);
+        if (floor != Lift.NO_FLOOR) {
+            sb.append(' ').append(floor);
+        }
+        if (direction != null) {
+            sb.append(' ').append(direction);
+        }
+        if (value != 0) {
+            sb.append(' ').append(value);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,333 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Издатель событий лифта для нескольких подписчиков (панели, метрики, журналы) с обратным давлением
+ * ({@link Flow}). Подключается к лифту как обычный {@link Lift.Listener}.
+ *
+ * У каждого подписчика свой ограниченный кольцевой буфер "один писатель - один читатель" без блокировок:
+ * поток лифта только кладет событие в буферы и будит доставку, а события подписчику передает executor,
+ * не больше, чем подписчик запросил ({@link Flow.Subscription#request(long)}).
+ * Если буфер подписчика заполнен (подписчик не успевает или не запрашивает событий),
+ * событие для него отбрасывается и учитывается в {@link #getDropped()} - медленный подписчик никогда
+ * не задерживает лифт и не мешает другим подписчикам.
+ *
+ * События должны приходить из одного потока за раз (как и все обращения к модели лифта);
+ * подписываться и отменять подписку можно из любого потока.
+ */
+public class LiftEventPublisher implements Flow.Publisher<LiftEvent>, Lift.Listener
+{
+
+    private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+
+    private final LongSupplier clock;
+    private final Executor executor;
+    private final int bufferSize;
+    private final Consumer<Throwable> errorHandler;
+
+    // пишется под монитором издателя, читается потоком лифта без блокировок
+    private volatile Subscription[] subscriptions = NO_SUBSCRIPTIONS;
+    private boolean closed;
+
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param clock время событий (например, {@link CachedClock})
+     * @param executor поток доставки событий подписчикам
+     * @param bufferSize размер буфера каждого подписчика (округляется вверх до степени двойки)
+     */
+    public LiftEventPublisher(LongSupplier clock, Executor executor, int bufferSize, Consumer<Throwable> errorHandler)
+    {
+        checkArgument(bufferSize > 0 && bufferSize <= 1 << 30, "Wrong buffer size");
+        this.clock = clock;
+        this.executor = executor;
+        int size = Integer.highestOneBit(bufferSize);
+        this.bufferSize = size < bufferSize ? size << 1 : size;
+        this.errorHandler = errorHandler;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super LiftEvent> subscriber)
+    {
+        checkNotNull(subscriber);
+        Subscription subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        synchronized (this) {
+            if (closed) {
+                subscription.done = true;
+            }
+            else {
+                Subscription[] current = subscriptions;
+                Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = subscription;
+                subscriptions = updated;
+            }
+        }
+        subscription.signal();
+    }
+
+    private synchronized void remove(Subscription subscription)
+    {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] updated = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                subscriptions = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Завершить поток событий: подписчики получат оставшиеся в буферах события и onComplete.
+     */
+    public void close()
+    {
+        Subscription[] current;
+        synchronized (this) {
+            closed = true;
+            current = subscriptions;
+            subscriptions = NO_SUBSCRIPTIONS;
+        }
+        for (Subscription subscription : current) {
+            subscription.done = true;
+            subscription.signal();
+        }
+    }
+
+    public int getSubscriberCount()
+    {
+        return subscriptions.length;
+    }
+
+    /**
+     * Сколько событий не досталось подписчикам из-за заполненных буферов (по всем подписчикам).
+     */
+    public long getDropped()
+    {
+        return dropped.sum();
+    }
+
+    @Override
+    public void onDoorOpened()
+    {
+        publish(LiftEvent.Type.DOOR_OPENED, Lift.NO_FLOOR, null, 0);
+    }
+
+    @Override
+    public void onDoorClosed()
+    {
+        publish(LiftEvent.Type.DOOR_CLOSED, Lift.NO_FLOOR, null, 0);
+    }
+
+    @Override
+    public void onEnterFloor(int floor)
+    {
+        publish(LiftEvent.Type.ENTER_FLOOR, floor, null, 0);
+    }
+
+    @Override
+    public void onCall(int floor, Lift.Direction direction)
+    {
+        publish(LiftEvent.Type.CALL, floor, direction, 0);
+    }
+
+    @Override
+    public void onRequest(int origin, int destination)
+    {
+        publish(LiftEvent.Type.REQUEST, origin, null, destination);
+    }
+
+    @Override
+    public void onGo(int floor)
+    {
+        publish(LiftEvent.Type.GO, floor, null, 0);
+    }
+
+    @Override
+    public void onCallServed(int floor, Lift.Direction direction)
+    {
+        publish(LiftEvent.Type.CALL_SERVED, floor, direction, 0);
+    }
+
+    @Override
+    public void onGoServed(int floor)
+    {
+        publish(LiftEvent.Type.GO_SERVED, floor, null, 0);
+    }
+
+    @Override
+    public void onBoard(int passengers)
+    {
+        publish(LiftEvent.Type.BOARD, Lift.NO_FLOOR, null, passengers);
+    }
+
+    @Override
+    public void onAlight(int passengers)
+    {
+        publish(LiftEvent.Type.ALIGHT, Lift.NO_FLOOR, null, passengers);
+    }
+
+    private void publish(LiftEvent.Type type, int floor, Lift.Direction direction, int value)
+    {
+        Subscription[] current = subscriptions;
+        if (current.length == 0) {
+            return;
+        }
+        LiftEvent event = new LiftEvent(type, clock.getAsLong(), floor, direction, value);
+        for (Subscription subscription : current) {
+            if (subscription.offer(event)) {
+                subscription.signal();
+            }
+            else {
+                dropped.increment();
+            }
+        }
+    }
+
+    private final class Subscription implements Flow.Subscription
+    {
+
+        private final Flow.Subscriber<? super LiftEvent> subscriber;
+
+        private final LiftEvent[] buffer = new LiftEvent[bufferSize];
+        private final int mask = bufferSize - 1;
+        // номер следующего события для записи (только поток лифта)
+        private final AtomicLong tail = new AtomicLong();
+        // номер следующего события для чтения (только доставка)
+        private final AtomicLong head = new AtomicLong();
+
+        private final AtomicLong requested = new AtomicLong();
+        // сколько раз будили доставку; доставка выполняется одним потоком за раз
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private volatile Throwable error;
+
+        Subscription(Flow.Subscriber<? super LiftEvent> subscriber)
+        {
+            this.subscriber = subscriber;
+        }
+
+        boolean offer(LiftEvent event)
+        {
+            long t = tail.get();
+            if (t - head.get() == buffer.length) {
+                return false;
+            }
+            buffer[(int) t & mask] = event;
+            tail.lazySet(t + 1);
+            return true;
+        }
+
+        private LiftEvent poll()
+        {
+            long h = head.get();
+            if (h == tail.get()) {
+                return null;
+            }
+            int index = (int) h & mask;
+            LiftEvent event = buffer[index];
+            buffer[index] = null;
+            head.lazySet(h + 1);
+            return event;
+        }
+
+        @Override
+        public void request(long n)
+        {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Non-positive request " + n);
+            }
+            else {
+                requested.getAndAccumulate(n, (r, add) -> r + add < 0 ? Long.MAX_VALUE : r + add);
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel()
+        {
+            if (!cancelled) {
+                cancelled = true;
+                remove(this);
+            }
+        }
+
+        void signal()
+        {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                }
+                catch (RuntimeException e) {
+                    cancel();
+                    errorHandler.accept(e);
+                }
+            }
+        }
+
+        private void drain()
+        {
+            int missed = 1;
+            try {
+                while (true) {
+                    if (cancelled) {
+                        return;
+                    }
+                    Throwable e = error;
+                    if (e != null) {
+                        cancel();
+                        subscriber.onError(e);
+                        return;
+                    }
+                    long r = requested.get();
+                    long emitted = 0;
+                    while (emitted != r && !cancelled) {
+                        LiftEvent event = poll();
+                        if (event == null) {
+                            break;
+                        }
+                        subscriber.onNext(event);
+                        emitted++;
+                    }
+                    if (emitted != 0 && r != Long.MAX_VALUE) {
+                        requested.addAndGet(-emitted);
+                    }
+                    if (done && !cancelled && head.get() == tail.get()) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    missed = wip.addAndGet(-missed);
+                    if (missed == 0) {
+                        return;
+                    }
+                }
+            }
+            catch (Throwable e) {
+                // подписчик не должен бросать исключения - отключаем его
+                cancel();
+                errorHandler.accept(e);
+            }
+        }
+
+    }
+
+}
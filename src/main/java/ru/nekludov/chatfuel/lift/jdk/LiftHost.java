@@ -0,0 +1,355 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.LiftSnapshot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Хост для большого количества лифтов (например, всех домов одного заказчика) в одной JVM:
+ * лифты распределяются по фиксированному набору потоков-циклов событий ({@link LiftActor}, обычно по одному на ядро),
+ * вместо отдельных потоков актора и таймера на каждый лифт, как в {@link JdkLiftController}.
+ *
+ * Лифты делятся на секции по хэшу идентификатора, секция целиком принадлежит одному циклу: все команды лифта
+ * (нажатия кнопок и срабатывания таймеров) выполняются в потоке этого цикла, так что модель лифта остается
+ * однопоточной. Таймеры всех лифтов - одно общее колесо ({@link HashedWheelScheduler}), сработавшие задачи
+ * передаются циклу секции. Задержки лифтов - в миллисекундах (как в {@link JdkLiftController},
+ * единица времени параметров лифта - Config.getTimeResolution() миллисекунд).
+ *
+ * Нагрузка выравнивается переносом секций между циклами ({@link #movePartition}, {@link #rebalance()}).
+ * При переносе новый цикл откладывает команды секции, пока старый не выполнит уже поставленные в его очередь,
+ * а команды, попавшие в старый цикл после переноса, пересылаются новому - лифт никогда не выполняется
+ * в двух потоках сразу. Порядок команд одного отправителя сохраняется, кроме команд, отправленных
+ * во время переноса секции (как если бы их отправили из разных потоков).
+ */
+public class LiftHost
+{
+
+    private final LiftActor[] loops;
+    private final Partition[] partitions;
+    private final HashedWheelScheduler timer;
+
+    // под монитором хоста: выполненные командами секций на момент прошлого выравнивания
+    private final long[] balancedExecuted;
+
+    /**
+     * @param loopCount количество циклов событий (потоков)
+     * @param partitionCount количество секций - единиц переноса нагрузки (лучше в несколько раз больше циклов)
+     */
+    public LiftHost(String name, int loopCount, int partitionCount, Consumer<Throwable> errorHandler)
+    {
+        checkArgument(loopCount > 0, "Wrong loop count");
+        checkArgument(partitionCount >= loopCount, "Wrong partition count");
+        loops = new LiftActor[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new LiftActor(name + "-loop-" + i, errorHandler);
+        }
+        partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i % loopCount);
+        }
+        balancedExecuted = new long[partitionCount];
+        // колесо только передает сработавшие задачи циклам секций
+        timer = new HashedWheelScheduler(name + "-timer", 10, TimeUnit.MILLISECONDS, 512, TimeUnit.MILLISECONDS,
+                Runnable::run, errorHandler);
+    }
+
+    public void start()
+    {
+        for (LiftActor loop : loops) {
+            loop.start();
+        }
+    }
+
+    /**
+     * Остановить таймеры и циклы после выполнения уже поставленных команд.
+     */
+    public void stop() throws InterruptedException
+    {
+        timer.stop();
+        for (LiftActor loop : loops) {
+            loop.stop();
+        }
+    }
+
+    public int getLoopCount()
+    {
+        return loops.length;
+    }
+
+    public int getPartitionCount()
+    {
+        return partitions.length;
+    }
+
+    /**
+     * Секция лифта с заданным идентификатором.
+     */
+    public int partitionOf(String liftId)
+    {
+        return Math.floorMod(liftId.hashCode(), partitions.length);
+    }
+
+    /**
+     * Цикл, которому принадлежит секция.
+     */
+    public int getLoop(int partition)
+    {
+        return partitions[partition].loop;
+    }
+
+    /**
+     * Сколько команд выполнено в секции с запуска.
+     */
+    public long getExecuted(int partition)
+    {
+        return partitions[partition].executed;
+    }
+
+    /**
+     * Создать лифт; слушатель вызывается в потоке цикла секции лифта.
+     */
+    public synchronized HostedLift addLift(String id, Lift.Config cfg, Lift.MoveStrategy moveStrategy,
+                                           Lift.Listener listener)
+    {
+        Partition partition = partitions[partitionOf(id)];
+        partition.lifts++;
+        return new HostedLift(id, partition, cfg, moveStrategy, listener);
+    }
+
+    /**
+     * Перенести секцию в другой цикл.
+     * @return завершается, когда новый цикл начал выполнять команды секции
+     */
+    public synchronized CompletableFuture<Void> movePartition(int index, int loop)
+    {
+        checkArgument(loop >= 0 && loop < loops.length, "Invalid loop");
+        Partition partition = partitions[index];
+        checkState(!partition.moving, "Partition is moving");
+        CompletableFuture<Void> moved = new CompletableFuture<>();
+        LiftActor source = loops[partition.loop];
+        if (partition.loop == loop) {
+            moved.complete(null);
+            return moved;
+        }
+        LiftActor target = loops[loop];
+        partition.moving = true;
+        // сначала откладываем команды в новом цикле, затем переключаем секцию
+        partition.held = true;
+        partition.loop = loop;
+        // когда старый цикл дойдет до этой команды, команд секции в его очереди до переноса больше нет
+        source.submit(() -> target.submit(() -> {
+            partition.held = false;
+            Task task;
+            while ((task = partition.backlog.poll()) != null) {
+                task.execute();
+            }
+            partition.moving = false;
+            moved.complete(null);
+        }));
+        return moved;
+    }
+
+    /**
+     * Выровнять нагрузку циклов: переносит секции из самого нагруженного цикла в наименее нагруженный,
+     * пока это уменьшает разницу между ними. Нагрузка секции - выполненные ею команды с прошлого выравнивания.
+     * Секции, которые еще переносятся, не трогает.
+     * @return завершается количеством перенесенных секций, когда все переносы закончены
+     */
+    public synchronized CompletableFuture<Integer> rebalance()
+    {
+        long[] load = new long[partitions.length];
+        long[] loopLoad = new long[loops.length];
+        int[] loopOf = new int[partitions.length];
+        for (int i = 0; i < partitions.length; i++) {
+            long executed = partitions[i].executed;
+            load[i] = executed - balancedExecuted[i];
+            balancedExecuted[i] = executed;
+            loopOf[i] = partitions[i].loop;
+            loopLoad[loopOf[i]] += load[i];
+        }
+        List<CompletableFuture<Void>> moves = new ArrayList<>();
+        for (int step = 0; step < partitions.length; step++) {
+            int max = 0;
+            int min = 0;
+            for (int l = 1; l < loops.length; l++) {
+                if (loopLoad[l] > loopLoad[max]) {
+                    max = l;
+                }
+                if (loopLoad[l] < loopLoad[min]) {
+                    min = l;
+                }
+            }
+            // самая нагруженная секция, перенос которой уменьшает разницу
+            long gap = loopLoad[max] - loopLoad[min];
+            int best = -1;
+            for (int i = 0; i < partitions.length; i++) {
+                if (loopOf[i] == max && !partitions[i].moving && load[i] > 0 && load[i] < gap
+                        && (best < 0 || load[i] > load[best])) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            moves.add(movePartition(best, min));
+            loopOf[best] = min;
+            loopLoad[max] -= load[best];
+            loopLoad[min] += load[best];
+        }
+        int moved = moves.size();
+        return CompletableFuture.allOf(moves.toArray(new CompletableFuture<?>[0])).thenApply(v -> moved);
+    }
+
+    /**
+     * Сколько лифтов в секции.
+     */
+    public synchronized int getLiftCount(int partition)
+    {
+        return partitions[partition].lifts;
+    }
+
+    private final class Partition
+    {
+        // цикл-владелец; меняется при переносе
+        volatile int loop;
+        // новый цикл откладывает команды, пока старый не выполнит свои
+        volatile boolean held;
+        volatile boolean moving;
+        // пишет только цикл-владелец
+        volatile long executed;
+        // отложенные команды, только в потоке нового цикла
+        final ArrayDeque<Task> backlog = new ArrayDeque<>();
+        // под монитором хоста
+        int lifts;
+
+        Partition(int loop)
+        {
+            this.loop = loop;
+        }
+
+        void submit(Task task)
+        {
+            loops[loop].submit(task);
+        }
+
+        boolean inOwnerThread()
+        {
+            return loops[loop].inActorThread();
+        }
+    }
+
+    /**
+     * Команда лифта: выполняется только в цикле, которому принадлежит секция лифта.
+     */
+    private static final class Task implements Runnable
+    {
+        final Partition partition;
+        final Runnable command;
+
+        Task(Partition partition, Runnable command)
+        {
+            this.partition = partition;
+            this.command = command;
+        }
+
+        @Override
+        public void run()
+        {
+            if (!partition.inOwnerThread()) {
+                // сработавший таймер или команда, попавшая в старый цикл после переноса
+                partition.submit(this);
+            }
+            else if (partition.held) {
+                partition.backlog.add(this);
+            }
+            else {
+                execute();
+            }
+        }
+
+        void execute()
+        {
+            partition.executed++;
+            command.run();
+        }
+    }
+
+    /**
+     * Лифт на хосте. Методы можно вызывать из любого потока - команды выполняются в цикле секции лифта.
+     */
+    public final class HostedLift
+    {
+
+        private final String id;
+        private final Partition partition;
+        private final Lift lift;
+
+        private HostedLift(String id, Partition partition, Lift.Config cfg, Lift.MoveStrategy moveStrategy,
+                           Lift.Listener listener)
+        {
+            this.id = id;
+            this.partition = partition;
+            this.lift = new Lift(cfg, moveStrategy, new Lift.Scheduler()
+            {
+                @Override
+                public void schedule(long delay, Runnable command)
+                {
+                    timer.schedule(delay, new Task(partition, command));
+                }
+
+                @Override
+                public long now()
+                {
+                    return timer.now();
+                }
+            }, listener);
+            lift.enableSnapshots();
+        }
+
+        public String getId()
+        {
+            return id;
+        }
+
+        public int getPartition()
+        {
+            return partitionOf(id);
+        }
+
+        public void call(int floor, Lift.Direction direction)
+        {
+            execute(lift -> lift.call(floor, direction));
+        }
+
+        public void go(int floor)
+        {
+            execute(lift -> lift.go(floor));
+        }
+
+        /**
+         * Выполнить действие с моделью лифта в цикле его секции.
+         */
+        public void execute(Consumer<Lift> action)
+        {
+            partition.submit(new Task(partition, () -> action.accept(lift)));
+        }
+
+        /**
+         * Состояние лифта после последнего перехода; читается без обращения к циклу секции.
+         */
+        public LiftSnapshot getSnapshot()
+        {
+            return lift.getSnapshot();
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Неблокирующая очередь "много писателей - один читатель" (алгоритм Д. Вьюкова).
+ *
+ * Добавление - один getAndSet и одна запись ссылки, без циклов CAS, поэтому писатели не ждут друг друга.
+ * Извлекать элементы может только один поток.
+ */
+class MpscQueue<E>
+{
+
+    private static final class Node<E>
+    {
+        E value;
+        volatile Node<E> next;
+
+        Node(E value)
+        {
+            this.value = value;
+        }
+    }
+
+    // последний добавленный узел (общий для писателей)
+    private final AtomicReference<Node<E>> head;
+    // узел-заглушка перед первым элементом (только для читателя)
+    private Node<E> tail;
+
+    MpscQueue()
+    {
+        Node<E> stub = new Node<>(null);
+        head = new AtomicReference<>(stub);
+        tail = stub;
+    }
+
+    /**
+     * Добавить элемент. Можно вызывать из любого потока.
+     */
+    void offer(E value)
+    {
+        Node<E> node = new Node<>(value);
+        Node<E> prev = head.getAndSet(node);
+        // между getAndSet и этой записью читатель видит очередь пустой - это допустимо,
+        // элемент станет виден сразу после записи
+        prev.next = node;
+    }
+
+    /**
+     * Извлечь элемент. Только из потока-читателя.
+     * @return элемент или null, если очередь пуста
+     */
+    E poll()
+    {
+        Node<E> next = tail.next;
+        if (next == null) {
+            return null;
+        }
+        E value = next.value;
+        next.value = null;
+        tail = next;
+        return value;
+    }
+
+    /**
+     * Только из потока-читателя.
+     */
+    boolean isEmpty()
+    {
+        return tail.next == null;
+    }
+
+}
@@ -0,0 +1,140 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import ru.nekludov.chatfuel.lift.model.ButtonPresses;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.net.CommandHandler;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Прием нажатий кнопок с "дребезгом": нажатия за окно времени копятся в битовой карте и передаются лифту
+ * одной пачкой ({@link Lift#press(ButtonPresses)}), так что лифт решает, куда ехать, один раз на окно.
+ *
+ * Нажимать можно из любого потока: нажатие - одна атомарная операция над словом карты,
+ * повторное нажатие уже нажатой кнопки - только чтение. Первое нажатие в окне планирует сброс пачки
+ * через window; планировщик должен выполнять сброс в потоке лифта (например, через {@link LiftActor}).
+ */
+public class PressCoalescer implements CommandHandler
+{
+
+    // разделы битовой карты
+    private static final int UP = 0;
+    private static final int DOWN = 1;
+    private static final int ANY = 2;
+    private static final int GO = 3;
+    private static final int SECTIONS = 4;
+
+    private final Lift lift;
+    private final Lift.Scheduler scheduler;
+    private final long window;
+
+    private final int lowestFloor;
+    private final int highestFloor;
+    private final int wordsPerSection;
+
+    // нажатые, но еще не переданные лифту кнопки (пишут все потоки)
+    private final AtomicLongArray pending;
+    // сброс пачки уже запланирован
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // пачка для лифта (только в потоке лифта)
+    private final ButtonPresses batch;
+    private final Runnable flushCommand = this::flush;
+
+    /**
+     * @param window окно накопления нажатий в единицах планировщика
+     */
+    public PressCoalescer(Lift.Config cfg, Lift lift, Lift.Scheduler scheduler, long window)
+    {
+        checkArgument(window >= 0, "Wrong window");
+        this.lift = lift;
+        this.scheduler = scheduler;
+        this.window = window;
+        lowestFloor = cfg.getLowestFloor();
+        highestFloor = lowestFloor + cfg.getFloorCount() - 1;
+        wordsPerSection = (cfg.getFloorCount() + 63) >>> 6;
+        pending = new AtomicLongArray(SECTIONS * wordsPerSection);
+        batch = new ButtonPresses(lowestFloor, highestFloor);
+    }
+
+    @Override
+    public void call(int floor, Lift.Direction direction)
+    {
+        checkFloor(floor);
+        checkArgument(!(direction == Lift.Direction.UP && floor == highestFloor)
+                && !(direction == Lift.Direction.DOWN && floor == lowestFloor), "Invalid call direction");
+        press(direction == Lift.Direction.UP ? UP : direction == Lift.Direction.DOWN ? DOWN : ANY, floor);
+    }
+
+    @Override
+    public void go(int floor)
+    {
+        checkFloor(floor);
+        press(GO, floor);
+    }
+
+    private void press(int section, int floor)
+    {
+        int index = floor - lowestFloor;
+        int i = section * wordsPerSection + (index >>> 6);
+        long mask = 1L << index;
+        // уже ждет в пачке - ничего не пишем
+        if ((pending.get(i) & mask) != 0) {
+            return;
+        }
+        if ((pending.getAndAccumulate(i, mask, (a, b) -> a | b) & mask) != 0) {
+            return;
+        }
+        if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+            scheduler.schedule(window, flushCommand);
+        }
+    }
+
+    /**
+     * Передать накопленные нажатия лифту. Выполняется в потоке лифта.
+     */
+    void flush()
+    {
+        // сначала снимаем флаг: нажатие после него запланирует новый сброс, а не потеряется
+        scheduled.set(false);
+        for (int section = 0; section < SECTIONS; section++) {
+            for (int w = 0; w < wordsPerSection; w++) {
+                long word = pending.getAndSet(section * wordsPerSection + w, 0);
+                while (word != 0) {
+                    int floor = lowestFloor + (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    add(section, floor);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            lift.press(batch);
+        }
+    }
+
+    private void add(int section, int floor)
+    {
+        switch (section) {
+            case UP:
+                batch.call(floor, Lift.Direction.UP);
+                break;
+            case DOWN:
+                batch.call(floor, Lift.Direction.DOWN);
+                break;
+            case ANY:
+                batch.call(floor, Lift.Direction.NONE);
+                break;
+            default:
+                batch.go(floor);
+        }
+    }
+
+    private void checkFloor(int floor)
+    {
+        checkArgument(floor >= lowestFloor && floor <= highestFloor, "Invalid floor");
+    }
+
+}
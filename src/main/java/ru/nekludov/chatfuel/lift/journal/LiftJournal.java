@@ -0,0 +1,579 @@
+package ru.nekludov.chatfuel.lift.journal;
+
+import ru.nekludov.chatfuel.lift.model.FloorSet;
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Журнал событий лифта для восстановления незавершенных вызовов после перезапуска.
+ *
+ * Журнал - слушатель лифта: каждое событие (нажатие кнопки, запрос с этажом назначения, обслуживание вызова,
+ * въезд на этаж) дописывается восьмибайтной записью в отображенный в память файл, без системных вызовов
+ * и создания объектов.
+ * Параллельно журнал ведет в памяти копию состояния (этаж, нажатые кнопки и этажи назначения ожидающих
+ * пассажиров).
+ *
+ * Файл журнала разделен на два сегмента по capacity записей. Когда сегмент заполняется, журнал продолжается
+ * в другом, а состояние на момент переключения сохраняется компактным снимком в фоне (executor), не задерживая
+ * лифт. Поэтому при восстановлении читается снимок и не больше двух сегментов - время восстановления
+ * не зависит от того, сколько проработал лифт.
+ *
+ * Снимок и сегменты помечены номером поколения: к снимку применяются записи сегмента его поколения и следующего
+ * (если следующий снимок сохранить не успели). Сегмент переписывается, только когда снимок, заменяющий
+ * его записи, сохранен на диск, так что сбой в любой момент не теряет и не повторяет записи.
+ * Если снимок сохранить не удалось, ошибка передается errorHandler, а журнал перестает писаться
+ * (на диске остается состояние на момент сбоя); лифт при этом работает дальше.
+ *
+ * Записи в отображенной памяти переживают падение процесса (их сохраняет ОС);
+ * для защиты от сбоя питания нужно вызывать {@link #sync()}.
+ * После восстановления лифт стоит на последнем этаже с закрытыми дверями, а незавершенные вызовы и запросы
+ * нажимаются заново.
+ *
+ * Как и модель лифта, журнал однопоточный (в фоне только пишутся снимки).
+ */
+public class LiftJournal implements Lift.Listener, AutoCloseable
+{
+
+    static final String JOURNAL_FILE = "lift.journal";
+    static final String SNAPSHOT_FILE = "lift.snapshot";
+
+    private static final int SNAPSHOT_MAGIC = 0x4C494654;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 8;
+
+    // типы записей (0 - конец журнала)
+    private static final byte END = 0;
+    private static final byte CALL = 1;
+    private static final byte GO = 2;
+    private static final byte CALL_SERVED = 3;
+    private static final byte GO_SERVED = 4;
+    private static final byte ENTER_FLOOR = 5;
+    private static final byte REQUEST = 6;
+
+    // этаж назначения запроса хранится в записи двумя байтами (номер от нижнего этажа)
+    private static final int MAX_FLOORS = 1 << 16;
+
+    private static final Lift.Direction[] DIRECTIONS = Lift.Direction.values();
+
+    private final Path directory;
+    private final int lowestFloor;
+    private final int floorCount;
+    private final int capacity;
+    private final Executor executor;
+    private final Consumer<Throwable> errorHandler;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer[] segments = new ByteBuffer[2];
+    // сегмент, в который пишется журнал, и его поколение
+    private ByteBuffer segment;
+    private int active;
+    private long epoch;
+    // последний сохраненный снимок (пишется в фоне)
+    private volatile long savedEpoch;
+    private CompletableFuture<Void> saving = CompletableFuture.completedFuture(null);
+    private boolean stopped;
+
+    // копия состояния лифта
+    private int currentFloor = Lift.NO_FLOOR;
+    private final FloorSet upCallSet;
+    private final FloorSet downCallSet;
+    private final FloorSet anyCallSet;
+    private final FloorSet goSet;
+    // этажи назначения ожидающих пассажиров по этажу вызова (создаются при первом запросе)
+    private FloorSet[] upDestinations;
+    private FloorSet[] downDestinations;
+    // последний запрос: пассажир ждет, только если за запросом следует вызов с этажа
+    // (иначе он сразу вошел в лифт и этаж назначения нажат в лифте)
+    private int requestOrigin = Lift.NO_FLOOR;
+    private int requestDestination;
+
+    /**
+     * Открыть журнал в каталоге, прочитав сохраненное там состояние (если есть).
+     * @param capacity сколько записей журнала хранить в сегменте до очередного снимка
+     * @param executor поток записи снимков
+     * @param errorHandler получает ошибки записи снимков
+     */
+    public LiftJournal(Path directory, Lift.Config cfg, int capacity, Executor executor,
+                       Consumer<Throwable> errorHandler) throws IOException
+    {
+        checkArgument(capacity > 0 && capacity <= (Integer.MAX_VALUE / 2 - HEADER_SIZE) / RECORD_SIZE - 1,
+                "Wrong capacity");
+        checkArgument(cfg.getFloorCount() <= MAX_FLOORS, "Too many floors for journal");
+        this.directory = directory;
+        this.lowestFloor = cfg.getLowestFloor();
+        this.floorCount = cfg.getFloorCount();
+        this.capacity = capacity;
+        this.executor = executor;
+        this.errorHandler = errorHandler;
+        int highestFloor = lowestFloor + floorCount - 1;
+        upCallSet = new FloorSet(lowestFloor, highestFloor);
+        downCallSet = new FloorSet(lowestFloor, highestFloor);
+        anyCallSet = new FloorSet(lowestFloor, highestFloor);
+        goSet = new FloorSet(lowestFloor, highestFloor);
+
+        Files.createDirectories(directory);
+        readSnapshot();
+
+        channel = FileChannel.open(directory.resolve(JOURNAL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // место под терминатор после последней записи
+        int segmentSize = HEADER_SIZE + (capacity + 1) * RECORD_SIZE;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2 * segmentSize);
+        for (int i = 0; i < segments.length; i++) {
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(i * segmentSize);
+            slice.limit((i + 1) * segmentSize);
+            segments[i] = slice.slice();
+        }
+        long next = epoch + 1;
+        for (ByteBuffer s : segments) {
+            next = Math.max(next, s.getLong(0) + 1);
+        }
+        replay(epoch);
+        replay(epoch + 1);
+
+        // начинаем с чистого журнала: все прочитанное уходит в снимок нового поколения
+        epoch = next;
+        writeSnapshot(epoch, new State());
+        savedEpoch = epoch;
+        startSegment(0);
+    }
+
+    /**
+     * Последний этаж лифта по журналу или {@link Lift#NO_FLOOR}, если журнал пуст.
+     */
+    public int getCurrentFloor()
+    {
+        return currentFloor;
+    }
+
+    /**
+     * Восстановить в лифте (только что созданном) сохраненное в журнале состояние:
+     * этаж, незавершенные вызовы и запросы.
+     */
+    public void restore(Lift lift)
+    {
+        // копия: нажатия кнопок в лифте попадут обратно в этот журнал
+        State state = new State();
+
+        if (state.floor != Lift.NO_FLOOR) {
+            lift.restoreFloor(state.floor);
+        }
+        for (int f = state.go.nextSetFloor(lowestFloor); f != Lift.NO_FLOOR; f = state.go.nextSetFloor(f + 1)) {
+            lift.go(f);
+        }
+        restoreRequests(lift, state.upDestinations);
+        restoreRequests(lift, state.downDestinations);
+        for (int f = lowestFloor; f < lowestFloor + floorCount; f++) {
+            if (state.any.get(f)) {
+                lift.call(f, Lift.Direction.NONE);
+                continue;
+            }
+            if (state.up.get(f)) {
+                lift.call(f, Lift.Direction.UP);
+            }
+            if (state.down.get(f)) {
+                lift.call(f, Lift.Direction.DOWN);
+            }
+        }
+    }
+
+    private void restoreRequests(Lift lift, FloorSet[] requests)
+    {
+        if (requests == null) {
+            return;
+        }
+        for (int i = 0; i < requests.length; i++) {
+            FloorSet destinations = requests[i];
+            if (destinations == null) {
+                continue;
+            }
+            for (int f = destinations.nextSetFloor(lowestFloor); f != Lift.NO_FLOOR; f = destinations.nextSetFloor(f + 1)) {
+                lift.request(lowestFloor + i, f);
+            }
+        }
+    }
+
+    /**
+     * Сбросить записанное на диск (защита от сбоя питания, а не только от падения процесса).
+     */
+    public void sync()
+    {
+        buffer.force();
+    }
+
+    /**
+     * Закрыть журнал, дождавшись записи снимка, если она идет.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        saving.join();
+        channel.close();
+    }
+
+    @Override
+    public void onDoorOpened()
+    {
+    }
+
+    @Override
+    public void onDoorClosed()
+    {
+    }
+
+    @Override
+    public void onEnterFloor(int floor)
+    {
+        append(ENTER_FLOOR, Lift.Direction.NONE, floor);
+    }
+
+    @Override
+    public void onCall(int floor, Lift.Direction direction)
+    {
+        append(CALL, direction, floor);
+    }
+
+    @Override
+    public void onRequest(int origin, int destination)
+    {
+        append(REQUEST, destination > origin ? Lift.Direction.UP : Lift.Direction.DOWN, origin, destination);
+    }
+
+    @Override
+    public void onGo(int floor)
+    {
+        append(GO, Lift.Direction.NONE, floor);
+    }
+
+    @Override
+    public void onCallServed(int floor, Lift.Direction direction)
+    {
+        append(CALL_SERVED, direction, floor);
+    }
+
+    @Override
+    public void onGoServed(int floor)
+    {
+        append(GO_SERVED, Lift.Direction.NONE, floor);
+    }
+
+    private void append(byte type, Lift.Direction direction, int floor)
+    {
+        append(type, direction, floor, lowestFloor);
+    }
+
+    private void append(byte type, Lift.Direction direction, int floor, int destination)
+    {
+        if (!stopped && segment.position() == HEADER_SIZE + capacity * RECORD_SIZE) {
+            switchSegment();
+        }
+        if (!stopped) {
+            int position = segment.position();
+            // сначала терминатор, потом тело и последним - тип: недописанная запись читается как конец журнала
+            segment.put(position + RECORD_SIZE, END);
+            segment.put(position + 1, (byte) direction.ordinal());
+            segment.putChar(position + 2, (char) (destination - lowestFloor));
+            segment.putInt(position + 4, floor);
+            segment.put(position, type);
+            segment.position(position + RECORD_SIZE);
+        }
+        apply(type, direction, floor, destination);
+    }
+
+    private void apply(byte type, Lift.Direction direction, int floor, int destination)
+    {
+        int origin = requestOrigin;
+        requestOrigin = Lift.NO_FLOOR;
+        switch (type) {
+            case REQUEST:
+                requestOrigin = floor;
+                requestDestination = destination;
+                break;
+            case CALL:
+                if (floor == origin && direction != Lift.Direction.NONE) {
+                    addDestination(direction, floor, requestDestination);
+                }
+                if (direction != Lift.Direction.DOWN) {
+                    upCallSet.set(floor);
+                }
+                if (direction != Lift.Direction.UP) {
+                    downCallSet.set(floor);
+                }
+                if (direction == Lift.Direction.NONE) {
+                    anyCallSet.set(floor);
+                }
+                break;
+            case GO:
+                goSet.set(floor);
+                break;
+            case CALL_SERVED:
+                if (direction != Lift.Direction.DOWN) {
+                    upCallSet.clear(floor);
+                    clearDestinations(upDestinations, floor);
+                }
+                if (direction != Lift.Direction.UP) {
+                    downCallSet.clear(floor);
+                    clearDestinations(downDestinations, floor);
+                }
+                if (direction == Lift.Direction.NONE) {
+                    anyCallSet.clear(floor);
+                }
+                break;
+            case GO_SERVED:
+                goSet.clear(floor);
+                break;
+            case ENTER_FLOOR:
+                currentFloor = floor;
+                break;
+            default:
+                throw new IllegalStateException("Corrupted journal record " + type);
+        }
+    }
+
+    private void addDestination(Lift.Direction direction, int origin, int destination)
+    {
+        if (upDestinations == null) {
+            upDestinations = new FloorSet[floorCount];
+            downDestinations = new FloorSet[floorCount];
+        }
+        FloorSet[] destinations = direction == Lift.Direction.UP ? upDestinations : downDestinations;
+        int index = origin - lowestFloor;
+        if (destinations[index] == null) {
+            destinations[index] = new FloorSet(lowestFloor, lowestFloor + floorCount - 1);
+        }
+        destinations[index].set(destination);
+    }
+
+    private void clearDestinations(FloorSet[] destinations, int origin)
+    {
+        if (destinations != null && destinations[origin - lowestFloor] != null) {
+            destinations[origin - lowestFloor].clear();
+        }
+    }
+
+    private void replay(long segmentEpoch)
+    {
+        for (ByteBuffer s : segments) {
+            if (s.getLong(0) == segmentEpoch) {
+                replay(s);
+                return;
+            }
+        }
+    }
+
+    private void replay(ByteBuffer records)
+    {
+        int position = HEADER_SIZE;
+        while (position < HEADER_SIZE + capacity * RECORD_SIZE) {
+            byte type = records.get(position);
+            if (type == END) {
+                break;
+            }
+            int direction = records.get(position + 1);
+            int destination = records.getChar(position + 2);
+            int floor = records.getInt(position + 4);
+            if (direction < 0 || direction >= DIRECTIONS.length || floor < lowestFloor
+                    || floor >= lowestFloor + floorCount || destination >= floorCount) {
+                throw new IllegalStateException("Corrupted journal record at " + position);
+            }
+            apply(type, DIRECTIONS[direction], floor, lowestFloor + destination);
+            position += RECORD_SIZE;
+        }
+    }
+
+    /**
+     * Продолжить журнал в другом сегменте следующего поколения, а состояние на этот момент сохранить снимком в фоне.
+     * Записи другого сегмента нужны, пока не сохранен снимок поколения текущего: обычно он давно записан,
+     * иначе ждем его (лифт задерживается, только если снимок пишется дольше, чем заполняется сегмент).
+     */
+    private void switchSegment()
+    {
+        saving.join();
+        if (savedEpoch != epoch) {
+            // ошибку записи снимка уже получил errorHandler
+            stopped = true;
+            return;
+        }
+        State state = new State();
+        long snapshotEpoch = ++epoch;
+        startSegment(1 - active);
+        saving = CompletableFuture.runAsync(() -> save(snapshotEpoch, state), executor);
+    }
+
+    private void startSegment(int index)
+    {
+        active = index;
+        segment = segments[index];
+        // сначала обрываем старые записи, потом меняем поколение
+        segment.put(HEADER_SIZE, END);
+        segment.putLong(0, epoch);
+        segment.position(HEADER_SIZE);
+    }
+
+    private void save(long snapshotEpoch, State state)
+    {
+        try {
+            writeSnapshot(snapshotEpoch, state);
+            savedEpoch = snapshotEpoch;
+        }
+        catch (IOException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    private void readSnapshot() throws IOException
+    {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IllegalStateException("Not a lift snapshot: " + file);
+            }
+            epoch = in.readLong();
+            if (in.readInt() != lowestFloor || in.readInt() != floorCount) {
+                throw new IllegalStateException("Snapshot was written for another floor range: " + file);
+            }
+            currentFloor = in.readInt();
+            readFloors(in, upCallSet);
+            readFloors(in, downCallSet);
+            readFloors(in, anyCallSet);
+            readFloors(in, goSet);
+            for (int count = in.readInt(); count > 0; count--) {
+                int origin = in.readInt();
+                Lift.Direction direction = DIRECTIONS[in.readByte()];
+                for (int destinations = in.readInt(); destinations > 0; destinations--) {
+                    addDestination(direction, origin, in.readInt());
+                }
+            }
+        }
+    }
+
+    private void writeSnapshot(long snapshotEpoch, State state) throws IOException
+    {
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel file = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(file)));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(snapshotEpoch);
+            out.writeInt(lowestFloor);
+            out.writeInt(floorCount);
+            out.writeInt(state.floor);
+            writeFloors(out, state.up);
+            writeFloors(out, state.down);
+            writeFloors(out, state.any);
+            writeFloors(out, state.go);
+            out.writeInt(countRequests(state.upDestinations) + countRequests(state.downDestinations));
+            writeRequests(out, Lift.Direction.UP, state.upDestinations);
+            writeRequests(out, Lift.Direction.DOWN, state.downDestinations);
+            out.flush();
+            // снимок должен попасть на диск раньше, чем заменит прежний и освободит записи журнала
+            file.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFloors(DataOutputStream out, FloorSet set) throws IOException
+    {
+        out.writeInt(set.cardinality());
+        for (int f = set.nextSetFloor(set.getLowestFloor()); f != Lift.NO_FLOOR; f = set.nextSetFloor(f + 1)) {
+            out.writeInt(f);
+        }
+    }
+
+    private static int countRequests(FloorSet[] requests)
+    {
+        int count = 0;
+        if (requests != null) {
+            for (FloorSet destinations : requests) {
+                if (destinations != null && !destinations.isEmpty()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void writeRequests(DataOutputStream out, Lift.Direction direction, FloorSet[] requests) throws IOException
+    {
+        if (requests == null) {
+            return;
+        }
+        for (int i = 0; i < requests.length; i++) {
+            if (requests[i] != null && !requests[i].isEmpty()) {
+                out.writeInt(lowestFloor + i);
+                out.writeByte(direction.ordinal());
+                writeFloors(out, requests[i]);
+            }
+        }
+    }
+
+    private static void readFloors(DataInputStream in, FloorSet set) throws IOException
+    {
+        for (int count = in.readInt(); count > 0; count--) {
+            set.set(in.readInt());
+        }
+    }
+
+    private static FloorSet copy(FloorSet set)
+    {
+        FloorSet copy = new FloorSet(set.getLowestFloor(), set.getHighestFloor());
+        for (int f = set.nextSetFloor(set.getLowestFloor()); f != Lift.NO_FLOOR; f = set.nextSetFloor(f + 1)) {
+            copy.set(f);
+        }
+        return copy;
+    }
+
+    private static FloorSet[] copy(FloorSet[] sets)
+    {
+        if (sets == null) {
+            return null;
+        }
+        FloorSet[] copy = new FloorSet[sets.length];
+        for (int i = 0; i < sets.length; i++) {
+            if (sets[i] != null) {
+                copy[i] = copy(sets[i]);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Копия состояния лифта по журналу (для восстановления и записи снимка в фоне).
+     */
+    private final class State
+    {
+        final int floor = currentFloor;
+        final FloorSet up = copy(upCallSet);
+        final FloorSet down = copy(downCallSet);
+        final FloorSet any = copy(anyCallSet);
+        final FloorSet go = copy(goSet);
+        final FloorSet[] upDestinations = copy(LiftJournal.this.upDestinations);
+        final FloorSet[] downDestinations = copy(LiftJournal.this.downDestinations);
+    }
+
+}
@@ -0,0 +1,162 @@
+package ru.nekludov.chatfuel.lift.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Гистограмма неотрицательных значений (времен ожидания, поездки и т.п.) в духе HdrHistogram.
+ *
+ * Шкала лог-линейная: значения меньше 2^precisionBits хранятся точно, дальше каждый интервал [2^k, 2^(k+1))
+ * делится на 2^(precisionBits-1) равных ячеек, поэтому относительная погрешность не больше 2^(1-precisionBits)
+ * на всем диапазоне long при нескольких тысячах ячеек.
+ *
+ * Запись - вычисление индекса сдвигами и атомарный инкремент без блокировок и аллокаций;
+ * читать (процентили, среднее) можно из любого потока одновременно с записью.
+ */
+public class LatencyHistogram
+{
+
+    private final int precisionBits;
+    private final int subBucketCount;
+    private final int halfCount;
+
+    private final AtomicLongArray counts;
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalSum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram()
+    {
+        this(6);
+    }
+
+    /**
+     * @param precisionBits точность: 2^(1-precisionBits) - максимальная относительная погрешность
+     */
+    public LatencyHistogram(int precisionBits)
+    {
+        checkArgument(precisionBits >= 1 && precisionBits <= 16, "Wrong precision");
+        this.precisionBits = precisionBits;
+        this.subBucketCount = 1 << precisionBits;
+        this.halfCount = subBucketCount >>> 1;
+        counts = new AtomicLongArray(subBucketCount + (63 - precisionBits) * halfCount);
+    }
+
+    /**
+     * Записать значение (отрицательные считаются нулем).
+     */
+    public void record(long value)
+    {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalSum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount()
+    {
+        return totalCount.sum();
+    }
+
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    public double getMean()
+    {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalSum.sum() / count;
+    }
+
+    /**
+     * Значение, не меньше которого percentile процентов записанных значений (с точностью до ячейки).
+     * @param percentile от 0 до 100
+     * @return 0, если значений нет
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        checkArgument(percentile >= 0 && percentile <= 100, "Wrong percentile");
+        long count = totalCount.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Добавить значения другой гистограммы той же точности (например, собранной другим потоком).
+     */
+    public void add(LatencyHistogram other)
+    {
+        checkArgument(other.precisionBits == precisionBits, "Different precision");
+        for (int i = 0; i < counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.add(other.totalCount.sum());
+        totalSum.add(other.totalSum.sum());
+        long otherMax = other.max.get();
+        long current = max.get();
+        while (otherMax > current && !max.compareAndSet(current, otherMax)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Сбросить накопленные значения. Записи, идущие одновременно со сбросом, могут частично потеряться.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalSum.reset();
+        max.set(0);
+    }
+
+    int indexOf(long value)
+    {
+        if (value < subBucketCount) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - precisionBits;
+        int top = (int) (value >>> shift);
+        return subBucketCount + (shift - 1) * halfCount + (top - halfCount);
+    }
+
+    /**
+     * Наибольшее значение, попадающее в ячейку.
+     */
+    long highestValueAt(int index)
+    {
+        if (index < subBucketCount) {
+            return index;
+        }
+        int k = index - subBucketCount;
+        int shift = k / halfCount + 1;
+        long top = k % halfCount + halfCount;
+        return ((top + 1) << shift) - 1;
+    }
+
+}
@@ -0,0 +1,244 @@
+package ru.nekludov.chatfuel.lift.metrics;
+
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Слушатель лифта, собирающий метрики обслуживания:
+ *      * время ожидания - от первого нажатия кнопки вызова на этаже до обслуживания вызова;
+ *      * время поездки - от первого нажатия кнопки этажа в лифте до прибытия на этаж;
+ *      * количество открытий дверей и проеханных этажей.
+ *
+ * События приходят из потока лифта (как и сама модель, запись однопоточная), а читать метрики,
+ * в том числе через JMX, можно из любого потока: времена копятся в {@link LatencyHistogram}, счетчики - в LongAdder.
+ * Обработка события - несколько операций над массивами примитивов, без аллокаций.
+ */
+public class LiftMetrics implements Lift.Listener, LiftMetricsMXBean
+{
+
+    private static final long NOT_PENDING = Long.MIN_VALUE;
+
+    private static final int DIRECTIONS = Lift.Direction.values().length;
+
+    private final LongSupplier clock;
+    private final int lowestFloor;
+
+    // момент первого нажатия еще не обслуженной кнопки (индекс вызова - (f - lowestFloor) * 3 + направление)
+    private final long[] callTime;
+    private final long[] goTime;
+
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LatencyHistogram rideTime = new LatencyHistogram();
+    private final LongAdder doorCycles = new LongAdder();
+    private final LongAdder floorsTraveled = new LongAdder();
+
+    /**
+     * @param clock текущее время (в тех единицах, в которых нужны метрики)
+     */
+    public LiftMetrics(Lift.Config cfg, LongSupplier clock)
+    {
+        this.clock = clock;
+        this.lowestFloor = cfg.getLowestFloor();
+        callTime = new long[cfg.getFloorCount() * DIRECTIONS];
+        goTime = new long[cfg.getFloorCount()];
+        Arrays.fill(callTime, NOT_PENDING);
+        Arrays.fill(goTime, NOT_PENDING);
+    }
+
+    public LatencyHistogram getWaitTime()
+    {
+        return waitTime;
+    }
+
+    public LatencyHistogram getRideTime()
+    {
+        return rideTime;
+    }
+
+    /**
+     * Зарегистрировать метрики в платформенном MBeanServer.
+     */
+    public ObjectName registerMBean(String name)
+    {
+        try {
+            ObjectName objectName = new ObjectName("ru.nekludov.chatfuel.lift:type=LiftMetrics,name=" + name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        }
+        catch (JMException e) {
+            throw new IllegalStateException("Can't register metrics MBean", e);
+        }
+    }
+
+    /**
+     * Снять регистрацию, сделанную {@link #registerMBean(String)}.
+     */
+    public void unregisterMBean(ObjectName objectName)
+    {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        }
+        catch (JMException e) {
+            throw new IllegalStateException("Can't unregister metrics MBean", e);
+        }
+    }
+
+    @Override
+    public void onDoorOpened()
+    {
+        doorCycles.increment();
+    }
+
+    @Override
+    public void onDoorClosed()
+    {
+    }
+
+    @Override
+    public void onEnterFloor(int floor)
+    {
+        floorsTraveled.increment();
+    }
+
+    @Override
+    public void onCall(int floor, Lift.Direction direction)
+    {
+        int index = (floor - lowestFloor) * DIRECTIONS + direction.ordinal();
+        if (callTime[index] == NOT_PENDING) {
+            callTime[index] = clock.getAsLong();
+        }
+    }
+
+    @Override
+    public void onGo(int floor)
+    {
+        int index = floor - lowestFloor;
+        if (goTime[index] == NOT_PENDING) {
+            goTime[index] = clock.getAsLong();
+        }
+    }
+
+    @Override
+    public void onCallServed(int floor, Lift.Direction direction)
+    {
+        long now = clock.getAsLong();
+        int base = (floor - lowestFloor) * DIRECTIONS;
+        if (direction == Lift.Direction.NONE) {
+            for (int i = base; i < base + DIRECTIONS; i++) {
+                serveCall(i, now);
+            }
+        }
+        else {
+            serveCall(base + direction.ordinal(), now);
+        }
+    }
+
+    @Override
+    public void onGoServed(int floor)
+    {
+        int index = floor - lowestFloor;
+        if (goTime[index] != NOT_PENDING) {
+            rideTime.record(clock.getAsLong() - goTime[index]);
+            goTime[index] = NOT_PENDING;
+        }
+    }
+
+    private void serveCall(int index, long now)
+    {
+        if (callTime[index] != NOT_PENDING) {
+            waitTime.record(now - callTime[index]);
+            callTime[index] = NOT_PENDING;
+        }
+    }
+
+    @Override
+    public long getWaitCount()
+    {
+        return waitTime.getCount();
+    }
+
+    @Override
+    public double getWaitMean()
+    {
+        return waitTime.getMean();
+    }
+
+    @Override
+    public long getWaitP50()
+    {
+        return waitTime.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getWaitP99()
+    {
+        return waitTime.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getWaitMax()
+    {
+        return waitTime.getMax();
+    }
+
+    @Override
+    public long getRideCount()
+    {
+        return rideTime.getCount();
+    }
+
+    @Override
+    public double getRideMean()
+    {
+        return rideTime.getMean();
+    }
+
+    @Override
+    public long getRideP50()
+    {
+        return rideTime.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getRideP99()
+    {
+        return rideTime.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getRideMax()
+    {
+        return rideTime.getMax();
+    }
+
+    @Override
+    public long getDoorCycles()
+    {
+        return doorCycles.sum();
+    }
+
+    @Override
+    public long getFloorsTraveled()
+    {
+        return floorsTraveled.sum();
+    }
+
+    /**
+     * Сбросить накопленные метрики (ожидающие обслуживания нажатия сохраняются).
+     */
+    @Override
+    public void reset()
+    {
+        waitTime.reset();
+        rideTime.reset();
+        doorCycles.reset();
+        floorsTraveled.reset();
+    }
+
+}
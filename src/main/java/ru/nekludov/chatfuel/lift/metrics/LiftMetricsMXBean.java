@@ -0,0 +1,26 @@
+package ru.nekludov.chatfuel.lift.metrics;
+
+/**
+ * Метрики лифта для JMX. Времена - в единицах часов, переданных {@link LiftMetrics}.
+ */
+public interface LiftMetricsMXBean
+{
+
+    long getWaitCount();
+    double getWaitMean();
+    long getWaitP50();
+    long getWaitP99();
+    long getWaitMax();
+
+    long getRideCount();
+    double getRideMean();
+    long getRideP50();
+    long getRideP99();
+    long getRideMax();
+
+    long getDoorCycles();
+    long getFloorsTraveled();
+
+    void reset();
+
+}
@@ -0,0 +1,90 @@
+package ru.nekludov.chatfuel.lift.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Пачка нажатий кнопок для {@link Lift#press(ButtonPresses)}.
+ * Повторные нажатия одной кнопки в пачке схлопываются в одно.
+ *
+ * Как и модель лифта, однопоточная.
+ */
+public final class ButtonPresses
+{
+
+    private final int lowestFloor;
+    private final int highestFloor;
+
+    final FloorSet upCalls;
+    final FloorSet downCalls;
+    final FloorSet anyCalls;
+    final FloorSet goes;
+
+    public ButtonPresses(int lowestFloor, int highestFloor)
+    {
+        this.lowestFloor = lowestFloor;
+        this.highestFloor = highestFloor;
+        upCalls = new FloorSet(lowestFloor, highestFloor);
+        downCalls = new FloorSet(lowestFloor, highestFloor);
+        anyCalls = new FloorSet(lowestFloor, highestFloor);
+        goes = new FloorSet(lowestFloor, highestFloor);
+    }
+
+    public int getLowestFloor()
+    {
+        return lowestFloor;
+    }
+
+    public int getHighestFloor()
+    {
+        return highestFloor;
+    }
+
+    /**
+     * Вызов с этажа (см. {@link Lift#call(int, Lift.Direction)}).
+     */
+    public void call(int floor, Lift.Direction direction)
+    {
+        checkArgument(floor >= lowestFloor && floor <= highestFloor, "Invalid floor");
+        checkArgument(!(direction == Lift.Direction.UP && floor == highestFloor)
+                && !(direction == Lift.Direction.DOWN && floor == lowestFloor), "Invalid call direction");
+        switch (direction) {
+            case UP:
+                upCalls.set(floor);
+                break;
+            case DOWN:
+                downCalls.set(floor);
+                break;
+            default:
+                anyCalls.set(floor);
+        }
+    }
+
+    /**
+     * Кнопка этажа в лифте (см. {@link Lift#go(int)}).
+     */
+    public void go(int floor)
+    {
+        checkArgument(floor >= lowestFloor && floor <= highestFloor, "Invalid floor");
+        goes.set(floor);
+    }
+
+    public boolean isEmpty()
+    {
+        return upCalls.isEmpty() && downCalls.isEmpty() && anyCalls.isEmpty() && goes.isEmpty();
+    }
+
+    public void clear()
+    {
+        upCalls.clear();
+        downCalls.clear();
+        anyCalls.clear();
+        goes.clear();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "up " + upCalls + ", down " + downCalls + ", any " + anyCalls + ", go " + goes;
+    }
+
+}
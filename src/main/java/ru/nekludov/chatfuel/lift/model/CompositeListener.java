@@ -0,0 +1,96 @@
+package ru.nekludov.chatfuel.lift.model;
+
+/**
+ * Слушатель, передающий события лифта нескольким слушателям по порядку.
+ */
+public final class CompositeListener implements Lift.Listener
+{
+
+    private final Lift.Listener[] listeners;
+
+    public CompositeListener(Lift.Listener... listeners)
+    {
+        this.listeners = listeners.clone();
+    }
+
+    @Override
+    public void onDoorOpened()
+    {
+        for (Lift.Listener listener : listeners) {
+            listener.onDoorOpened();
+        }
+    }
+
+    @Override
+    public void onDoorClosed()
+    {
+        for (Lift.Listener listener : listeners) {
+            listener.onDoorClosed();
+        }
+    }
+
+    @Override
+    public void onEnterFloor(int floor)
+    {
+        for (Lift.Listener listener : listeners) {
+            listener.onEnterFloor(floor);
+        }
+    }
+
+    @Override
+    public void onCall(int floor, Lift.Direction direction)
+    {
+        for (Lift.Listener listener : listeners) {
+            listener.onCall(floor, direction);
+        }
+    }
+
+    @Override
+    public void onRequest(int origin, int destination)
+    {
+        for (Lift.Listener listener : listeners) {
+            listener.onRequest(origin, destination);
+        }
+    }
+
+    @Override
+    public void onGo(int floor)
+    {
+        for (Lift.Listener listener : listeners) {
+            listener.onGo(floor);
+        }
+    }
+
+    @Override
+    public void onCallServed(int floor, Lift.Direction direction)
+    {
+        for (Lift.Listener listener : listeners) {
+            listener.onCallServed(floor, direction);
+        }
+    }
+
+    @Override
+    public void onGoServed(int floor)
+    {
+        for (Lift.Listener listener : listeners) {
+            listener.onGoServed(floor);
+        }
+    }
+
+    @Override
+    public void onBoard(int passengers)
+    {
+        for (Lift.Listener listener : listeners) {
+            listener.onBoard(passengers);
+        }
+    }
+
+    @Override
+    public void onAlight(int passengers)
+    {
+        for (Lift.Listener listener : listeners) {
+            listener.onAlight(passengers);
+        }
+    }
+
+}
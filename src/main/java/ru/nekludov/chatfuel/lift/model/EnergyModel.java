@@ -0,0 +1,46 @@
+package ru.nekludov.chatfuel.lift.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Модель расхода энергии лифтом: пуск двигателя (разгон и торможение), проезд этажа и цикл дверей.
+ * Пуск обходится дороже всего - при разгоне двигатель потребляет в несколько раз больше, чем на ходу,
+ * поэтому поездка на несколько этажей без остановок экономичнее нескольких коротких, а разворот - это лишний пуск.
+ *
+ * Счетчики ведет сам лифт ({@link Lift#getStarts()}, {@link Lift#getFloorsTraveled()}, {@link Lift#getDoorCycles()}) -
+ * по одному инкременту на событие; энергия считается по ним, когда нужна. Единицы энергии - условные.
+ */
+public final class EnergyModel
+{
+
+    /**
+     * Пуск - как проезд 5 этажей, цикл дверей - как половина этажа.
+     */
+    public static final EnergyModel DEFAULT = new EnergyModel(5, 1, 0.5);
+
+    private final double startEnergy;
+    private final double floorEnergy;
+    private final double doorEnergy;
+
+    public EnergyModel(double startEnergy, double floorEnergy, double doorEnergy)
+    {
+        checkArgument(startEnergy >= 0 && floorEnergy >= 0 && doorEnergy >= 0, "Wrong energy");
+        this.startEnergy = startEnergy;
+        this.floorEnergy = floorEnergy;
+        this.doorEnergy = doorEnergy;
+    }
+
+    public double energy(long starts, long floors, long doorCycles)
+    {
+        return starts * startEnergy + floors * floorEnergy + doorCycles * doorEnergy;
+    }
+
+    /**
+     * Энергия, израсходованная лифтом с создания.
+     */
+    public double energy(Lift lift)
+    {
+        return energy(lift.getStarts(), lift.getFloorsTraveled(), lift.getDoorCycles());
+    }
+
+}
@@ -0,0 +1,52 @@
+package ru.nekludov.chatfuel.lift.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Энергосберегающая стратегия: цели выбирает исходная стратегия (лучше собирательная, {@link MoveStrategies#LOOK} -
+ * она реже разворачивается), а лифт, стоявший без дела, отправляется не сразу: пока этажей с запросами
+ * меньше batchSize, он ждет до holdTime, собирая запросы, чтобы обслужить их за одну поездку.
+ * Меньше пусков и разворотов на запрос ценой ожидания, которое растет не больше чем на holdTime
+ * (вызовы на этаже лифта обслуживаются сразу).
+ */
+public class EnergySavingStrategy implements Lift.MoveStrategy
+{
+
+    private final Lift.MoveStrategy delegate;
+    private final long holdTime;
+    private final int batchSize;
+
+    /**
+     * @param holdTime сколько ждать перед отправлением, в единицах времени планировщика
+     * @param batchSize при скольких этажах с запросами (кнопками в лифте и на этажах) отправляться сразу
+     */
+    public EnergySavingStrategy(Lift.MoveStrategy delegate, long holdTime, int batchSize)
+    {
+        checkArgument(holdTime >= 0, "Wrong hold time");
+        checkArgument(batchSize > 0, "Wrong batch size");
+        this.delegate = delegate;
+        this.holdTime = holdTime;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public int getTargetFloor(FloorSet upCallSet, FloorSet downCallSet, FloorSet goSet,
+                              int currentFloor, int targetFloor, Lift.Direction direction)
+    {
+        return delegate.getTargetFloor(upCallSet, downCallSet, goSet, currentFloor, targetFloor, direction);
+    }
+
+    @Override
+    public long getDepartureDelay(FloorSet upCallSet, FloorSet downCallSet, FloorSet goSet, int currentFloor)
+    {
+        // считаем этажи с запросами, пока их меньше batchSize
+        int floors = 0;
+        int floor = MoveStrategies.nearestUp(upCallSet, downCallSet, goSet, goSet.getLowestFloor());
+        while (floor != Lift.NO_FLOOR && floors < batchSize) {
+            floors++;
+            floor = MoveStrategies.nearestUp(upCallSet, downCallSet, goSet, floor + 1);
+        }
+        return floors < batchSize ? holdTime : 0;
+    }
+
+}
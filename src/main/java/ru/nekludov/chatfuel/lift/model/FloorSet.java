@@ -0,0 +1,217 @@
+package ru.nekludov.chatfuel.lift.model;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Набор этажей (нажатых кнопок) в диапазоне lowestFloor..highestFloor, в том числе с подземными этажами.
+ *
+ * Двухуровневый битовый индекс: слово нижнего уровня хранит 64 этажа, бит верхнего уровня отмечает непустое слово.
+ * Поиск ближайшего этажа вверх/вниз просматривает не больше одного слова нижнего уровня и несколько
+ * слов верхнего (одно слово верхнего уровня покрывает 4096 этажей), поэтому не зависит от высоты дома.
+ */
+public final class FloorSet
+{
+
+    private final int lowestFloor;
+    private final int highestFloor;
+
+    private final long[] words;
+    private final long[] summary;
+
+    public FloorSet(int lowestFloor, int highestFloor)
+    {
+        checkArgument(lowestFloor <= highestFloor, "Wrong floor range");
+        this.lowestFloor = lowestFloor;
+        this.highestFloor = highestFloor;
+        int size = highestFloor - lowestFloor + 1;
+        words = new long[(size + 63) >>> 6];
+        summary = new long[(words.length + 63) >>> 6];
+    }
+
+    public int getLowestFloor()
+    {
+        return lowestFloor;
+    }
+
+    public int getHighestFloor()
+    {
+        return highestFloor;
+    }
+
+    public boolean get(int floor)
+    {
+        if (floor < lowestFloor || floor > highestFloor) {
+            return false;
+        }
+        int index = floor - lowestFloor;
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public void set(int floor)
+    {
+        checkFloor(floor);
+        int index = floor - lowestFloor;
+        int w = index >>> 6;
+        words[w] |= 1L << index;
+        summary[w >>> 6] |= 1L << w;
+    }
+
+    public void clear(int floor)
+    {
+        if (floor < lowestFloor || floor > highestFloor) {
+            return;
+        }
+        int index = floor - lowestFloor;
+        int w = index >>> 6;
+        words[w] &= ~(1L << index);
+        if (words[w] == 0) {
+            summary[w >>> 6] &= ~(1L << w);
+        }
+    }
+
+    public void clear()
+    {
+        for (int s = 0; s < summary.length; s++) {
+            long bits = summary[s];
+            while (bits != 0) {
+                words[(s << 6) + Long.numberOfTrailingZeros(bits)] = 0;
+                bits &= bits - 1;
+            }
+            summary[s] = 0;
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        for (long s : summary) {
+            if (s != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int cardinality()
+    {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Ближайший этаж из набора не ниже заданного или {@link Lift#NO_FLOOR}.
+     */
+    public int nextSetFloor(int floor)
+    {
+        if (floor > highestFloor) {
+            return Lift.NO_FLOOR;
+        }
+        int index = Math.max(floor, lowestFloor) - lowestFloor;
+        int w = index >>> 6;
+        long word = words[w] & (-1L << index);
+        if (word != 0) {
+            return lowestFloor + (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+        w = nextNonEmptyWord(w + 1);
+        if (w == -1) {
+            return Lift.NO_FLOOR;
+        }
+        return lowestFloor + (w << 6) + Long.numberOfTrailingZeros(words[w]);
+    }
+
+    /**
+     * Ближайший этаж из набора не выше заданного или {@link Lift#NO_FLOOR}.
+     */
+    public int previousSetFloor(int floor)
+    {
+        if (floor < lowestFloor) {
+            return Lift.NO_FLOOR;
+        }
+        int index = Math.min(floor, highestFloor) - lowestFloor;
+        int w = index >>> 6;
+        long word = words[w] & (-1L >>> (63 - (index & 63)));
+        if (word != 0) {
+            return lowestFloor + (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+        }
+        w = previousNonEmptyWord(w - 1);
+        if (w == -1) {
+            return Lift.NO_FLOOR;
+        }
+        return lowestFloor + (w << 6) + 63 - Long.numberOfLeadingZeros(words[w]);
+    }
+
+    private int nextNonEmptyWord(int from)
+    {
+        if (from >= words.length) {
+            return -1;
+        }
+        int s = from >>> 6;
+        long bits = summary[s] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                return (s << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++s == summary.length) {
+                return -1;
+            }
+            bits = summary[s];
+        }
+    }
+
+    private int previousNonEmptyWord(int from)
+    {
+        if (from < 0) {
+            return -1;
+        }
+        int s = from >>> 6;
+        long bits = summary[s] & (-1L >>> (63 - (from & 63)));
+        while (true) {
+            if (bits != 0) {
+                return (s << 6) + 63 - Long.numberOfLeadingZeros(bits);
+            }
+            if (--s < 0) {
+                return -1;
+            }
+            bits = summary[s];
+        }
+    }
+
+    /**
+     * Совпадают ли слова нижнего уровня с words (для {@link LiftSnapshot}).
+     */
+    boolean sameWords(long[] other)
+    {
+        return Arrays.equals(words, other);
+    }
+
+    /**
+     * Копия слов нижнего уровня (для {@link LiftSnapshot}); копия не создается, если слова совпадают с previous.
+     */
+    long[] copyWords(long[] previous)
+    {
+        return sameWords(previous) ? previous : words.clone();
+    }
+
+    private void checkFloor(int floor)
+    {
+        checkArgument(floor >= lowestFloor && floor <= highestFloor, "Invalid floor");
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("[");
+        for (int f = nextSetFloor(lowestFloor); f != Lift.NO_FLOOR; f = nextSetFloor(f + 1)) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(f);
+        }
+        return sb.append(']').toString();
+    }
+
+}
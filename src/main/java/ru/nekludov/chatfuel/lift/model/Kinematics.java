@@ -0,0 +1,234 @@
+package ru.nekludov.chatfuel.lift.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Время движения лифта с учетом разгона и торможения.
+ *
+ * Профиль поездки с места до остановки через n этажей симметричный: разгон с ограниченным ускорением
+ * и рывком (S-кривая), движение с постоянной скоростью (если до нее успевает разогнаться) и такое же торможение.
+ * Без рывка в параметрах ускорение меняется мгновенно. Поездка через несколько этажей быстрее суммы поездок на один этаж.
+ * Без ускорения лифт сразу движется с полной скоростью, и каждый этаж проезжается за одно и то же время
+ * (округленное один раз), как в простой модели лифта.
+ *
+ * Расчет ведется в вещественной арифметике в единицах параметров лифта, результат округляется
+ * до единиц времени планировщика (см. {@link Lift.Config#getTimeResolution()}).
+ * Времена поездок на любое число этажей в пределах дома считаются один раз при создании.
+ */
+public final class Kinematics
+{
+
+    private static final int ITERATIONS = 100;
+
+    private final double floorHeight;
+    private final double speed;
+    private final double acceleration;
+    private final double jerk;
+    private final double resolution;
+
+    // время проезда этажа с постоянной скоростью
+    private final long floorTime;
+
+    // время поездки на n этажей (с места до остановки), в единицах планировщика
+    private final long[] travelTimes;
+
+    public Kinematics(Lift.Config cfg)
+    {
+        checkArgument(cfg.getFloorHeight() > 0 && cfg.getLiftSpeed() > 0, "Wrong floor height or speed");
+        checkArgument(cfg.getAcceleration() >= 0 && cfg.getJerk() >= 0, "Wrong acceleration or jerk");
+        checkArgument(cfg.getTimeResolution() > 0, "Wrong time resolution");
+        floorHeight = cfg.getFloorHeight();
+        speed = cfg.getLiftSpeed();
+        acceleration = cfg.getAcceleration();
+        jerk = cfg.getJerk();
+        resolution = cfg.getTimeResolution();
+
+        floorTime = toTicks(floorHeight / speed);
+        travelTimes = new long[cfg.getFloorCount()];
+        for (int n = 1; n < travelTimes.length; n++) {
+            travelTimes[n] = acceleration == 0 ? n * floorTime : toTicks(new Profile(n * floorHeight).duration);
+        }
+    }
+
+    /**
+     * Время поездки с места на floors этажей (до остановки).
+     */
+    public long travelTime(int floors)
+    {
+        if (floors < travelTimes.length) {
+            return travelTimes[floors];
+        }
+        return acceleration == 0 ? floors * floorTime : toTicks(new Profile(floors * floorHeight).duration);
+    }
+
+    /**
+     * Момент (от начала поездки на floors этажей), когда лифт достигает floor-го этажа поездки.
+     * passTime(0, n) = 0, passTime(n, n) = travelTime(n).
+     */
+    public long passTime(int floor, int floors)
+    {
+        checkArgument(floor >= 0 && floor <= floors, "Wrong floor");
+        if (floor == 0) {
+            return 0;
+        }
+        if (floor == floors) {
+            return travelTime(floors);
+        }
+        if (acceleration == 0) {
+            return floor * floorTime;
+        }
+        return passTime(new Profile(floors * floorHeight), floor);
+    }
+
+    /**
+     * Моменты прохождения всех этажей поездки на floors этажей: элемент i - {@link #passTime(int, int) passTime(i, floors)}.
+     * Профиль поездки строится один раз на весь массив.
+     */
+    public long[] passTimes(int floors)
+    {
+        checkArgument(floors >= 0, "Wrong floor count");
+        long[] times = new long[floors + 1];
+        Profile profile = acceleration == 0 || floors < 2 ? null : new Profile(floors * floorHeight);
+        for (int floor = 1; floor < floors; floor++) {
+            times[floor] = profile == null ? floor * floorTime : passTime(profile, floor);
+        }
+        if (floors > 0) {
+            times[floors] = travelTime(floors);
+        }
+        return times;
+    }
+
+    private long passTime(Profile profile, int floor)
+    {
+        double distance = floor * floorHeight;
+        // положение в поездке монотонно по времени - ищем момент делением пополам
+        double low = 0;
+        double high = profile.duration;
+        for (int i = 0; i < ITERATIONS && high - low > 1e-9 * profile.duration; i++) {
+            double middle = (low + high) / 2;
+            if (profile.position(middle) < distance) {
+                low = middle;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return toTicks(high);
+    }
+
+    private long toTicks(double time)
+    {
+        return Math.round(time * resolution);
+    }
+
+    /**
+     * Профиль поездки на заданное расстояние (для лифта с ускорением).
+     */
+    private final class Profile
+    {
+        final double distance;
+        // максимальная скорость в поездке (может не достигать скорости лифта на коротких поездках)
+        final double peakSpeed;
+        // максимальное ускорение, время его нарастания и время постоянного ускорения
+        final double peakAcceleration;
+        final double jerkTime;
+        final double constantTime;
+        final double accelerationTime;
+        final double cruiseTime;
+        final double duration;
+
+        Profile(double distance)
+        {
+            this.distance = distance;
+            double v = speed;
+            if (2 * accelerationDistance(v) > distance) {
+                // до полной скорости не разогнаться: ищем скорость, с которой успеваем затормозить
+                double low = 0;
+                double high = v;
+                for (int i = 0; i < ITERATIONS; i++) {
+                    double middle = (low + high) / 2;
+                    if (2 * accelerationDistance(middle) > distance) {
+                        high = middle;
+                    }
+                    else {
+                        low = middle;
+                    }
+                }
+                v = low;
+            }
+            peakSpeed = v;
+            peakAcceleration = jerk == 0 ? acceleration : Math.min(acceleration, Math.sqrt(v * jerk));
+            jerkTime = jerk == 0 ? 0 : peakAcceleration / jerk;
+            accelerationTime = accelerationTime(v);
+            constantTime = accelerationTime - 2 * jerkTime;
+            cruiseTime = Math.max(0, (distance - 2 * accelerationDistance(v)) / v);
+            duration = 2 * accelerationTime + cruiseTime;
+        }
+
+        /**
+         * Пройденное с начала поездки расстояние.
+         */
+        double position(double time)
+        {
+            if (time <= 0) {
+                return 0;
+            }
+            if (time >= duration) {
+                return distance;
+            }
+            if (time <= accelerationTime) {
+                return accelerationPosition(time);
+            }
+            if (time <= accelerationTime + cruiseTime) {
+                return accelerationPosition(accelerationTime) + peakSpeed * (time - accelerationTime);
+            }
+            // торможение - разгон в обратном времени
+            return distance - accelerationPosition(duration - time);
+        }
+
+        private double accelerationPosition(double time)
+        {
+            double j = jerk;
+            double a = peakAcceleration;
+            if (jerkTime == 0) {
+                return a * time * time / 2;
+            }
+            if (time <= jerkTime) {
+                return j * time * time * time / 6;
+            }
+            double x1 = j * jerkTime * jerkTime * jerkTime / 6;
+            double v1 = j * jerkTime * jerkTime / 2;
+            if (time <= jerkTime + constantTime) {
+                double t = time - jerkTime;
+                return x1 + v1 * t + a * t * t / 2;
+            }
+            double x2 = x1 + v1 * constantTime + a * constantTime * constantTime / 2;
+            double v2 = v1 + a * constantTime;
+            double t = time - jerkTime - constantTime;
+            return x2 + v2 * t + a * t * t / 2 - j * t * t * t / 6;
+        }
+    }
+
+    /**
+     * Время разгона с места до скорости v.
+     */
+    private double accelerationTime(double v)
+    {
+        if (jerk == 0) {
+            return v / acceleration;
+        }
+        if (v >= acceleration * acceleration / jerk) {
+            return v / acceleration + acceleration / jerk;
+        }
+        return 2 * Math.sqrt(v / jerk);
+    }
+
+    /**
+     * Путь разгона с места до скорости v (разгон симметричный, средняя скорость - v / 2).
+     */
+    private double accelerationDistance(double v)
+    {
+        return v * accelerationTime(v) / 2;
+    }
+
+}
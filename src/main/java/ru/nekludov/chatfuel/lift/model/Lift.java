@@ -1,32 +1,51 @@
 package ru.nekludov.chatfuel.lift.model;
 
-import java.util.BitSet;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 
 /**
- * Первоначальное состояние лифта: 1 этаж, двери закрыты.
+ * Первоначальное состояние лифта: 1 этаж (или самый нижний, если этажи дома начинаются выше первого), двери закрыты.
  * Считаем, что открытие и закрытие дверей происходит мгновенно.
  *
  * Повторное нажатие на кнопку текущего этажа при открытом лифте игнорируется
  * (в соответствии с "Считаем, что пользователь не может помешать лифту закрыть двери").
  *
  * При достижении этажа, на который лифт запрашивали любым способом, лифт открывает там двери.
+ * Вызовы с этажа бывают с направлением (кнопки "вверх"/"вниз") и без него (одна кнопка на этаже).
+ * Проезжая этаж, лифт останавливается по кнопке в лифте, по попутному вызову и по вызову без направления;
+ * встречный вызов обслуживается, только когда лифт разворачивается на этом этаже
+ * (или когда стратегия движения отправила лифт на этот этаж ради него).
+ * При вызове с этажа можно сразу указать этаж назначения ({@link #request(int, int)}, "destination dispatch"):
+ * этаж назначения нажимается в лифте сам, когда лифт забирает пассажира.
+ *
+ * Загрузку лифта сообщает внешний датчик: пока двери открыты, пассажиры входят ({@link #board(int)})
+ * и выходят ({@link #alight(int)}). Полный лифт (см. {@link Config#getCapacity()}) не останавливается
+ * по вызовам с этажей - только по кнопкам в лифте; вызовы остаются и обслуживаются, когда появится место.
  *
  * Модель лифта однопоточная (для возможности использования в разных моделях параллельных вычислений,
  * а также для лучшей декомпозиции/связности - выделяем отдельно логику работы лифта).
  * Для корретной работы модели при использовании из нескольких потоков нужна внешняя синхронизация.
+ * Исключение - {@link #getSnapshot()}: снимок состояния (если включен {@link #enableSnapshots()})
+ * можно читать из любого потока.
  */
 public class Lift
 {
 
     public static final int MIN_FLOORS = 5;
-    public static final int MAX_FLOORS = 20;
+
+    /**
+     * Значение "этаж не задан" (вместо null, чтобы не упаковывать номера этажей в Integer).
+     */
+    public static final int NO_FLOOR = Integer.MIN_VALUE;
 
     /**
      * Параметры лифта.
-     * В арифметике для упрощения используем только целочисленные значения - соответственно, возможны ошибки округления.
-     * Учитывайте это при выборе значений параметров и их единиц измерения.
+     * Значения целочисленные; времена движения считаются в вещественной арифметике (см. {@link Kinematics})
+     * и округляются до единицы времени планировщика. Чтобы ошибки округления не накапливались,
+     * задавайте {@link #getTimeResolution()} мельче единицы времени параметров.
      */
     public interface Config
     {
@@ -35,6 +54,15 @@ public class Lift
          */
         int getFloorCount();
 
+        /**
+         * Номер самого нижнего этажа (0 и отрицательные - подземные этажи).
+         * Этажи дома нумеруются подряд от него: getLowestFloor()..getLowestFloor() + getFloorCount() - 1.
+         */
+        default int getLowestFloor()
+        {
+            return 1;
+        }
+
         /**
          * Высота этажа.
          */
@@ -49,6 +77,51 @@ public class Lift
          * Время между открытием и закрытием дверей.
          */
         long getOpenCloseTime();
+
+        /**
+         * Ускорение (и замедление) лифта. 0 - лифт сразу движется с полной скоростью.
+         */
+        default int getAcceleration()
+        {
+            return 0;
+        }
+
+        /**
+         * Рывок (скорость изменения ускорения). 0 - ускорение меняется мгновенно.
+         */
+        default int getJerk()
+        {
+            return 0;
+        }
+
+        /**
+         * Сколько единиц времени планировщика в единице времени параметров
+         * (например, 1000 - параметры в секундах, планировщик в миллисекундах).
+         */
+        default int getTimeResolution()
+        {
+            return 1;
+        }
+
+        /**
+         * Вместимость кабины (пассажиров). Полный лифт проезжает вызовы с этажей;
+         * групповой диспетчер не назначает в кабину больше пассажиров с этажа, чем в нее помещается.
+         */
+        default int getCapacity()
+        {
+            return Integer.MAX_VALUE;
+        }
+
+        /**
+         * Экспресс-режим: поездка до ближайшей остановки планируется одним событием прибытия,
+         * а не событием на каждый этаж, и стратегия движения вызывается только на остановках.
+         * О проеханных этажах слушатель узнает пачкой - по прибытии или когда новый запрос сокращает поездку.
+         * Нужен планировщик с часами ({@link Scheduler#now()}).
+         */
+        default boolean isExpress()
+        {
+            return false;
+        }
     }
 
     public interface Listener
@@ -56,28 +129,111 @@ public class Lift
         void onDoorOpened();
         void onDoorClosed();
         void onEnterFloor(int floor);
+
+        /**
+         * Нажата кнопка вызова на этаже (в том числе повторно).
+         */
+        default void onCall(int floor, Direction direction)
+        {
+        }
+
+        /**
+         * Запрос с этажа с указанием этажа назначения (сообщается перед соответствующим вызовом с этажа).
+         */
+        default void onRequest(int origin, int destination)
+        {
+        }
+
+        /**
+         * Нажата кнопка этажа в лифте (в том числе повторно), в том числе этаж назначения запроса,
+         * когда лифт забирает пассажира.
+         */
+        default void onGo(int floor)
+        {
+        }
+
+        /**
+         * Обслужены вызовы с этажа в направлении direction (NONE - все вызовы на этаже).
+         * Сообщается перед открытием дверей, а если лифт остановился полным - перед закрытием,
+         * когда пассажиры вышли.
+         */
+        default void onCallServed(int floor, Direction direction)
+        {
+        }
+
+        /**
+         * Обслужена кнопка этажа в лифте. Сообщается перед открытием дверей.
+         */
+        default void onGoServed(int floor)
+        {
+        }
+
+        /**
+         * В лифт вошли пассажиры (загрузка уже изменилась).
+         */
+        default void onBoard(int passengers)
+        {
+        }
+
+        /**
+         * Из лифта вышли пассажиры (загрузка уже изменилась).
+         */
+        default void onAlight(int passengers)
+        {
+        }
+    }
+
+    /**
+     * Направление движения лифта (или направление, в котором хочет ехать пассажир, вызывающий лифт).
+     */
+    public enum Direction
+    {
+        UP, DOWN, NONE
     }
 
     /**
      * Стратегия определения направления движения лифта.
-     * При движении вызывается на каждом этаже.
+     * При движении вызывается на каждом этаже (в экспресс-режиме - только на остановках).
      */
     public interface MoveStrategy
     {
         /**
          * Возвращает этаж, на который следует двигаться лифту.
-         * @param callBitSet нажатые кнопки вызова на этажах
-         * @param goBitSet нажатые кнопки в самом лифте
+         * Кнопки на текущем этаже к моменту вызова уже обработаны (сброшены).
+         * Полный лифт вызовы с этажей не обслуживает - стратегия получает вместо них пустые наборы.
+         * @param upCallSet нажатые на этажах кнопки вызова "вверх"
+         * @param downCallSet нажатые на этажах кнопки вызова "вниз"
+         * @param goSet нажатые кнопки в самом лифте
          * @param currentFloor этаж, на котором находится сейчас лифт
-         * @param targetFloor текущий целевой этаж лифта (задан, если лифт уже находится в движении)
-         * @return целевой этаж для лифта (на который лифту следует ехать без остановок) или null, если никуда не ехать
+         * @param targetFloor текущий целевой этаж лифта (задан, если лифт уже находится в движении) или {@link #NO_FLOOR}
+         * @param direction направление последнего движения лифта или NONE, если лифт стоял без дела
+         * @return целевой этаж для лифта (на который лифту следует ехать без остановок)
+         * или {@link #NO_FLOOR}, если никуда не ехать
+         */
+        int getTargetFloor(FloorSet upCallSet, FloorSet downCallSet, FloorSet goSet,
+                           int currentFloor, int targetFloor, Direction direction);
+
+        /**
+         * Сколько лифту, стоявшему без дела, подождать на месте перед отправлением к цели (например, чтобы собрать
+         * больше запросов за одну поездку). Вызывается перед отправлением и при каждом нажатии во время ожидания:
+         * ожидание не продлевается, а если стратегия вернула 0 - лифт отправляется сразу.
+         * Вызов на этаже лифта обслуживается сразу. 0 - ехать сразу.
+         * Параметры - как у {@link #getTargetFloor}.
          */
-        Integer getTargetFloor(BitSet callBitSet, BitSet goBitSet, int currentFloor, Integer targetFloor);
+        default long getDepartureDelay(FloorSet upCallSet, FloorSet downCallSet, FloorSet goSet, int currentFloor)
+        {
+            return 0;
+        }
     }
 
     public interface Scheduler
     {
         void schedule(long delay, Runnable command);
+
+        /**
+         * Текущее время в единицах задержек. Нужно лифту в экспресс-режиме, чтобы знать, где он между остановками.
+         */
+        long now();
     }
 
     private final Config cfg;
@@ -85,40 +241,295 @@ public class Lift
     private final Scheduler scheduler;
     private final Listener listener;
 
-    private final long floorTime;
-
-    private int currentFloor = 1;
-    private Integer targetFloor;
+    private final Kinematics kinematics;
+    // моменты прохождения этажей по длине поездки (см. passTimes)
+    private final long[][] passTimeCache;
+    private final long openCloseTime;
+    private final int lowestFloor;
+    private final int highestFloor;
+    private final int capacity;
+
+    private int currentFloor;
+    // пассажиров в лифте
+    private int load;
+    private int targetFloor = NO_FLOOR;
+    private int moveDelta;
+    private Direction direction = Direction.NONE;
+    // в каком направлении обслуживается текущая остановка
+    private Direction stopDirection = Direction.NONE;
+
+    // текущая поездка (от остановки до остановки): этаж отправления, этажей в поездке (0 - лифт стоит) и пройдено
+    private int runStartFloor;
+    private int runFloors;
+    private int runPassed;
+
+    // экспресс-режим: этаж остановки, время начала поездки и ее номер (устаревшие события прибытия игнорируются)
+    private final boolean express;
+    private int runTargetFloor;
+    private long runStartTime;
+    private long runId;
+
+    // ожидание перед отправлением (см. MoveStrategy.getDepartureDelay) идет или уже было перед этим отправлением;
+    // номер ожидания - чтобы распознать событие конца уже прерванного ожидания
+    private boolean holding;
+    private boolean held;
+    private long holdId;
+
+    // счетчики для учета энергии (см. EnergyModel)
+    private long starts;
+    private long reversals;
+    private long floorsTraveled;
+    private long doorCycles;
+    // направление последней поездки (для подсчета разворотов)
+    private int lastRunDelta;
+
+    // последний опубликованный снимок состояния (единственное поле, которое читают другие потоки);
+    // null - снимки не публикуются
+    private volatile LiftSnapshot snapshot;
+
+    private static final VarHandle SNAPSHOT;
+
+    static {
+        try {
+            SNAPSHOT = MethodHandles.lookup().findVarHandle(Lift.class, "snapshot", LiftSnapshot.class);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
-    private final BitSet callBitSet;
-    private final BitSet goBitSet;
+    // команды для планировщика создаем один раз, чтобы не создавать объекты на каждом этаже
+    private final Runnable closeDoorCommand = this::closeDoor;
+    private final Runnable enterNextFloorCommand = this::enterNextFloor;
+
+    private final FloorSet upCallSet;
+    private final FloorSet downCallSet;
+    // вызовы без направления: стоят в обоих наборах выше и снимаются первой же остановкой на этаже
+    private final FloorSet anyCallSet;
+    private final FloorSet goSet;
+    // вместо вызовов для стратегии, когда лифт полный
+    private final FloorSet noCallSet;
+    // этажи назначения пассажиров, ожидающих на этаже (индекс - этаж - lowestFloor), создаются при первом запросе
+    private FloorSet[] upDestinations;
+    private FloorSet[] downDestinations;
 
     public Lift(Config cfg, MoveStrategy moveStrategy, Scheduler scheduler, Listener listener)
     {
-        checkArgument(cfg.getFloorCount() >= MIN_FLOORS && cfg.getFloorCount() <= MAX_FLOORS, "Wrong floor count");
+        checkArgument(cfg.getFloorCount() >= MIN_FLOORS, "Wrong floor count");
         this.cfg = cfg;
         this.moveStrategy = moveStrategy;
         this.scheduler = scheduler;
         this.listener = listener;
 
-        floorTime = cfg.getFloorHeight() / cfg.getLiftSpeed();
+        kinematics = new Kinematics(cfg);
+        passTimeCache = new long[cfg.getFloorCount()][];
+        openCloseTime = cfg.getOpenCloseTime() * cfg.getTimeResolution();
+        express = cfg.isExpress();
+
+        lowestFloor = cfg.getLowestFloor();
+        highestFloor = lowestFloor + cfg.getFloorCount() - 1;
+        currentFloor = 1 >= lowestFloor && 1 <= highestFloor ? 1 : lowestFloor;
+        capacity = cfg.getCapacity();
+        checkArgument(capacity > 0, "Wrong capacity");
+
+        upCallSet = new FloorSet(lowestFloor, highestFloor);
+        downCallSet = new FloorSet(lowestFloor, highestFloor);
+        anyCallSet = new FloorSet(lowestFloor, highestFloor);
+        goSet = new FloorSet(lowestFloor, highestFloor);
+        noCallSet = new FloorSet(lowestFloor, highestFloor);
+    }
+
+    /**
+     * Этаж, на котором находится лифт (в экспресс-режиме в движении - последний этаж, о котором узнал слушатель).
+     */
+    public int getCurrentFloor()
+    {
+        return currentFloor;
+    }
+
+    /**
+     * Публиковать снимок состояния после каждого перехода (см. {@link #getSnapshot()}).
+     * Выключено по умолчанию: симуляции и бенчмарки не платят за снимки, которые никто не читает.
+     */
+    public void enableSnapshots()
+    {
+        if (snapshot == null) {
+            SNAPSHOT.setRelease(this, newSnapshot(0));
+        }
+    }
+
+    /**
+     * Снимок состояния после последнего перехода. Можно вызывать из любого потока.
+     */
+    public LiftSnapshot getSnapshot()
+    {
+        LiftSnapshot current = snapshot;
+        checkState(current != null, "Snapshots are disabled");
+        return current;
+    }
+
+    public Kinematics getKinematics()
+    {
+        return kinematics;
+    }
+
+    /**
+     * Количество пассажиров в лифте.
+     */
+    public int getLoad()
+    {
+        return load;
+    }
+
+    /**
+     * Лифт полный - в него больше никто не войдет, и вызовы с этажей он проезжает.
+     */
+    public boolean isFull()
+    {
+        return load >= capacity;
+    }
+
+    /**
+     * Количество поездок с места (в том числе после разворота).
+     */
+    public long getStarts()
+    {
+        return starts;
+    }
+
+    /**
+     * Количество поездок с места в направлении, противоположном предыдущей поездке.
+     */
+    public long getReversals()
+    {
+        return reversals;
+    }
+
+    public long getFloorsTraveled()
+    {
+        return floorsTraveled;
+    }
+
+    public long getDoorCycles()
+    {
+        return doorCycles;
+    }
+
+    /**
+     * В лифт вошли пассажиры. Можно, только пока двери открыты.
+     */
+    public void board(int passengers)
+    {
+        checkArgument(passengers > 0 && passengers <= capacity - load, "Wrong passenger count");
+        checkState(State.OPEN.equals(state), "Door is closed");
+        load += passengers;
+        listener.onBoard(passengers);
+        publishSnapshot();
+    }
+
+    /**
+     * Из лифта вышли пассажиры. Можно, только пока двери открыты.
+     */
+    public void alight(int passengers)
+    {
+        checkArgument(passengers > 0 && passengers <= load, "Wrong passenger count");
+        checkState(State.OPEN.equals(state), "Door is closed");
+        load -= passengers;
+        listener.onAlight(passengers);
+        publishSnapshot();
+    }
+
+    /**
+     * Восстановить положение лифта (например, по журналу после перезапуска).
+     * Можно только для лифта, который стоит без дела с закрытыми дверями; незавершенные вызовы
+     * восстанавливаются обычными нажатиями кнопок.
+     */
+    public void restoreFloor(int floor)
+    {
+        checkFloor(floor);
+        checkState(State.ONFLOOR.equals(state) && targetFloor == NO_FLOOR && !holding, "Lift is busy");
+        currentFloor = floor;
+        publishSnapshot();
+    }
 
-        // будем использовать биты, начиная с 1-го (нулевой не используем - для тестового задания пусть так будет)
-        callBitSet = new BitSet(cfg.getFloorCount() + 1);
-        goBitSet = new BitSet(cfg.getFloorCount() + 1);
+    /**
+     * Направление, в котором лифт едет или обслуживает текущую остановку
+     * (NONE - стоит без дела или на остановке забирает пассажиров в обе стороны).
+     */
+    public Direction getDirection()
+    {
+        return State.OPEN.equals(state) ? stopDirection : direction;
     }
 
     /**
-     * Вызвать лифт на этаж из подъезда.
+     * Вызвать лифт на этаж из подъезда (кнопка без направления).
      */
     public void call(int floor)
+    {
+        call(floor, Direction.NONE);
+    }
+
+    /**
+     * Вызвать лифт на этаж из подъезда кнопкой "вверх" или "вниз" (NONE - кнопка без направления).
+     */
+    public void call(int floor, Direction direction)
     {
         checkFloor(floor);
+        checkArgument(!(direction == Direction.UP && floor == highestFloor)
+                && !(direction == Direction.DOWN && floor == lowestFloor), "Invalid call direction");
 
-        callBitSet.set(floor);
+        setCall(floor, direction);
         operate();
     }
 
+    private void setCall(int floor, Direction direction)
+    {
+        if (direction != Direction.DOWN) {
+            upCallSet.set(floor);
+        }
+        if (direction != Direction.UP) {
+            downCallSet.set(floor);
+        }
+        if (direction == Direction.NONE) {
+            anyCallSet.set(floor);
+        }
+        listener.onCall(floor, direction);
+        if ((direction == Direction.NONE || direction == this.direction) && !isFull()) {
+            shortenRun(floor);
+        }
+    }
+
+    /**
+     * Вызвать лифт с этажа origin, указав этаж назначения destination.
+     * Это вызов с этажа в сторону destination; когда лифт заберет пассажира, destination нажимается в лифте.
+     * Если лифт стоит на этаже с открытыми дверями в нужную сторону и в нем есть место - пассажир входит сразу.
+     */
+    public void request(int origin, int destination)
+    {
+        checkFloor(origin);
+        checkFloor(destination);
+        checkArgument(origin != destination, "Same origin and destination");
+
+        Direction direction = destination > origin ? Direction.UP : Direction.DOWN;
+        listener.onRequest(origin, destination);
+        if (State.OPEN.equals(state) && currentFloor == origin && !isFull()
+                && (stopDirection == Direction.NONE || stopDirection == direction)) {
+            go(destination);
+            return;
+        }
+        if (upDestinations == null) {
+            upDestinations = new FloorSet[cfg.getFloorCount()];
+            downDestinations = new FloorSet[cfg.getFloorCount()];
+        }
+        FloorSet[] destinations = direction == Direction.UP ? upDestinations : downDestinations;
+        int index = origin - lowestFloor;
+        if (destinations[index] == null) {
+            destinations[index] = new FloorSet(lowestFloor, highestFloor);
+        }
+        destinations[index].set(destination);
+        call(origin, direction);
+    }
+
     /**
      * Нажать на кнопку этажа внутри лифта.
      */
@@ -126,7 +537,43 @@ public class Lift
     {
         checkFloor(floor);
 
-        goBitSet.set(floor);
+        setGo(floor);
+        operate();
+    }
+
+    private void setGo(int floor)
+    {
+        goSet.set(floor);
+        listener.onGo(floor);
+        shortenRun(floor);
+    }
+
+    /**
+     * Нажать пачку кнопок (см. {@link ButtonPresses}). Слушатель узнает о каждой кнопке как при
+     * {@link #call(int, Direction)} и {@link #go(int)}, но решение, куда ехать, принимается один раз на пачку.
+     * Пачка после этого очищается.
+     */
+    public void press(ButtonPresses presses)
+    {
+        checkArgument(presses.getLowestFloor() == lowestFloor && presses.getHighestFloor() == highestFloor,
+                "Wrong floor range");
+
+        for (int f = presses.goes.nextSetFloor(lowestFloor); f != NO_FLOOR; f = presses.goes.nextSetFloor(f + 1)) {
+            setGo(f);
+        }
+        for (int f = presses.anyCalls.nextSetFloor(lowestFloor); f != NO_FLOOR;
+             f = presses.anyCalls.nextSetFloor(f + 1)) {
+            setCall(f, Direction.NONE);
+        }
+        for (int f = presses.upCalls.nextSetFloor(lowestFloor); f != NO_FLOOR;
+             f = presses.upCalls.nextSetFloor(f + 1)) {
+            setCall(f, Direction.UP);
+        }
+        for (int f = presses.downCalls.nextSetFloor(lowestFloor); f != NO_FLOOR;
+             f = presses.downCalls.nextSetFloor(f + 1)) {
+            setCall(f, Direction.DOWN);
+        }
+        presses.clear();
         operate();
     }
 
@@ -140,24 +587,73 @@ public class Lift
     private void openDoor()
     {
         state = State.OPEN;
+        runFloors = 0;
+        doorCycles++;
         listener.onDoorOpened();
-        scheduler.schedule(cfg.getOpenCloseTime(), this::closeDoor);
+        scheduler.schedule(openCloseTime, closeDoorCommand);
     }
 
     private void closeDoor()
     {
+        // вызовы, оставленные полным лифтом, обслужены, если пассажиры вышли и место освободилось
+        int floor = currentFloor;
+        if (!isFull() && (upCallSet.get(floor) || downCallSet.get(floor))) {
+            clearCallBits(floor, upCallSet.get(floor) && stopDirection != Direction.DOWN,
+                    downCallSet.get(floor) && stopDirection != Direction.UP);
+            serveOppositeCalls();
+        }
         state = State.ONFLOOR;
         listener.onDoorClosed();
         operate();
     }
 
+    /**
+     * Следующий шаг работы лифта после любого события; после него публикуется снимок состояния.
+     */
     private void operate()
+    {
+        transition();
+        publishSnapshot();
+    }
+
+    private void publishSnapshot()
+    {
+        LiftSnapshot previous = snapshot;
+        if (previous == null) {
+            return;
+        }
+        if (previous.getFloor() == currentFloor && previous.isDoorOpen() == State.OPEN.equals(state)
+                && previous.isMoving() == State.MOVING.equals(state) && previous.getDirection() == getDirection()
+                && previous.getTargetFloor() == targetFloor && previous.getLoad() == load
+                && upCallSet.sameWords(previous.upCalls) && downCallSet.sameWords(previous.downCalls)
+                && goSet.sameWords(previous.goes)) {
+            // состояние не изменилось - новый снимок не нужен
+            return;
+        }
+        // снимок неизменяемый, поэтому достаточно release-записи (без полного барьера volatile-записи)
+        SNAPSHOT.setRelease(this, newSnapshot(previous.getVersion() + 1));
+    }
+
+    private LiftSnapshot newSnapshot(long version)
+    {
+        LiftSnapshot previous = snapshot;
+        return new LiftSnapshot(version, lowestFloor, currentFloor, State.OPEN.equals(state),
+                State.MOVING.equals(state), getDirection(), targetFloor, load,
+                upCallSet.copyWords(previous == null ? null : previous.upCalls),
+                downCallSet.copyWords(previous == null ? null : previous.downCalls),
+                goSet.copyWords(previous == null ? null : previous.goes));
+    }
+
+    private void transition()
     {
         if (State.MOVING.equals(state)) {
             return;
         }
 
         boolean currentFloorBit = getAndClearFloorBits();
+        if (currentFloorBit || State.OPEN.equals(state)) {
+            serveOppositeCalls();
+        }
 
         if (State.OPEN.equals(state)) {
             return;
@@ -168,35 +664,350 @@ public class Lift
             return;
         }
 
-        targetFloor = moveStrategy.getTargetFloor(callBitSet, goBitSet, currentFloor, targetFloor);
+        if (holding) {
+            if (moveStrategy.getDepartureDelay(upCallSet, downCallSet, goSet, currentFloor) > 0) {
+                return;
+            }
+            holding = false;
+        }
+
+        boolean full = isFull();
+        targetFloor = moveStrategy.getTargetFloor(full ? noCallSet : upCallSet, full ? noCallSet : downCallSet, goSet,
+                currentFloor, targetFloor, direction);
+
+        if (targetFloor == currentFloor) {
+            // стратегия решила забрать здесь встречных пассажиров
+            boolean calls = upCallSet.get(currentFloor) || downCallSet.get(currentFloor);
+            clearCalls(currentFloor);
+            if (calls) {
+                listener.onCallServed(currentFloor, Direction.NONE);
+                pressDestinations(upDestinations, currentFloor);
+                pressDestinations(downDestinations, currentFloor);
+            }
+            direction = Direction.NONE;
+            stopDirection = Direction.NONE;
+            if (calls) {
+                openDoor();
+                return;
+            }
+            targetFloor = NO_FLOOR;
+        }
 
-        if (targetFloor == null) {
+        if (targetFloor == NO_FLOOR) {
+            direction = Direction.NONE;
+            runFloors = 0;
+            held = false;
             return;
         }
 
+        if (direction == Direction.NONE && !held) {
+            long delay = moveStrategy.getDepartureDelay(upCallSet, downCallSet, goSet, currentFloor);
+            if (delay > 0) {
+                // цель выберем заново, когда ожидание закончится
+                holding = true;
+                held = true;
+                targetFloor = NO_FLOOR;
+                long id = ++holdId;
+                scheduler.schedule(delay, () -> depart(id));
+                return;
+            }
+        }
+        held = false;
+
         int delta = targetFloor > currentFloor ? 1 : -1;
+        if (express) {
+            startRun(delta);
+            return;
+        }
+        if (runFloors == 0 || delta != moveDelta) {
+            // новая поездка с места (разворот в движении тоже считаем остановкой на этаже)
+            runStartFloor = currentFloor;
+            runPassed = 0;
+            countStart(delta);
+        }
+        // если цель сменилась в пути, время до следующих этажей считаем по профилю поездки до новой цели
+        runFloors = Math.abs(targetFloor - runStartFloor);
+        moveDelta = delta;
+        direction = moveDelta > 0 ? Direction.UP : Direction.DOWN;
 
         state = State.MOVING;
 
-        scheduler.schedule(floorTime, () -> {
-            currentFloor += delta;
+        long[] times = passTimes(runFloors);
+        scheduler.schedule(times[runPassed + 1] - times[runPassed], enterNextFloorCommand);
+    }
+
+    /**
+     * Экспресс-режим: начать поездку с места до ближайшего по пути к цели этажа, где лифт остановится.
+     */
+    private void startRun(int delta)
+    {
+        countStart(delta);
+        moveDelta = delta;
+        direction = moveDelta > 0 ? Direction.UP : Direction.DOWN;
+        runTargetFloor = nextStop(currentFloor, targetFloor);
+        runStartFloor = currentFloor;
+        runFloors = Math.abs(runTargetFloor - currentFloor);
+        runPassed = 0;
+        runStartTime = scheduler.now();
+        state = State.MOVING;
+        scheduleArrival();
+    }
+
+    private void countStart(int delta)
+    {
+        starts++;
+        if (lastRunDelta == -delta) {
+            reversals++;
+        }
+        lastRunDelta = delta;
+    }
+
+    private void depart(long id)
+    {
+        if (id != holdId || !holding) {
+            return;
+        }
+        holding = false;
+        operate();
+    }
+
+    /**
+     * Ближайший после from этаж до to (включительно), на котором проезжающий лифт остановится:
+     * кнопка в лифте, попутный вызов или вызов без направления.
+     */
+    private int nextStop(int from, int to)
+    {
+        FloorSet calls = moveDelta > 0 ? upCallSet : downCallSet;
+        int go = moveDelta > 0 ? goSet.nextSetFloor(from + 1) : goSet.previousSetFloor(from - 1);
+        int call = moveDelta > 0 ? calls.nextSetFloor(from + 1) : calls.previousSetFloor(from - 1);
+        int stop = to;
+        if (go != NO_FLOOR && (stop - go) * moveDelta > 0) {
+            stop = go;
+        }
+        if (call != NO_FLOOR && (stop - call) * moveDelta > 0 && !isFull()) {
+            stop = call;
+        }
+        return stop;
+    }
+
+    private void scheduleArrival()
+    {
+        long id = ++runId;
+        long arrival = runStartTime + kinematics.travelTime(runFloors);
+        // событие не отменить - при сокращении поездки старое прибытие распознается по номеру поездки
+        scheduler.schedule(Math.max(0, arrival - scheduler.now()), () -> arrive(id));
+    }
+
+    private void arrive(long id)
+    {
+        if (id != runId) {
+            return;
+        }
+        reportFloors(runFloors);
+        state = State.ONFLOOR;
+        operate();
+    }
+
+    /**
+     * Экспресс-режим: новый запрос на этаже впереди, где лифт еще успевает остановиться, сокращает поездку до него.
+     */
+    private void shortenRun(int floor)
+    {
+        if (!express || !State.MOVING.equals(state) || (runTargetFloor - floor) * moveDelta <= 0) {
+            return;
+        }
+        int passed = passedFloors(scheduler.now() - runStartTime);
+        // этаж, к которому лифт подъезжает, - ближайший, где еще можно остановиться
+        if ((floor - runStartFloor) * moveDelta <= passed) {
+            return;
+        }
+        reportFloors(passed);
+        runTargetFloor = floor;
+        runFloors = Math.abs(floor - runStartFloor);
+        scheduleArrival();
+    }
+
+    /**
+     * Сколько этажей поездки лифт проехал за время elapsed.
+     */
+    private int passedFloors(long elapsed)
+    {
+        long[] times = passTimes(runFloors);
+        int low = 0;
+        int high = runFloors;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (times[middle] <= elapsed) {
+                low = middle;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Сообщить слушателю о проеханных этажах поездки до passed-го включительно.
+     */
+    private void reportFloors(int passed)
+    {
+        while (runPassed < passed) {
+            runPassed++;
+            currentFloor += moveDelta;
+            floorsTraveled++;
             listener.onEnterFloor(currentFloor);
-            state = State.ONFLOOR;
-            operate();
-        });
+        }
+    }
+
+    /**
+     * Моменты прохождения этажей поездки на floors этажей (см. {@link Kinematics#passTimes(int)}),
+     * считаются один раз для каждой длины поездки.
+     */
+    private long[] passTimes(int floors)
+    {
+        long[] times = passTimeCache[floors];
+        if (times == null) {
+            times = kinematics.passTimes(floors);
+            passTimeCache[floors] = times;
+        }
+        return times;
     }
 
+    private void enterNextFloor()
+    {
+        currentFloor += moveDelta;
+        runPassed++;
+        floorsTraveled++;
+        listener.onEnterFloor(currentFloor);
+        state = State.ONFLOOR;
+        operate();
+    }
+
+    /**
+     * Снимает кнопки текущего этажа, которые обслуживает остановка на нем.
+     * Полный лифт останавливается только по кнопке в лифте, а вызовы с этажа оставляет: ожидающие войдут,
+     * только если выйдут пассажиры, - это решается при закрытии дверей (см. {@link #closeDoor()}).
+     * @return true, если на этаже нужна остановка
+     */
     private boolean getAndClearFloorBits()
     {
-        boolean bit = callBitSet.get(currentFloor) || goBitSet.get(currentFloor);
-        callBitSet.clear(currentFloor);
-        goBitSet.clear(currentFloor);
-        return bit;
+        int floor = currentFloor;
+        Direction serve = serviceDirection();
+        boolean go = goSet.get(floor);
+        boolean up = upCallSet.get(floor) && serve != Direction.DOWN;
+        boolean down = downCallSet.get(floor) && serve != Direction.UP;
+        if (!go && (isFull() || !up && !down)) {
+            return false;
+        }
+        if (go) {
+            goSet.clear(floor);
+            listener.onGoServed(floor);
+        }
+        stopDirection = serve;
+        if (!isFull()) {
+            clearCallBits(floor, up, down);
+        }
+        return true;
+    }
+
+    /**
+     * Остановка обслуживает одно направление, а стратегия после нее вернула бы лифт на этот же этаж
+     * за встречными пассажирами (так всегда у стратегий, которым направление вызова безразлично):
+     * встречные вызовы обслуживаются в ту же остановку, без лишнего цикла дверей.
+     */
+    private void serveOppositeCalls()
+    {
+        int floor = currentFloor;
+        if (stopDirection == Direction.NONE || isFull() || !upCallSet.get(floor) && !downCallSet.get(floor)) {
+            return;
+        }
+        if (moveStrategy.getTargetFloor(upCallSet, downCallSet, goSet, floor, targetFloor, direction) != floor) {
+            return;
+        }
+        clearCallBits(floor, upCallSet.get(floor), downCallSet.get(floor));
+        stopDirection = Direction.NONE;
+    }
+
+    /**
+     * Снимает вызовы с этажа в обслуживаемых направлениях: ожидающие пассажиры входят,
+     * их этажи назначения нажимаются в лифте.
+     */
+    private void clearCallBits(int floor, boolean up, boolean down)
+    {
+        if (anyCallSet.get(floor)) {
+            clearCalls(floor);
+            listener.onCallServed(floor, Direction.NONE);
+            pressDestinations(upDestinations, floor);
+            pressDestinations(downDestinations, floor);
+        }
+        else {
+            if (up) {
+                upCallSet.clear(floor);
+                listener.onCallServed(floor, Direction.UP);
+                pressDestinations(upDestinations, floor);
+            }
+            if (down) {
+                downCallSet.clear(floor);
+                listener.onCallServed(floor, Direction.DOWN);
+                pressDestinations(downDestinations, floor);
+            }
+        }
+    }
+
+    /**
+     * В каком направлении лифт обслуживает вызовы на текущем этаже: проезжая этаж - только попутные,
+     * на целевом этаже - тоже попутные, если дальше по ходу есть запросы, иначе в обе стороны.
+     */
+    private Direction serviceDirection()
+    {
+        if (direction == Direction.NONE || currentFloor != targetFloor) {
+            return direction;
+        }
+        boolean ahead = direction == Direction.UP
+                ? currentFloor < highestFloor && hasRequestsFrom(currentFloor + 1, true)
+                : currentFloor > lowestFloor && hasRequestsFrom(currentFloor - 1, false);
+        return ahead ? direction : Direction.NONE;
+    }
+
+    private boolean hasRequestsFrom(int floor, boolean up)
+    {
+        if (up) {
+            return goSet.nextSetFloor(floor) != NO_FLOOR
+                    || upCallSet.nextSetFloor(floor) != NO_FLOOR
+                    || downCallSet.nextSetFloor(floor) != NO_FLOOR;
+        }
+        return goSet.previousSetFloor(floor) != NO_FLOOR
+                || upCallSet.previousSetFloor(floor) != NO_FLOOR
+                || downCallSet.previousSetFloor(floor) != NO_FLOOR;
+    }
+
+    /**
+     * Пассажиры с этажа входят в лифт: их этажи назначения нажимаются в лифте.
+     */
+    private void pressDestinations(FloorSet[] destinations, int floor)
+    {
+        FloorSet waiting = destinations == null ? null : destinations[floor - lowestFloor];
+        if (waiting == null || waiting.isEmpty()) {
+            return;
+        }
+        for (int f = waiting.nextSetFloor(lowestFloor); f != NO_FLOOR; f = waiting.nextSetFloor(f + 1)) {
+            goSet.set(f);
+            listener.onGo(f);
+        }
+        waiting.clear();
+    }
+
+    private void clearCalls(int floor)
+    {
+        upCallSet.clear(floor);
+        downCallSet.clear(floor);
+        anyCallSet.clear(floor);
     }
 
     private void checkFloor(int floor)
     {
-        checkArgument(floor >= 1 && floor <= cfg.getFloorCount(), "Invalid floor");
+        checkArgument(floor >= lowestFloor && floor <= highestFloor, "Invalid floor");
     }
 
 }
@@ -0,0 +1,145 @@
+package ru.nekludov.chatfuel.lift.model;
+
+/**
+ * Неизменяемый снимок состояния лифта (см. {@link Lift#getSnapshot()}).
+ *
+ * Лифт (если включен {@link Lift#enableSnapshots()}) публикует новый снимок после каждого перехода,
+ * изменившего состояние, через volatile-ссылку, поэтому читать снимки можно из любого потока без блокировок
+ * и сколько угодно часто - поток лифта это не задерживает.
+ * Номер версии растет на единицу с каждым снимком: по нему видно, изменилось ли состояние с прошлого чтения.
+ * Наборы нажатых кнопок, не изменившиеся с предыдущего снимка, разделяются с ним, а не копируются.
+ */
+public final class LiftSnapshot
+{
+
+    private final long version;
+    private final int lowestFloor;
+    private final int floor;
+    private final boolean doorOpen;
+    private final boolean moving;
+    private final Lift.Direction direction;
+    private final int targetFloor;
+    private final int load;
+    // слова FloorSet: вызовы вверх и вниз (вызов без направления - в обоих) и кнопки в лифте
+    final long[] upCalls;
+    final long[] downCalls;
+    final long[] goes;
+
+    LiftSnapshot(long version, int lowestFloor, int floor, boolean doorOpen, boolean moving,
+                 Lift.Direction direction, int targetFloor, int load, long[] upCalls, long[] downCalls, long[] goes)
+    {
+        this.version = version;
+        this.lowestFloor = lowestFloor;
+        this.floor = floor;
+        this.doorOpen = doorOpen;
+        this.moving = moving;
+        this.direction = direction;
+        this.targetFloor = targetFloor;
+        this.load = load;
+        this.upCalls = upCalls;
+        this.downCalls = downCalls;
+        this.goes = goes;
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * См. {@link Lift#getCurrentFloor()}.
+     */
+    public int getFloor()
+    {
+        return floor;
+    }
+
+    public boolean isDoorOpen()
+    {
+        return doorOpen;
+    }
+
+    public boolean isMoving()
+    {
+        return moving;
+    }
+
+    /**
+     * См. {@link Lift#getDirection()}.
+     */
+    public Lift.Direction getDirection()
+    {
+        return direction;
+    }
+
+    /**
+     * Этаж, к которому едет лифт, или {@link Lift#NO_FLOOR}.
+     */
+    public int getTargetFloor()
+    {
+        return targetFloor;
+    }
+
+    public int getLoad()
+    {
+        return load;
+    }
+
+    /**
+     * Есть ли необслуженный вызов с этажа в заданном направлении (NONE - в любом).
+     */
+    public boolean isCalled(int floor, Lift.Direction direction)
+    {
+        switch (direction) {
+            case UP:
+                return get(upCalls, floor);
+            case DOWN:
+                return get(downCalls, floor);
+            default:
+                return get(upCalls, floor) || get(downCalls, floor);
+        }
+    }
+
+    /**
+     * Нажата ли в лифте кнопка этажа.
+     */
+    public boolean isGoPressed(int floor)
+    {
+        return get(goes, floor);
+    }
+
+    /**
+     * Есть ли у лифта необслуженные запросы.
+     */
+    public boolean hasRequests()
+    {
+        return !isEmpty(upCalls) || !isEmpty(downCalls) || !isEmpty(goes);
+    }
+
+    private boolean get(long[] words, int floor)
+    {
+        int index = floor - lowestFloor;
+        if (index < 0 || index >>> 6 >= words.length) {
+            return false;
+        }
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static boolean isEmpty(long[] words)
+    {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "v" + version + " floor " + floor + (doorOpen ? " open" : moving ? " moving " + direction : "")
+                + (targetFloor == Lift.NO_FLOOR ? "" : " to " + targetFloor) + ", load " + load;
+    }
+
+}
@@ -1,43 +1,162 @@
 package ru.nekludov.chatfuel.lift.model;
 
-import java.util.BitSet;
-
 /**
  * В ТЗ реализуем одну простую стратегию, но если нужно - могу реализовать и более сложные
  * (например, учитывающие приоритет нажатия кнопок в лифте нажатиям вызовов лифта с этажа).
+ *
+ * Для нагруженных домов - "собирательные" стратегии LOOK и SCAN: лифт помнит направление движения
+ * и, пока есть попутные запросы, обслуживает их по пути, не разворачиваясь.
  */
 public class MoveStrategies
 {
 
     /**
      * Стратегия, которая отправляет лифт на ближайший этаж с приоритетом вверх.
-     * Если этаж задан - оставляет его неизменным.
+     * Если этаж задан - оставляет его неизменным. Направления вызовов и движения не учитывает.
      */
     public static final Lift.MoveStrategy SIMPLE_NEAREST = new Lift.MoveStrategy()
     {
         @Override
-        public Integer getTargetFloor(BitSet callBitSet, BitSet goBitSet, int currentFloor, Integer targetFloor)
+        public int getTargetFloor(FloorSet upCallSet, FloorSet downCallSet, FloorSet goSet,
+                                  int currentFloor, int targetFloor, Lift.Direction direction)
         {
-            if (targetFloor != null && targetFloor != currentFloor) {
+            if (targetFloor != Lift.NO_FLOOR && targetFloor != currentFloor) {
                 return targetFloor;
             }
-            BitSet join = ((BitSet) callBitSet.clone());
-            join.or(goBitSet);
-            int targetUp = join.nextSetBit(currentFloor);
-            int targetDown = join.previousSetBit(currentFloor);
-            if (targetUp != -1 && targetDown != -1) {
+            int targetUp = nearestUp(upCallSet, downCallSet, goSet, currentFloor);
+            int targetDown = nearestDown(upCallSet, downCallSet, goSet, currentFloor);
+            if (targetUp != Lift.NO_FLOOR && targetDown != Lift.NO_FLOOR) {
                 int dup = targetUp - currentFloor;
                 int ddown = currentFloor - targetDown;
                 return ddown < dup ? targetDown : targetUp;
             }
-            else if (targetUp != -1) {
+            else if (targetUp != Lift.NO_FLOOR) {
                 return targetUp;
             }
-            else if (targetDown != -1) {
-                return targetDown;
-            }
-            return null;
+            return targetDown;
         }
     };
 
+    /**
+     * Собирательная стратегия LOOK: лифт едет в текущем направлении, останавливаясь по кнопкам в лифте
+     * и по попутным вызовам, до самого дальнего запроса в этом направлении, и только затем разворачивается.
+     * Стоящий без дела лифт едет к ближайшему запросу.
+     */
+    public static final Lift.MoveStrategy LOOK = new CollectiveStrategy(false);
+
+    /**
+     * Собирательная стратегия SCAN: как LOOK, но лифт разворачивается только на крайнем этаже дома
+     * (если есть запросы, ради которых нужно разворачиваться).
+     */
+    public static final Lift.MoveStrategy SCAN = new CollectiveStrategy(true);
+
+    private static class CollectiveStrategy implements Lift.MoveStrategy
+    {
+
+        private final boolean toTerminal;
+
+        CollectiveStrategy(boolean toTerminal)
+        {
+            this.toTerminal = toTerminal;
+        }
+
+        @Override
+        public int getTargetFloor(FloorSet upCallSet, FloorSet downCallSet, FloorSet goSet,
+                                  int currentFloor, int targetFloor, Lift.Direction direction)
+        {
+            if (direction == Lift.Direction.NONE) {
+                return SIMPLE_NEAREST.getTargetFloor(upCallSet, downCallSet, goSet, currentFloor, Lift.NO_FLOOR, direction);
+            }
+            boolean up = direction == Lift.Direction.UP;
+            int target = up
+                    ? ahead(upCallSet, downCallSet, goSet, currentFloor)
+                    : behind(upCallSet, downCallSet, goSet, currentFloor);
+            if (target != Lift.NO_FLOOR) {
+                return target;
+            }
+            // впереди никого - разворачиваемся
+            target = up
+                    ? behind(upCallSet, downCallSet, goSet, currentFloor)
+                    : ahead(upCallSet, downCallSet, goSet, currentFloor);
+            if (target != Lift.NO_FLOOR && toTerminal) {
+                // SCAN сначала доезжает до крайнего этажа
+                int terminal = up ? goSet.getHighestFloor() : goSet.getLowestFloor();
+                if (currentFloor != terminal) {
+                    return terminal;
+                }
+            }
+            return target;
+        }
+
+        /**
+         * Следующая остановка при движении вверх от этажа (не считая его самого) или NO_FLOOR.
+         */
+        private int ahead(FloorSet upCallSet, FloorSet downCallSet, FloorSet goSet, int floor)
+        {
+            int top = goSet.getHighestFloor();
+            if (floor >= top) {
+                return Lift.NO_FLOOR;
+            }
+            int stop = min(goSet.nextSetFloor(floor + 1), upCallSet.nextSetFloor(floor + 1));
+            if (stop != Lift.NO_FLOOR) {
+                return stop;
+            }
+            // попутных нет - едем к самому верхнему вызову вниз, чтобы оттуда развернуться
+            int turn = downCallSet.previousSetFloor(top);
+            if (turn <= floor) {
+                return Lift.NO_FLOOR;
+            }
+            return toTerminal ? top : turn;
+        }
+
+        /**
+         * Следующая остановка при движении вниз от этажа (не считая его самого) или NO_FLOOR.
+         */
+        private int behind(FloorSet upCallSet, FloorSet downCallSet, FloorSet goSet, int floor)
+        {
+            int bottom = goSet.getLowestFloor();
+            if (floor <= bottom) {
+                return Lift.NO_FLOOR;
+            }
+            int stop = Math.max(goSet.previousSetFloor(floor - 1), downCallSet.previousSetFloor(floor - 1));
+            if (stop != Lift.NO_FLOOR) {
+                return stop;
+            }
+            int turn = upCallSet.nextSetFloor(bottom);
+            if (turn == Lift.NO_FLOOR || turn >= floor) {
+                return Lift.NO_FLOOR;
+            }
+            return toTerminal ? bottom : turn;
+        }
+    }
+
+    /**
+     * Ближайший нажатый этаж не ниже заданного в объединении наборов (без создания объединения)
+     * или {@link Lift#NO_FLOOR}.
+     */
+    static int nearestUp(FloorSet a, FloorSet b, FloorSet c, int floor)
+    {
+        return min(min(a.nextSetFloor(floor), b.nextSetFloor(floor)), c.nextSetFloor(floor));
+    }
+
+    /**
+     * Ближайший нажатый этаж не выше заданного в объединении наборов или {@link Lift#NO_FLOOR}
+     * (NO_FLOOR меньше любого этажа).
+     */
+    static int nearestDown(FloorSet a, FloorSet b, FloorSet c, int floor)
+    {
+        return Math.max(Math.max(a.previousSetFloor(floor), b.previousSetFloor(floor)), c.previousSetFloor(floor));
+    }
+
+    /**
+     * Минимум из двух этажей, где {@link Lift#NO_FLOOR} означает отсутствие этажа.
+     */
+    private static int min(int floor1, int floor2)
+    {
+        if (floor1 == Lift.NO_FLOOR) {
+            return floor2;
+        }
+        return floor2 == Lift.NO_FLOOR ? floor1 : Math.min(floor1, floor2);
+    }
+
 }
@@ -0,0 +1,147 @@
+package ru.nekludov.chatfuel.lift.model;
+
+import java.util.function.LongSupplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Стратегия с упреждающей парковкой: пока запросы есть, решает исходная стратегия,
+ * а свободный лифт отправляется на этаж, откуда в это время суток его вероятнее всего вызовут
+ * (например, утром - в вестибюль), вместо того чтобы стоять там, где остановился.
+ *
+ * Частоты вызовов стратегия узнает сама как слушатель лифта ({@link #onCall}): сутки делятся на интервалы,
+ * для каждого интервала и этажа копится экспоненциально затухающее количество вызовов - недавние вызовы
+ * весят больше старых, поэтому распределение следует за изменениями потока пассажиров.
+ * Затухание прямое (forward decay): вес вызова растет со временем, и старые значения не нужно пересчитывать -
+ * учет вызова и выбор этажа не зависят от истории, а веса время от времени нормируются.
+ *
+ * Лифт, едущий на парковку, для исходной стратегии стоит без дела: как только появляются запросы,
+ * она выбирает цель заново, без учета парковочной цели и направления.
+ *
+ * Экземпляр стратегии обслуживает один лифт (он же слушает его вызовы). Как и модель лифта, стратегия однопоточная.
+ */
+public class ParkingStrategy implements Lift.MoveStrategy, Lift.Listener
+{
+
+    // при таком весе вызова все веса нормируются, чтобы не выйти за пределы double
+    private static final double MAX_WEIGHT = 1e100;
+
+    private final Lift.MoveStrategy delegate;
+    private final LongSupplier clock;
+    private final int lowestFloor;
+    private final int floorCount;
+    private final long dayLength;
+    private final int slotCount;
+    private final double decayRate;
+
+    // затухающие количества вызовов: интервал суток * floorCount + (этаж - lowestFloor)
+    private final double[] rates;
+    // момент, относительно которого считаются веса (первый вызов)
+    private long landmark;
+    private boolean started;
+
+    // куда лифт едет на парковку или NO_FLOOR
+    private int parkingTarget = Lift.NO_FLOOR;
+
+    /**
+     * @param clock текущее время в единицах времени лифта
+     * @param dayLength длительность суток
+     * @param slotCount на сколько интервалов делить сутки
+     * @param halfLife за какое время вес вызова уменьшается вдвое
+     */
+    public ParkingStrategy(Lift.Config cfg, Lift.MoveStrategy delegate, LongSupplier clock,
+                           long dayLength, int slotCount, long halfLife)
+    {
+        checkArgument(dayLength > 0 && slotCount > 0 && slotCount <= dayLength, "Wrong day slots");
+        checkArgument(halfLife > 0, "Wrong half-life");
+        this.delegate = delegate;
+        this.clock = clock;
+        this.lowestFloor = cfg.getLowestFloor();
+        this.floorCount = cfg.getFloorCount();
+        this.dayLength = dayLength;
+        this.slotCount = slotCount;
+        this.decayRate = Math.log(2) / halfLife;
+        rates = new double[slotCount * floorCount];
+    }
+
+    @Override
+    public int getTargetFloor(FloorSet upCallSet, FloorSet downCallSet, FloorSet goSet,
+                              int currentFloor, int targetFloor, Lift.Direction direction)
+    {
+        if (upCallSet.isEmpty() && downCallSet.isEmpty() && goSet.isEmpty()) {
+            int parking = getParkingFloor();
+            parkingTarget = parking == currentFloor ? Lift.NO_FLOOR : parking;
+            return parkingTarget;
+        }
+        if (targetFloor != Lift.NO_FLOOR && targetFloor == parkingTarget) {
+            targetFloor = Lift.NO_FLOOR;
+            direction = Lift.Direction.NONE;
+        }
+        parkingTarget = Lift.NO_FLOOR;
+        return delegate.getTargetFloor(upCallSet, downCallSet, goSet, currentFloor, targetFloor, direction);
+    }
+
+    @Override
+    public long getDepartureDelay(FloorSet upCallSet, FloorSet downCallSet, FloorSet goSet, int currentFloor)
+    {
+        return delegate.getDepartureDelay(upCallSet, downCallSet, goSet, currentFloor);
+    }
+
+    /**
+     * Этаж, откуда вероятнее всего вызовут лифт в текущем интервале суток, или {@link Lift#NO_FLOOR},
+     * если вызовов в этом интервале еще не было.
+     */
+    public int getParkingFloor()
+    {
+        int base = slot(clock.getAsLong()) * floorCount;
+        int best = -1;
+        double bestRate = 0;
+        for (int i = 0; i < floorCount; i++) {
+            if (rates[base + i] > bestRate) {
+                best = i;
+                bestRate = rates[base + i];
+            }
+        }
+        return best < 0 ? Lift.NO_FLOOR : lowestFloor + best;
+    }
+
+    @Override
+    public void onCall(int floor, Lift.Direction direction)
+    {
+        long now = clock.getAsLong();
+        if (!started) {
+            landmark = now;
+            started = true;
+        }
+        double weight = Math.exp(Math.max(0, now - landmark) * decayRate);
+        if (weight > MAX_WEIGHT) {
+            for (int i = 0; i < rates.length; i++) {
+                rates[i] /= weight;
+            }
+            landmark = now;
+            weight = 1;
+        }
+        rates[slot(now) * floorCount + floor - lowestFloor] += weight;
+    }
+
+    private int slot(long time)
+    {
+        return (int) (Math.floorMod(time, dayLength) * slotCount / dayLength);
+    }
+
+    @Override
+    public void onDoorOpened()
+    {
+    }
+
+    @Override
+    public void onDoorClosed()
+    {
+    }
+
+    @Override
+    public void onEnterFloor(int floor)
+    {
+    }
+
+}
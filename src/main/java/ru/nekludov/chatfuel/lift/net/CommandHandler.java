@@ -0,0 +1,21 @@
+package ru.nekludov.chatfuel.lift.net;
+
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+/**
+ * Получатель разобранных команд лифта.
+ */
+public interface CommandHandler
+{
+
+    /**
+     * Вызов лифта на этаж: qN (NONE), uN (UP), dN (DOWN).
+     */
+    void call(int floor, Lift.Direction direction);
+
+    /**
+     * Нажатие кнопки этажа в лифте: wN.
+     */
+    void go(int floor);
+
+}
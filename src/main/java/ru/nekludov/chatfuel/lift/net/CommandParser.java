@@ -0,0 +1,126 @@
+package ru.nekludov.chatfuel.lift.net;
+
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Потоковый разбор текстовых команд лифта прямо из байтов (без создания строк и чисел-объектов).
+ *
+ * Команда - строка вида qN, uN, dN или wN (N - целое, возможно отрицательное), завершенная '\n';
+ * '\r' и пустые строки игнорируются. Команда может прийти по частям в разных буферах:
+ * состояние разбора сохраняется между вызовами {@link #parse(ByteBuffer)}.
+ * На неверную строку вызывается обработчик ошибок, разбор продолжается со следующей строки.
+ */
+public class CommandParser
+{
+
+    private static final int MAX_DIGITS = 9;
+
+    private enum State
+    {
+        START, SIGN, DIGITS, SKIP
+    }
+
+    private final CommandHandler handler;
+    private final Runnable errorHandler;
+
+    private State state = State.START;
+    private byte command;
+    private boolean negative;
+    private int digits;
+    private int value;
+
+    public CommandParser(CommandHandler handler, Runnable errorHandler)
+    {
+        this.handler = handler;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Разобрать все байты буфера (от position до limit).
+     */
+    public void parse(ByteBuffer buffer)
+    {
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == '\r') {
+                continue;
+            }
+            if (b == '\n') {
+                endLine();
+                continue;
+            }
+            switch (state) {
+                case START:
+                    if (b == 'q' || b == 'u' || b == 'd' || b == 'w') {
+                        command = b;
+                        negative = false;
+                        digits = 0;
+                        value = 0;
+                        state = State.SIGN;
+                    }
+                    else {
+                        state = State.SKIP;
+                    }
+                    break;
+                case SIGN:
+                    if (b == '-') {
+                        negative = true;
+                        state = State.DIGITS;
+                    }
+                    else {
+                        // первый символ без знака - цифра
+                        digit(b);
+                    }
+                    break;
+                case DIGITS:
+                    digit(b);
+                    break;
+                case SKIP:
+                    break;
+            }
+        }
+    }
+
+    private void digit(byte b)
+    {
+        if (b >= '0' && b <= '9' && digits < MAX_DIGITS) {
+            value = value * 10 + (b - '0');
+            digits++;
+            state = State.DIGITS;
+        }
+        else {
+            state = State.SKIP;
+        }
+    }
+
+    private void endLine()
+    {
+        State ended = state;
+        state = State.START;
+        if (ended == State.START) {
+            return;
+        }
+        if (ended != State.DIGITS || digits == 0) {
+            errorHandler.run();
+            return;
+        }
+        int floor = negative ? -value : value;
+        switch (command) {
+            case 'q':
+                handler.call(floor, Lift.Direction.NONE);
+                break;
+            case 'u':
+                handler.call(floor, Lift.Direction.UP);
+                break;
+            case 'd':
+                handler.call(floor, Lift.Direction.DOWN);
+                break;
+            default:
+                handler.go(floor);
+                break;
+        }
+    }
+
+}
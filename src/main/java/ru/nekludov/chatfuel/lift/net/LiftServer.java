@@ -0,0 +1,306 @@
+package ru.nekludov.chatfuel.lift.net;
+
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Неблокирующий TCP-сервер команд лифта для панелей управления.
+ *
+ * Один поток с Selector обслуживает все соединения: принимает команды (формат - как в консоли, см. {@link CommandParser}),
+ * передает их обработчику и рассылает всем подключенным клиентам события лифта строками
+ * "DOOR OPEN", "DOOR CLOSE", "ENTER FLOOR N". На неверную команду клиенту отвечается строкой "ERROR".
+ *
+ * Сервер сам является слушателем лифта. События должны приходить из одного потока (потока лифта):
+ * они кодируются числами в кольцевой буфер без создания объектов, а в сокеты их пишет поток сервера.
+ * Клиент, который не успевает читать события (переполнен буфер отправки), отключается -
+ * медленный клиент не задерживает ни лифт, ни остальных клиентов.
+ *
+ * Обработчик команд вызывается в потоке сервера.
+ */
+public class LiftServer implements Lift.Listener
+{
+
+    private static final int READ_BUFFER_SIZE = 1024;
+    private static final int WRITE_BUFFER_SIZE = 8192;
+    private static final int EVENT_BUFFER_SIZE = 1024;
+
+    private static final int DOOR_OPEN = 0;
+    private static final int DOOR_CLOSE = 1;
+    private static final int ENTER_FLOOR = 2;
+
+    private static final byte[][] EVENT_TEXT = {
+            "DOOR OPEN".getBytes(StandardCharsets.US_ASCII),
+            "DOOR CLOSE".getBytes(StandardCharsets.US_ASCII),
+            "ENTER FLOOR ".getBytes(StandardCharsets.US_ASCII)
+    };
+    private static final byte[] ERROR = "ERROR\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final CommandHandler handler;
+    private final Consumer<Throwable> errorHandler;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // события лифта: тип в старших 32 битах, этаж - в младших
+    private final long[] events = new long[EVENT_BUFFER_SIZE];
+    private final AtomicLong published = new AtomicLong();
+    private volatile long consumed;
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    // буфер для кодирования события (только для потока сервера)
+    private final ByteBuffer eventBytes = ByteBuffer.allocate(64);
+
+    public LiftServer(InetSocketAddress address, CommandHandler handler, Consumer<Throwable> errorHandler)
+            throws IOException
+    {
+        this.handler = handler;
+        this.errorHandler = errorHandler;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::loop, "lift-server");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Порт, на котором сервер принимает соединения (полезно, если при создании был задан порт 0).
+     */
+    public int getPort()
+    {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void start()
+    {
+        thread.start();
+    }
+
+    /**
+     * Остановить сервер и закрыть все соединения.
+     */
+    public void stop() throws InterruptedException
+    {
+        running = false;
+        selector.wakeup();
+        thread.join();
+    }
+
+    @Override
+    public void onDoorOpened()
+    {
+        publish(DOOR_OPEN, 0);
+    }
+
+    @Override
+    public void onDoorClosed()
+    {
+        publish(DOOR_CLOSE, 0);
+    }
+
+    @Override
+    public void onEnterFloor(int floor)
+    {
+        publish(ENTER_FLOOR, floor);
+    }
+
+    private void publish(int type, int floor)
+    {
+        long seq = published.get();
+        if (seq - consumed >= events.length) {
+            // поток сервера не успевает - событие теряется (лифт не ждет)
+            return;
+        }
+        events[(int) (seq % events.length)] = ((long) type << 32) | (floor & 0xFFFFFFFFL);
+        published.lazySet(seq + 1);
+        // будим селектор, только если его еще не будили с момента последней обработки событий
+        if (!wakeupPending.getAndSet(true)) {
+            selector.wakeup();
+        }
+    }
+
+    private void loop()
+    {
+        try {
+            while (running) {
+                selector.select();
+                wakeupPending.set(false);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        handle(key);
+                    }
+                    catch (IOException e) {
+                        close(key);
+                    }
+                    catch (RuntimeException e) {
+                        errorHandler.accept(e);
+                    }
+                }
+                dispatchEvents();
+            }
+        }
+        catch (Throwable e) {
+            errorHandler.accept(e);
+        }
+        finally {
+            for (SelectionKey key : selector.keys()) {
+                close(key);
+            }
+            try {
+                selector.close();
+            }
+            catch (IOException e) {
+                errorHandler.accept(e);
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) throws IOException
+    {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            SocketChannel channel = serverChannel.accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, new Connection());
+            }
+            return;
+        }
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        if (key.isReadable()) {
+            int n = channel.read(connection.readBuffer);
+            if (n < 0) {
+                close(key);
+                return;
+            }
+            connection.readBuffer.flip();
+            connection.parser.parse(connection.readBuffer);
+            connection.readBuffer.clear();
+            for (; connection.errors > 0 && key.isValid(); connection.errors--) {
+                enqueue(key, connection, ERROR, 0, ERROR.length);
+            }
+        }
+        if (key.isValid() && key.isWritable()) {
+            flush(key, connection);
+        }
+    }
+
+    private void dispatchEvents()
+    {
+        long seq = consumed;
+        long end = published.get();
+        while (seq < end) {
+            long event = events[(int) (seq % events.length)];
+            seq++;
+            encode((int) (event >>> 32), (int) event);
+            for (SelectionKey key : selector.keys()) {
+                if (key.isValid() && key.attachment() instanceof Connection) {
+                    enqueue(key, (Connection) key.attachment(), eventBytes.array(), 0, eventBytes.position());
+                }
+            }
+        }
+        consumed = seq;
+    }
+
+    private void encode(int type, int floor)
+    {
+        eventBytes.clear();
+        eventBytes.put(EVENT_TEXT[type]);
+        if (type == ENTER_FLOOR) {
+            putInt(eventBytes, floor);
+        }
+        eventBytes.put((byte) '\n');
+    }
+
+    private static void putInt(ByteBuffer buffer, int value)
+    {
+        long v = value;
+        if (v < 0) {
+            buffer.put((byte) '-');
+            v = -v;
+        }
+        long divisor = 1;
+        while (divisor * 10 <= v) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + v / divisor % 10));
+        }
+    }
+
+    private void enqueue(SelectionKey key, Connection connection, byte[] bytes, int offset, int length)
+    {
+        if (connection.writeBuffer.remaining() < length) {
+            // клиент не читает события - отключаем
+            close(key);
+            return;
+        }
+        connection.writeBuffer.put(bytes, offset, length);
+        flush(key, connection);
+    }
+
+    private void flush(SelectionKey key, Connection connection)
+    {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer buffer = connection.writeBuffer;
+        buffer.flip();
+        try {
+            channel.write(buffer);
+        }
+        catch (IOException e) {
+            close(key);
+            return;
+        }
+        finally {
+            buffer.compact();
+        }
+        if (buffer.position() > 0) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+        else {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void close(SelectionKey key)
+    {
+        key.cancel();
+        try {
+            key.channel().close();
+        }
+        catch (IOException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    private class Connection
+    {
+        final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        // количество неверных команд, на которые еще не ответили
+        int errors;
+        final CommandParser parser = new CommandParser(handler, () -> errors++);
+    }
+
+}
@@ -0,0 +1,206 @@
+package ru.nekludov.chatfuel.lift.sim;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Чтение записанных нажатий кнопок (трассы) из файла.
+ *
+ * Поддерживаются два формата:
+ *      * текстовый (CSV): строки "время,команда", где команда - qN, uN, dN или wN (как в консоли);
+ *        пустые строки и строки, начинающиеся с '#', пропускаются;
+ *      * двоичный: заголовок {@link #BINARY_MAGIC}, затем записи по 16 байт - время (long), символ команды (int),
+ *        этаж (int), big-endian. Получается из текстового через {@link #convertToBinary(Path, Path)}.
+ * Время - в единицах времени лифта, события идут по неубыванию времени.
+ *
+ * Файл отображается в память окнами и разбирается прямо из байтов, поэтому размер трассы не ограничен памятью,
+ * а на событие не создается ни одного объекта.
+ */
+public final class TraceReader
+{
+
+    public static final int BINARY_MAGIC = 0x4C545243;
+
+    private static final int BINARY_RECORD_SIZE = 16;
+
+    private static final long DEFAULT_WINDOW = 64L << 20;
+
+    /**
+     * Получатель событий трассы.
+     */
+    public interface Handler
+    {
+        /**
+         * @param command 'q', 'u', 'd' или 'w'
+         */
+        void onCommand(long time, char command, int floor);
+    }
+
+    private TraceReader()
+    {
+    }
+
+    /**
+     * Прочитать трассу (формат определяется по заголовку).
+     * @return количество событий
+     */
+    public static long read(Path file, Handler handler) throws IOException
+    {
+        return read(file, handler, DEFAULT_WINDOW);
+    }
+
+    static long read(Path file, Handler handler, long window) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= 4 && channel.map(FileChannel.MapMode.READ_ONLY, 0, 4).getInt() == BINARY_MAGIC) {
+                return readBinary(channel, size, handler, window);
+            }
+            return readText(channel, size, handler, window);
+        }
+    }
+
+    /**
+     * Переписать текстовую трассу в двоичный формат.
+     * @return количество событий
+     */
+    public static long convertToBinary(Path csv, Path binary) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(binary)))) {
+            out.writeInt(BINARY_MAGIC);
+            try {
+                return read(csv, (time, command, floor) -> {
+                    try {
+                        out.writeLong(time);
+                        out.writeInt(command);
+                        out.writeInt(floor);
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static long readBinary(FileChannel channel, long size, Handler handler, long window) throws IOException
+    {
+        long recordsPerWindow = Math.max(1, window / BINARY_RECORD_SIZE);
+        long count = 0;
+        long offset = 4;
+        long previous = Long.MIN_VALUE;
+        while (size - offset >= BINARY_RECORD_SIZE) {
+            long records = Math.min(recordsPerWindow, (size - offset) / BINARY_RECORD_SIZE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, records * BINARY_RECORD_SIZE);
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            for (int p = 0; p < records * BINARY_RECORD_SIZE; p += BINARY_RECORD_SIZE) {
+                long time = buffer.getLong(p);
+                char command = (char) buffer.getInt(p + 8);
+                int floor = buffer.getInt(p + 12);
+                checkEvent(time >= previous && isCommand(command), offset + p);
+                previous = time;
+                handler.onCommand(time, command, floor);
+            }
+            offset += records * BINARY_RECORD_SIZE;
+            count += records;
+        }
+        checkEvent(offset == size, offset);
+        return count;
+    }
+
+    private static long readText(FileChannel channel, long size, Handler handler, long window) throws IOException
+    {
+        long count = 0;
+        long offset = 0;
+        long previous = Long.MIN_VALUE;
+        while (offset < size) {
+            int length = (int) Math.min(window, size - offset);
+            boolean last = offset + length == size;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            int lineStart = 0;
+            while (lineStart < length) {
+                int lineEnd = lineStart;
+                while (lineEnd < length && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                if (lineEnd == length && !last) {
+                    // строка продолжается в следующем окне
+                    break;
+                }
+                long time = parseLine(buffer, lineStart, lineEnd, offset, handler, previous);
+                if (time != Long.MIN_VALUE) {
+                    previous = time;
+                    count++;
+                }
+                lineStart = lineEnd + 1;
+            }
+            if (lineStart == 0 && !last) {
+                throw new IllegalArgumentException("Trace line is too long at " + offset);
+            }
+            offset += Math.min(lineStart, length);
+        }
+        return count;
+    }
+
+    /**
+     * Разобрать строку [start, end) и передать событие обработчику.
+     * @return время события или Long.MIN_VALUE, если строка пустая или комментарий
+     */
+    private static long parseLine(MappedByteBuffer buffer, int start, int end, long offset, Handler handler,
+                                  long previous)
+    {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        if (start == end || buffer.get(start) == '#') {
+            return Long.MIN_VALUE;
+        }
+        int p = start;
+        long time = 0;
+        int digits = 0;
+        while (p < end && buffer.get(p) >= '0' && buffer.get(p) <= '9' && digits < 18) {
+            time = time * 10 + (buffer.get(p++) - '0');
+            digits++;
+        }
+        checkEvent(digits > 0 && p + 1 < end && buffer.get(p) == ',', offset + start);
+        p++;
+        char command = (char) buffer.get(p++);
+        boolean negative = p < end && buffer.get(p) == '-';
+        if (negative) {
+            p++;
+        }
+        int floor = 0;
+        digits = 0;
+        while (p < end && buffer.get(p) >= '0' && buffer.get(p) <= '9' && digits < 9) {
+            floor = floor * 10 + (buffer.get(p++) - '0');
+            digits++;
+        }
+        checkEvent(digits > 0 && p == end && isCommand(command) && time >= previous, offset + start);
+        handler.onCommand(time, command, negative ? -floor : floor);
+        return time;
+    }
+
+    private static boolean isCommand(char command)
+    {
+        return command == 'q' || command == 'u' || command == 'd' || command == 'w';
+    }
+
+    private static void checkEvent(boolean valid, long position)
+    {
+        if (!valid) {
+            throw new IllegalArgumentException("Bad trace event at " + position);
+        }
+    }
+
+}
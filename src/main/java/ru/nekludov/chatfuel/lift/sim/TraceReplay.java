@@ -0,0 +1,154 @@
+package ru.nekludov.chatfuel.lift.sim;
+
+import ru.nekludov.chatfuel.lift.metrics.LiftMetrics;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Прогон записанной трассы нажатий (см. {@link TraceReader}) через модель лифта в виртуальном времени -
+ * с максимальной скоростью, без ожидания реального времени.
+ *
+ * Нажатия применяются к лифту в моменты из трассы, между ними выполняются события лифта;
+ * времена ожидания и поездки собираются {@link LiftMetrics}. Нажатия, которые лифт отвергает
+ * (например, этаж вне дома), считаются отдельно и не прерывают прогон.
+ *
+ * Запуск (сравнение стратегий на одной трассе):
+ * java ru.nekludov.chatfuel.lift.sim.TraceReplay трасса этажей время_этажа время_дверей [нижний_этаж]
+ */
+public class TraceReplay implements TraceReader.Handler
+{
+
+    private static final String[] NAMES = {"SIMPLE_NEAREST", "LOOK", "SCAN"};
+    private static final Lift.MoveStrategy[] STRATEGIES = {
+            MoveStrategies.SIMPLE_NEAREST, MoveStrategies.LOOK, MoveStrategies.SCAN};
+
+    private final VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+    private final LiftMetrics metrics;
+    private final Lift lift;
+
+    private long events;
+    private long rejected;
+
+    public TraceReplay(Lift.Config cfg, Lift.MoveStrategy moveStrategy)
+    {
+        metrics = new LiftMetrics(cfg, scheduler::now);
+        lift = new Lift(cfg, moveStrategy, scheduler, metrics);
+    }
+
+    /**
+     * Прогнать трассу целиком, включая обслуживание последних вызовов.
+     */
+    public void replay(Path trace) throws IOException
+    {
+        TraceReader.read(trace, this);
+        scheduler.runAll();
+    }
+
+    @Override
+    public void onCommand(long time, char command, int floor)
+    {
+        scheduler.runUntil(Math.max(time, scheduler.now()));
+        events++;
+        try {
+            switch (command) {
+                case 'q':
+                    lift.call(floor, Lift.Direction.NONE);
+                    break;
+                case 'u':
+                    lift.call(floor, Lift.Direction.UP);
+                    break;
+                case 'd':
+                    lift.call(floor, Lift.Direction.DOWN);
+                    break;
+                default:
+                    lift.go(floor);
+                    break;
+            }
+        }
+        catch (IllegalArgumentException e) {
+            rejected++;
+        }
+    }
+
+    public LiftMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    public long getEvents()
+    {
+        return events;
+    }
+
+    public long getRejected()
+    {
+        return rejected;
+    }
+
+    /**
+     * Время окончания прогона (обслуживания последнего вызова).
+     */
+    public long getFinishTime()
+    {
+        return scheduler.now();
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        Path trace = Paths.get(args[0]);
+        int floorCount = Integer.valueOf(args[1]);
+        int floorTime = Integer.valueOf(args[2]);
+        long openCloseTime = Long.valueOf(args[3]);
+        int lowestFloor = args.length > 4 ? Integer.valueOf(args[4]) : 1;
+        Lift.Config cfg = new Lift.Config()
+        {
+            @Override
+            public int getFloorCount()
+            {
+                return floorCount;
+            }
+
+            @Override
+            public int getLowestFloor()
+            {
+                return lowestFloor;
+            }
+
+            @Override
+            public int getFloorHeight()
+            {
+                return floorTime;
+            }
+
+            @Override
+            public int getLiftSpeed()
+            {
+                return 1;
+            }
+
+            @Override
+            public long getOpenCloseTime()
+            {
+                return openCloseTime;
+            }
+        };
+
+        System.out.printf("%-15s %10s %8s %8s %8s %8s %8s %10s %10s %12s%n", "strategy", "events", "rejected",
+                "wait", "p99", "max", "ride", "stops", "floors", "events/s");
+        for (int i = 0; i < STRATEGIES.length; i++) {
+            TraceReplay replay = new TraceReplay(cfg, STRATEGIES[i]);
+            long start = System.nanoTime();
+            replay.replay(trace);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            LiftMetrics m = replay.getMetrics();
+            System.out.printf("%-15s %10d %8d %8.1f %8d %8d %8.1f %10d %10d %12.0f%n", NAMES[i],
+                    replay.getEvents(), replay.getRejected(), m.getWaitMean(), m.getWaitP99(), m.getWaitMax(),
+                    m.getRideMean(), m.getDoorCycles(), m.getFloorsTraveled(), replay.getEvents() / seconds);
+        }
+    }
+
+}
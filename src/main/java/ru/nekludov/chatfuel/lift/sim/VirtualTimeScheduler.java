@@ -0,0 +1,202 @@
+package ru.nekludov.chatfuel.lift.sim;
+
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Планировщик в виртуальном времени для дискретно-событийного моделирования.
+ *
+ * Время не связано с часами - оно "перескакивает" к моменту следующего события, поэтому модель
+ * можно прогонять во много раз быстрее реального времени.
+ *
+ * События хранятся в двоичной куче на параллельных массивах примитивов (время, порядковый номер, команда),
+ * без аллокаций на каждое событие (кроме роста массивов).
+ * События с одинаковым временем выполняются строго в порядке их планирования.
+ *
+ * Как и модель лифта, планировщик однопоточный.
+ */
+public class VirtualTimeScheduler implements Lift.Scheduler
+{
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] times = new long[INITIAL_CAPACITY];
+    private long[] seqs = new long[INITIAL_CAPACITY];
+    private Runnable[] commands = new Runnable[INITIAL_CAPACITY];
+    private int size;
+
+    private long seq;
+    private long now;
+
+    public VirtualTimeScheduler()
+    {
+        this(0);
+    }
+
+    public VirtualTimeScheduler(long startTime)
+    {
+        this.now = startTime;
+    }
+
+    @Override
+    public void schedule(long delay, Runnable command)
+    {
+        checkArgument(delay >= 0, "Negative delay");
+        scheduleAt(now + delay, command);
+    }
+
+    /**
+     * Запланировать команду на абсолютный момент времени (не раньше текущего).
+     */
+    public void scheduleAt(long time, Runnable command)
+    {
+        checkArgument(time >= now, "Time is in the past");
+        if (size == times.length) {
+            grow();
+        }
+        int i = size++;
+        long s = seq++;
+        // просеивание вверх
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(time, s, times[parent], seqs[parent])) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        times[i] = time;
+        seqs[i] = s;
+        commands[i] = command;
+    }
+
+    /**
+     * Текущее виртуальное время.
+     */
+    @Override
+    public long now()
+    {
+        return now;
+    }
+
+    /**
+     * Количество запланированных, но еще не выполненных команд.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Время ближайшего события (только если планировщик не пуст).
+     */
+    public long nextTime()
+    {
+        checkArgument(size > 0, "No scheduled commands");
+        return times[0];
+    }
+
+    /**
+     * Выполнить ближайшее событие.
+     * @return false, если событий нет
+     */
+    public boolean runNext()
+    {
+        if (size == 0) {
+            return false;
+        }
+        now = times[0];
+        Runnable command = poll();
+        command.run();
+        return true;
+    }
+
+    /**
+     * Выполнять события, пока они есть (в том числе запланированные в процессе выполнения).
+     * @return количество выполненных событий
+     */
+    public long runAll()
+    {
+        long count = 0;
+        while (runNext()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Выполнить все события со временем не позже указанного и перевести часы на этот момент.
+     * @return количество выполненных событий
+     */
+    public long runUntil(long time)
+    {
+        checkArgument(time >= now, "Time is in the past");
+        long count = 0;
+        while (size > 0 && times[0] <= time) {
+            runNext();
+            count++;
+        }
+        now = time;
+        return count;
+    }
+
+    private Runnable poll()
+    {
+        Runnable result = commands[0];
+        int last = --size;
+        long time = times[last];
+        long s = seqs[last];
+        Runnable command = commands[last];
+        commands[last] = null;
+        if (last > 0) {
+            // просеивание вниз
+            int i = 0;
+            int half = last >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < last && less(times[right], seqs[right], times[child], seqs[child])) {
+                    child = right;
+                }
+                if (!less(times[child], seqs[child], time, s)) {
+                    break;
+                }
+                move(child, i);
+                i = child;
+            }
+            times[i] = time;
+            seqs[i] = s;
+            commands[i] = command;
+        }
+        return result;
+    }
+
+    private static boolean less(long time1, long seq1, long time2, long seq2)
+    {
+        return time1 < time2 || (time1 == time2 && seq1 < seq2);
+    }
+
+    private void move(int from, int to)
+    {
+        times[to] = times[from];
+        seqs[to] = seqs[from];
+        commands[to] = commands[from];
+    }
+
+    private void grow()
+    {
+        int capacity = times.length << 1;
+        times = Arrays.copyOf(times, capacity);
+        seqs = Arrays.copyOf(seqs, capacity);
+        commands = Arrays.copyOf(commands, capacity);
+    }
+
+}
@@ -0,0 +1,340 @@
+package ru.nekludov.chatfuel.lift.group;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+import ru.nekludov.chatfuel.lift.sim.VirtualTimeScheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class GroupDispatcherTest
+{
+
+    static final int FLOORTIME = 2;
+    static final int OCTIME = 5;
+
+    Lift.Config cfg = new Lift.Config()
+    {
+        @Override
+        public int getFloorCount()
+        {
+            return 20;
+        }
+
+        @Override
+        public int getFloorHeight()
+        {
+            return FLOORTIME * 10;
+        }
+
+        @Override
+        public int getLiftSpeed()
+        {
+            return 10;
+        }
+
+        @Override
+        public long getOpenCloseTime()
+        {
+            return OCTIME;
+        }
+    };
+
+    // кабины на 2 пассажиров
+    Lift.Config smallCfg = new Lift.Config()
+    {
+        @Override
+        public int getFloorCount()
+        {
+            return cfg.getFloorCount();
+        }
+
+        @Override
+        public int getFloorHeight()
+        {
+            return cfg.getFloorHeight();
+        }
+
+        @Override
+        public int getLiftSpeed()
+        {
+            return cfg.getLiftSpeed();
+        }
+
+        @Override
+        public long getOpenCloseTime()
+        {
+            return cfg.getOpenCloseTime();
+        }
+
+        @Override
+        public int getCapacity()
+        {
+            return 2;
+        }
+    };
+
+    VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+
+    List<String> opened = new ArrayList<>();
+
+    int[] floors = new int[3];
+
+    GroupDispatcher.Listener listener = new GroupDispatcher.Listener()
+    {
+        @Override
+        public void onDoorOpened(int car)
+        {
+            opened.add(car + "@" + floors[car]);
+        }
+
+        @Override
+        public void onDoorClosed(int car)
+        {
+        }
+
+        @Override
+        public void onEnterFloor(int car, int floor)
+        {
+            floors[car] = floor;
+        }
+    };
+
+    GroupDispatcher dispatcher = new GroupDispatcher(3, cfg, MoveStrategies.SIMPLE_NEAREST, scheduler, listener);
+
+    {
+        floors[0] = floors[1] = floors[2] = 1;
+    }
+
+    @Test
+    public void testIdleCarsPreferLowestIndex()
+    {
+        Assert.assertEquals(0, dispatcher.call(5));
+        scheduler.runAll();
+        Assert.assertEquals(5, floors[0]);
+        Assert.assertEquals("[0@5]", opened.toString());
+    }
+
+    @Test
+    public void testNearestCarIsAssigned()
+    {
+        dispatcher.call(10);
+        scheduler.runAll();
+
+        Assert.assertEquals(0, dispatcher.call(12));
+        Assert.assertEquals(1, dispatcher.call(3));
+        scheduler.runAll();
+
+        Assert.assertEquals(12, floors[0]);
+        Assert.assertEquals(3, floors[1]);
+    }
+
+    @Test
+    public void testBusyCarIsAvoided()
+    {
+        dispatcher.go(0, 15);
+        scheduler.runUntil(FLOORTIME);
+
+        // первая кабина уже едет вверх и этаж 1 у нее позади
+        Assert.assertEquals(1, dispatcher.call(1));
+        // этаж 10 по пути первой кабины
+        Assert.assertEquals(0, dispatcher.call(10));
+        scheduler.runAll();
+
+        Assert.assertEquals(15, floors[0]);
+        Assert.assertTrue(opened.contains("0@10"));
+        Assert.assertTrue(opened.contains("1@1"));
+    }
+
+    @Test
+    public void testRepeatedCallKeepsAssignment()
+    {
+        dispatcher.go(0, 2);
+        int car = dispatcher.call(7);
+        Assert.assertEquals(car, dispatcher.call(7));
+        scheduler.runAll();
+
+        Assert.assertEquals(1, opened.stream().filter(s -> s.endsWith("@7")).count());
+    }
+
+    @Test
+    public void testEstimateArrival()
+    {
+        Assert.assertEquals(9 * FLOORTIME, dispatcher.estimateArrival(0, 10));
+
+        dispatcher.go(0, 3);
+        dispatcher.go(0, 5);
+        // на этаж 4 - по пути, с остановкой на 3-м
+        Assert.assertEquals(3 * FLOORTIME + OCTIME, dispatcher.estimateArrival(0, 4));
+        // на этаж 2 - по пути, остановок до него нет
+        Assert.assertEquals(FLOORTIME, dispatcher.estimateArrival(0, 2));
+    }
+
+    @Test
+    public void testDirectionalCallsAreAssignedSeparately()
+    {
+        dispatcher.go(0, 15);
+        scheduler.runUntil(FLOORTIME);
+
+        // вызов "вверх" на этаже 10 - по пути первой кабины, вызов "вниз" там же - другой кабине
+        Assert.assertEquals(0, dispatcher.call(10, Lift.Direction.UP));
+        Assert.assertEquals(1, dispatcher.call(10, Lift.Direction.DOWN));
+        Assert.assertEquals(1, dispatcher.call(10, Lift.Direction.DOWN));
+        scheduler.runAll();
+
+        Assert.assertTrue(opened.contains("0@10"));
+        Assert.assertTrue(opened.contains("1@10"));
+    }
+
+    @Test
+    public void testStopServesOnlyItsDirection()
+    {
+        dispatcher.go(0, 15);
+        dispatcher.go(1, 20);
+        dispatcher.go(2, 20);
+        scheduler.runUntil(FLOORTIME);
+        Assert.assertEquals(0, dispatcher.call(10, Lift.Direction.UP));
+        Assert.assertEquals(0, dispatcher.call(10, Lift.Direction.DOWN));
+
+        // по пути вверх кабина забирает только попутных пассажиров, вызов "вниз" остается за ней
+        scheduler.runUntil(9 * FLOORTIME);
+        Assert.assertTrue(opened.contains("0@10"));
+        // теперь кабине ехать дольше других, но повторное нажатие не переназначает вызов
+        dispatcher.go(0, 19);
+        Assert.assertEquals(0, dispatcher.call(10, Lift.Direction.DOWN));
+        scheduler.runAll();
+
+        Assert.assertEquals(2, opened.stream().filter(s -> s.equals("0@10")).count());
+        Assert.assertFalse(opened.contains("1@10"));
+        Assert.assertFalse(opened.contains("2@10"));
+    }
+
+    @Test
+    public void testRequestsAreBatchedByDestination()
+    {
+        Assert.assertEquals(0, dispatcher.request(5, 12));
+        // кабина 0 и так останавливается на 12-м - второй пассажир туда же, хотя свободны и другие кабины
+        Assert.assertEquals(0, dispatcher.request(3, 12));
+        scheduler.runAll();
+
+        Assert.assertEquals(Arrays.asList("0@3", "0@5", "0@12"), opened);
+    }
+
+    @Test
+    public void testRequestsRespectCapacity()
+    {
+        GroupDispatcher small = new GroupDispatcher(3, smallCfg, MoveStrategies.LOOK, scheduler, listener);
+
+        Assert.assertEquals(0, small.request(5, 12));
+        Assert.assertEquals(0, small.request(5, 18));
+        // в кабину 0 с 5-го этажа больше не поместиться
+        Assert.assertEquals(1, small.request(5, 12));
+        scheduler.runAll();
+    }
+
+    @Test
+    public void testWaitingPassengersAreCountedByDirection()
+    {
+        GroupDispatcher small = new GroupDispatcher(3, smallCfg, MoveStrategies.LOOK, scheduler, listener);
+        small.go(0, 15);
+        small.go(1, 20);
+        small.go(2, 20);
+        scheduler.runUntil(FLOORTIME);
+
+        Assert.assertEquals(0, small.request(5, 12));
+        // пассажиры вниз занимают свои места, а не места пассажиров вверх
+        Assert.assertEquals(0, small.request(5, 2));
+        Assert.assertEquals(0, small.request(5, 2));
+
+        // по пути вверх кабина забрала только пассажира вверх: места для пассажиров вниз по-прежнему заняты
+        scheduler.runUntil(4 * FLOORTIME);
+        Assert.assertTrue(opened.contains("0@5"));
+        Assert.assertEquals(1, small.request(5, 3));
+        scheduler.runAll();
+
+        Assert.assertEquals(2, opened.stream().filter(s -> s.equals("0@5")).count());
+        Assert.assertTrue(opened.contains("0@2"));
+    }
+
+    @Test
+    public void testOppositeRequestAtOpenDoorWaits()
+    {
+        GroupDispatcher small = new GroupDispatcher(3, smallCfg, MoveStrategies.LOOK, scheduler, listener);
+        small.go(0, 5);
+        small.go(0, 15);
+        small.go(1, 20);
+        small.go(2, 20);
+        scheduler.runUntil(4 * FLOORTIME);
+        Assert.assertTrue(opened.contains("0@5"));
+
+        // двери кабины 0 открыты на 5-м, но остановка - для едущих вверх: пассажиры вниз ждут и занимают места
+        Assert.assertEquals(0, small.request(5, 2));
+        Assert.assertEquals(0, small.request(5, 2));
+        Assert.assertEquals(1, small.request(5, 2));
+        scheduler.runAll();
+
+        Assert.assertEquals(2, opened.stream().filter(s -> s.equals("0@5")).count());
+        Assert.assertTrue(opened.contains("0@2"));
+    }
+
+    @Test
+    public void testOppositeCallAtOpenDoorKeepsAssignment()
+    {
+        GroupDispatcher look = new GroupDispatcher(3, cfg, MoveStrategies.LOOK, scheduler, listener);
+        look.go(0, 5);
+        look.go(0, 15);
+        look.go(1, 20);
+        look.go(2, 20);
+        scheduler.runUntil(4 * FLOORTIME);
+        Assert.assertTrue(opened.contains("0@5"));
+
+        // вызов вниз при открытых для едущих вверх дверях ждет кабину 0 и не переназначается
+        Assert.assertEquals(0, look.call(5, Lift.Direction.DOWN));
+        look.go(0, 19);
+        Assert.assertEquals(0, look.call(5, Lift.Direction.DOWN));
+        scheduler.runAll();
+
+        Assert.assertEquals(2, opened.stream().filter(s -> s.equals("0@5")).count());
+        Assert.assertFalse(opened.contains("1@5"));
+    }
+
+    @Test
+    public void testFullCarIsAvoided()
+    {
+        GroupDispatcher small = new GroupDispatcher(3, smallCfg, MoveStrategies.LOOK, scheduler, listener);
+        small.call(1);
+        small.board(0, 2);
+        small.go(0, 10);
+        scheduler.runUntil(OCTIME + FLOORTIME);
+
+        // этаж 9 по пути первой кабины, но она полная и проедет его
+        Assert.assertEquals(1, small.call(9, Lift.Direction.UP));
+        scheduler.runAll();
+        Assert.assertFalse(opened.contains("0@9"));
+        Assert.assertTrue(opened.contains("1@9"));
+        Assert.assertTrue(opened.contains("0@10"));
+        Assert.assertEquals(2, small.getLoad(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCar()
+    {
+        dispatcher.go(3, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEstimateInvalidCar()
+    {
+        dispatcher.estimateArrival(3, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEstimateInvalidFloor()
+    {
+        dispatcher.estimateArrival(0, 100, Lift.Direction.UP);
+    }
+
+}
@@ -0,0 +1,132 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class EventLogTest
+{
+
+    static final long TIME = LocalDateTime.of(2017, 10, 1, 12, 30, 15, 7_000_000)
+            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    List<Throwable> errors = new ArrayList<>();
+
+    // до первой записи в канал пропускаем, дальше - ждем разрешения
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(0);
+
+    WritableByteChannel channel = new WritableByteChannel()
+    {
+        @Override
+        public int write(ByteBuffer src)
+        {
+            writing.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int n = src.remaining();
+            synchronized (output) {
+                output.write(src.array(), src.arrayOffset() + src.position(), n);
+            }
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    };
+
+    String[] lines()
+    {
+        synchronized (output) {
+            return new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        }
+    }
+
+    @Test
+    public void testFormat() throws Exception
+    {
+        EventLog log = new EventLog("test-log", 16, () -> TIME, channel, errors::add);
+        log.start();
+        log.log("DOOR OPEN");
+        log.log("ENTER FLOOR", -2);
+        log.stop();
+
+        String[] lines = lines();
+        Assert.assertArrayEquals(new String[] {
+                "2017-10-01 12:30:15.007: DOOR OPEN",
+                "2017-10-01 12:30:15.007: ENTER FLOOR -2"
+        }, lines);
+        Assert.assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testAllEventsWrittenInOrder() throws Exception
+    {
+        EventLog log = new EventLog("test-log", 64, () -> TIME, channel, errors::add);
+        log.start();
+        int logged = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long dropped = log.getDropped();
+            log.log("EVENT", i);
+            if (log.getDropped() == dropped) {
+                logged++;
+            }
+        }
+        log.stop();
+
+        String[] lines = lines();
+        Assert.assertEquals(logged, lines.length);
+        Assert.assertEquals(10_000, logged + log.getDropped());
+        long previous = -1;
+        for (String line : lines) {
+            long value = Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+            Assert.assertTrue(value > previous);
+            previous = value;
+        }
+    }
+
+    @Test
+    public void testStalledOutputDropsEventsInsteadOfBlocking() throws Exception
+    {
+        release = new CountDownLatch(1);
+        EventLog log = new EventLog("test-log", 4, () -> TIME, channel, errors::add);
+        log.start();
+        log.log("FIRST");
+        writing.await();
+
+        // вывод "завис" - буфер заполняется, дальше события отбрасываются без ожидания
+        for (int i = 0; i < 7; i++) {
+            log.log("EVENT", i);
+        }
+        Assert.assertEquals(3, log.getDropped());
+
+        release.countDown();
+        log.stop();
+        Assert.assertEquals(5, lines().length);
+    }
+
+}
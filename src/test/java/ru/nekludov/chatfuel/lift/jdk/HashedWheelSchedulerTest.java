@@ -0,0 +1,82 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class HashedWheelSchedulerTest
+{
+
+    List<Throwable> errors = new CopyOnWriteArrayList<>();
+
+    // маленькое колесо, чтобы задачи с большой задержкой проходили несколько оборотов
+    HashedWheelScheduler scheduler = new HashedWheelScheduler(
+            "test-wheel", 1, TimeUnit.MILLISECONDS, 8, TimeUnit.MILLISECONDS, Runnable::run, errors::add);
+
+    @After
+    public void tearDown() throws Exception
+    {
+        scheduler.stop();
+    }
+
+    @Test
+    public void testNotBeforeDeadline() throws Exception
+    {
+        CountDownLatch done = new CountDownLatch(1);
+        long[] elapsed = new long[1];
+        long start = System.nanoTime();
+        scheduler.schedule(30, () -> {
+            elapsed[0] = System.nanoTime() - start;
+            done.countDown();
+        });
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(elapsed[0] >= TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    @Test
+    public void testOrder() throws Exception
+    {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(4);
+        scheduler.schedule(40, () -> { order.add(40); done.countDown(); });
+        scheduler.schedule(5, () -> { order.add(5); done.countDown(); });
+        scheduler.schedule(20, () -> { order.add(20); done.countDown(); });
+        scheduler.schedule(20, () -> { order.add(21); done.countDown(); });
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList(5, 20, 21, 40), order);
+    }
+
+    @Test
+    public void testManyTasks() throws Exception
+    {
+        int count = 20000;
+        CountDownLatch done = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            scheduler.schedule(i % 50, done::countDown);
+        }
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testErrorDoesNotStopWheel() throws Exception
+    {
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.schedule(1, () -> {
+            throw new IllegalStateException("boom");
+        });
+        scheduler.schedule(5, done::countDown);
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, errors.size());
+    }
+
+}
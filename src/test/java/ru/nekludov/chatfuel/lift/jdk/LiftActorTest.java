@@ -0,0 +1,80 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class LiftActorTest
+{
+
+    static final int PRODUCERS = 4;
+    static final int COMMANDS = 50000;
+
+    List<Throwable> errors = new ArrayList<>();
+
+    LiftActor actor = new LiftActor("test-actor", errors::add);
+
+    // изменяется только в потоке актора
+    int counter;
+    int[] lastByProducer = new int[PRODUCERS];
+    boolean ordered = true;
+
+    @Test
+    public void testAllCommandsExecutedInProducerOrder() throws Exception
+    {
+        actor.start();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 1; i <= COMMANDS; i++) {
+                    int n = i;
+                    actor.submit(() -> {
+                        counter++;
+                        if (lastByProducer[producer] != n - 1) {
+                            ordered = false;
+                        }
+                        lastByProducer[producer] = n;
+                    });
+                }
+            });
+            t.start();
+            producers.add(t);
+        }
+        start.countDown();
+        for (Thread t : producers) {
+            t.join();
+        }
+        actor.stop();
+
+        Assert.assertEquals(PRODUCERS * COMMANDS, counter);
+        Assert.assertTrue("Commands of one producer were reordered", ordered);
+        Assert.assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testErrorDoesNotStopActor() throws Exception
+    {
+        actor.start();
+        actor.submit(() -> {
+            throw new IllegalArgumentException("Invalid floor");
+        });
+        actor.submit(() -> counter++);
+        actor.stop();
+
+        Assert.assertEquals(1, counter);
+        Assert.assertEquals(1, errors.size());
+        Assert.assertEquals("Invalid floor", errors.get(0).getMessage());
+    }
+
+}
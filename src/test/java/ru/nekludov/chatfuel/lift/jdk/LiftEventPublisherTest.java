@@ -0,0 +1,216 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+public class LiftEventPublisherTest
+{
+
+    // задачи доставки выполняются явно, когда тест вызывает runTasks()
+    Queue<Runnable> tasks = new ArrayDeque<>();
+
+    List<Throwable> errors = new CopyOnWriteArrayList<>();
+
+    LiftEventPublisher publisher = new LiftEventPublisher(() -> 42, tasks::add, 4, errors::add);
+
+    static class TestSubscriber implements Flow.Subscriber<LiftEvent>
+    {
+        final long initialRequest;
+        Flow.Subscription subscription;
+        final List<String> events = new ArrayList<>();
+        volatile boolean completed;
+        Throwable error;
+
+        TestSubscriber(long initialRequest)
+        {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(LiftEvent item)
+        {
+            events.add(item.toString());
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete()
+        {
+            completed = true;
+        }
+    }
+
+    private void runTasks()
+    {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void testEventsAreDeliveredToAllSubscribers()
+    {
+        TestSubscriber first = new TestSubscriber(Long.MAX_VALUE);
+        TestSubscriber second = new TestSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(first);
+        publisher.subscribe(second);
+
+        publisher.onCall(5, Lift.Direction.UP);
+        publisher.onEnterFloor(2);
+        publisher.onRequest(3, 7);
+        publisher.onBoard(2);
+        runTasks();
+
+        Assert.assertEquals("[CALL 5 UP, ENTER_FLOOR 2, REQUEST 3 7, BOARD 2]", first.events.toString());
+        Assert.assertEquals(first.events, second.events);
+        Assert.assertEquals(0, publisher.getDropped());
+    }
+
+    @Test
+    public void testDeliveryFollowsDemand()
+    {
+        TestSubscriber subscriber = new TestSubscriber(1);
+        publisher.subscribe(subscriber);
+        publisher.onEnterFloor(2);
+        publisher.onEnterFloor(3);
+        publisher.onEnterFloor(4);
+        runTasks();
+        Assert.assertEquals("[ENTER_FLOOR 2]", subscriber.events.toString());
+
+        subscriber.subscription.request(5);
+        runTasks();
+        Assert.assertEquals("[ENTER_FLOOR 2, ENTER_FLOOR 3, ENTER_FLOOR 4]", subscriber.events.toString());
+    }
+
+    @Test
+    public void testSlowSubscriberLosesOnlyItsOwnEvents()
+    {
+        TestSubscriber slow = new TestSubscriber(0);
+        TestSubscriber fast = new TestSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(slow);
+        publisher.subscribe(fast);
+
+        for (int floor = 1; floor <= 10; floor++) {
+            publisher.onEnterFloor(floor);
+            runTasks();
+        }
+        Assert.assertEquals(10, fast.events.size());
+        Assert.assertTrue(slow.events.isEmpty());
+        // буфер медленного подписчика - 4 события, остальные 6 отброшены
+        Assert.assertEquals(6, publisher.getDropped());
+
+        slow.subscription.request(Long.MAX_VALUE);
+        runTasks();
+        Assert.assertEquals("[ENTER_FLOOR 1, ENTER_FLOOR 2, ENTER_FLOOR 3, ENTER_FLOOR 4]", slow.events.toString());
+    }
+
+    @Test
+    public void testCancelAndClose()
+    {
+        TestSubscriber cancelled = new TestSubscriber(Long.MAX_VALUE);
+        TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(cancelled);
+        publisher.subscribe(subscriber);
+        cancelled.subscription.cancel();
+        Assert.assertEquals(1, publisher.getSubscriberCount());
+
+        publisher.onDoorOpened();
+        publisher.close();
+        runTasks();
+        Assert.assertTrue(cancelled.events.isEmpty());
+        Assert.assertFalse(cancelled.completed);
+        Assert.assertEquals("[DOOR_OPENED]", subscriber.events.toString());
+        Assert.assertTrue(subscriber.completed);
+
+        // подписка после закрытия сразу завершается
+        TestSubscriber late = new TestSubscriber(1);
+        publisher.subscribe(late);
+        runTasks();
+        Assert.assertTrue(late.completed);
+    }
+
+    @Test
+    public void testNonPositiveRequestIsError()
+    {
+        TestSubscriber subscriber = new TestSubscriber(0);
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        runTasks();
+        Assert.assertTrue(subscriber.error instanceof IllegalArgumentException);
+        Assert.assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    public void testBlockedSubscriberDoesNotBlockPublisher() throws Exception
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            LiftEventPublisher threaded = new LiftEventPublisher(() -> 0, executor, 16, errors::add);
+            CountDownLatch release = new CountDownLatch(1);
+            threaded.subscribe(new TestSubscriber(Long.MAX_VALUE)
+            {
+                @Override
+                public void onNext(LiftEvent item)
+                {
+                    try {
+                        release.await();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            TestSubscriber other = new TestSubscriber(Long.MAX_VALUE);
+            threaded.subscribe(other);
+
+            // первый подписчик завис в onNext, а события публикуются без ожидания
+            for (int i = 0; i < 1000; i++) {
+                threaded.onEnterFloor(1 + i % 10);
+                if (i % 10 == 0) {
+                    Thread.sleep(1);
+                }
+            }
+            Assert.assertTrue(threaded.getDropped() > 0);
+            release.countDown();
+            threaded.close();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!other.completed && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Assert.assertTrue(other.completed);
+            Assert.assertTrue(errors.isEmpty());
+        }
+        finally {
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+}
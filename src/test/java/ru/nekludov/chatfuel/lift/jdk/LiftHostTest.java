@@ -0,0 +1,193 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class LiftHostTest
+{
+
+    static final int LIFTS = 64;
+    static final int COMMANDS = 2000;
+
+    List<Throwable> errors = new CopyOnWriteArrayList<>();
+
+    LiftHost host = new LiftHost("test-host", 2, 8, errors::add);
+
+    // этаж проезжается за 1 мс, двери открыты 1 мс
+    Lift.Config cfg = new Lift.Config()
+    {
+        @Override
+        public int getFloorCount()
+        {
+            return 10;
+        }
+
+        @Override
+        public int getFloorHeight()
+        {
+            return 1;
+        }
+
+        @Override
+        public int getLiftSpeed()
+        {
+            return 1;
+        }
+
+        @Override
+        public long getOpenCloseTime()
+        {
+            return 1;
+        }
+    };
+
+    Lift.Listener silent = new Lift.Listener()
+    {
+        @Override
+        public void onDoorOpened()
+        {
+        }
+
+        @Override
+        public void onDoorClosed()
+        {
+        }
+
+        @Override
+        public void onEnterFloor(int floor)
+        {
+        }
+    };
+
+    @After
+    public void tearDown() throws Exception
+    {
+        host.stop();
+    }
+
+    @Test
+    public void testLiftNeverRunsInTwoThreadsWhilePartitionsMove() throws Exception
+    {
+        host.start();
+        List<LiftHost.HostedLift> lifts = new ArrayList<>();
+        AtomicBoolean[] running = new AtomicBoolean[LIFTS];
+        int[] counters = new int[LIFTS];
+        boolean[] overlap = new boolean[1];
+        for (int i = 0; i < LIFTS; i++) {
+            lifts.add(host.addLift("building-" + i, cfg, MoveStrategies.SIMPLE_NEAREST, silent));
+            running[i] = new AtomicBoolean();
+        }
+
+        Thread producer = new Thread(() -> {
+            for (int n = 0; n < COMMANDS; n++) {
+                for (int i = 0; i < LIFTS; i++) {
+                    int lift = i;
+                    lifts.get(i).execute(l -> {
+                        if (!running[lift].compareAndSet(false, true)) {
+                            overlap[0] = true;
+                        }
+                        counters[lift]++;
+                        running[lift].set(false);
+                    });
+                }
+                if (n % 100 == 0) {
+                    lifts.get(n % LIFTS).go(1 + n % 10);
+                }
+            }
+        });
+        producer.start();
+        // секции переезжают туда-обратно, пока идут команды
+        for (int round = 0; producer.isAlive() || round < 4; round++) {
+            for (int p = 0; p < host.getPartitionCount(); p++) {
+                host.movePartition(p, (host.getLoop(p) + 1) % host.getLoopCount()).get(5, TimeUnit.SECONDS);
+            }
+        }
+        producer.join();
+
+        CountDownLatch done = new CountDownLatch(LIFTS);
+        for (LiftHost.HostedLift lift : lifts) {
+            lift.execute(l -> done.countDown());
+        }
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < LIFTS; i++) {
+            Assert.assertEquals(COMMANDS, counters[i]);
+        }
+        Assert.assertFalse(overlap[0]);
+        Assert.assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testTimersRunInPartitionLoop() throws Exception
+    {
+        host.start();
+        List<String> threads = new CopyOnWriteArrayList<>();
+        CountDownLatch closed = new CountDownLatch(1);
+        LiftHost.HostedLift lift = host.addLift("tower", cfg, MoveStrategies.SIMPLE_NEAREST, new Lift.Listener()
+        {
+            @Override
+            public void onDoorOpened()
+            {
+                threads.add(Thread.currentThread().getName());
+            }
+
+            @Override
+            public void onDoorClosed()
+            {
+                threads.add(Thread.currentThread().getName());
+                closed.countDown();
+            }
+
+            @Override
+            public void onEnterFloor(int floor)
+            {
+                threads.add(Thread.currentThread().getName());
+            }
+        });
+        lift.go(3);
+
+        Assert.assertTrue(closed.await(5, TimeUnit.SECONDS));
+        String loop = "test-host-loop-" + host.getLoop(lift.getPartition());
+        // этажи и закрытие дверей - по таймерам, но тоже в цикле секции
+        Assert.assertEquals(4, threads.size());
+        Assert.assertTrue(threads.stream().allMatch(loop::equals));
+    }
+
+    @Test
+    public void testRebalanceMovesBusyPartition() throws Exception
+    {
+        host.start();
+        // все лифты в секциях первого цикла
+        List<LiftHost.HostedLift> lifts = new ArrayList<>();
+        for (int i = 0; lifts.size() < 8; i++) {
+            String id = "building-" + i;
+            if (host.getLoop(host.partitionOf(id)) == 0) {
+                lifts.add(host.addLift(id, cfg, MoveStrategies.SIMPLE_NEAREST, silent));
+            }
+        }
+        CountDownLatch done = new CountDownLatch(lifts.size() * 100);
+        for (int n = 0; n < 100; n++) {
+            for (LiftHost.HostedLift lift : lifts) {
+                lift.execute(l -> done.countDown());
+            }
+        }
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        int moved = host.rebalance().get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(moved > 0);
+        Assert.assertTrue(lifts.stream().anyMatch(l -> host.getLoop(l.getPartition()) == 1));
+        Assert.assertTrue(lifts.stream().anyMatch(l -> host.getLoop(l.getPartition()) == 0));
+        // нагрузка с прошлого выравнивания - нулевая
+        Assert.assertEquals(0, (int) host.rebalance().get(5, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,218 @@
+package ru.nekludov.chatfuel.lift.jdk;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+import ru.nekludov.chatfuel.lift.sim.VirtualTimeScheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+public class PressCoalescerTest
+{
+
+    static final int WINDOW = 5;
+
+    // этаж проезжается за 10 единиц времени - дольше окна
+    Lift.Config cfg = new Lift.Config()
+    {
+        @Override
+        public int getFloorCount()
+        {
+            return 10;
+        }
+
+        @Override
+        public int getFloorHeight()
+        {
+            return 10;
+        }
+
+        @Override
+        public int getLiftSpeed()
+        {
+            return 1;
+        }
+
+        @Override
+        public long getOpenCloseTime()
+        {
+            return 10;
+        }
+    };
+
+    List<String> events = new ArrayList<>();
+
+    Lift.Listener listener = new Lift.Listener()
+    {
+        @Override
+        public void onDoorOpened()
+        {
+        }
+
+        @Override
+        public void onDoorClosed()
+        {
+        }
+
+        @Override
+        public void onEnterFloor(int floor)
+        {
+        }
+
+        @Override
+        public void onCall(int floor, Lift.Direction direction)
+        {
+            events.add("call " + floor + " " + direction);
+        }
+
+        @Override
+        public void onGo(int floor)
+        {
+            events.add("go " + floor);
+        }
+    };
+
+    int decisions;
+
+    Lift.MoveStrategy countingStrategy = (upCallSet, downCallSet, goSet, currentFloor, targetFloor, direction) -> {
+        decisions++;
+        return MoveStrategies.SIMPLE_NEAREST.getTargetFloor(upCallSet, downCallSet, goSet,
+                currentFloor, targetFloor, direction);
+    };
+
+    VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+
+    Lift lift = new Lift(cfg, countingStrategy, scheduler, listener);
+
+    PressCoalescer coalescer = new PressCoalescer(cfg, lift, scheduler, WINDOW);
+
+    @Test
+    public void testRepeatedPressesMakeOneBatch()
+    {
+        for (int i = 0; i < 100; i++) {
+            coalescer.call(5, Lift.Direction.NONE);
+            coalescer.go(7);
+        }
+        coalescer.call(3, Lift.Direction.UP);
+        Assert.assertEquals(1, scheduler.size());
+        Assert.assertTrue(events.isEmpty());
+
+        scheduler.runUntil(WINDOW);
+        Assert.assertEquals("[go 7, call 5 NONE, call 3 UP]", events.toString());
+        Assert.assertEquals(1, decisions);
+
+        scheduler.runAll();
+        Assert.assertEquals(7, lift.getCurrentFloor());
+    }
+
+    @Test
+    public void testPressAfterFlushMakesNewBatch()
+    {
+        coalescer.go(3);
+        scheduler.runUntil(WINDOW);
+        coalescer.go(3);
+        coalescer.go(5);
+        scheduler.runUntil(2 * WINDOW);
+
+        Assert.assertEquals("[go 3, go 3, go 5]", events.toString());
+    }
+
+    @Test
+    public void testInvalidPresses()
+    {
+        checkIllegalArgument(() -> coalescer.go(0));
+        checkIllegalArgument(() -> coalescer.go(11));
+        checkIllegalArgument(() -> coalescer.call(10, Lift.Direction.UP));
+        checkIllegalArgument(() -> coalescer.call(1, Lift.Direction.DOWN));
+        Assert.assertTrue(scheduler.isEmpty());
+    }
+
+    private void checkIllegalArgument(Runnable action)
+    {
+        try {
+            action.run();
+        }
+        catch (IllegalArgumentException e) {
+            return;
+        }
+        Assert.fail("There is no illegal argument exception");
+    }
+
+    @Test
+    public void testConcurrentPressesAreNotLost() throws Exception
+    {
+        Set<Integer> pressed = ConcurrentHashMap.newKeySet();
+        LiftActor actor = new LiftActor("test-actor", Throwable::printStackTrace);
+        HashedWheelScheduler wheel = new HashedWheelScheduler(
+                "test-timer", 1, TimeUnit.MILLISECONDS, 64, TimeUnit.MILLISECONDS, actor::submit,
+                Throwable::printStackTrace);
+        Lift.Listener goListener = new Lift.Listener()
+        {
+            @Override
+            public void onDoorOpened()
+            {
+            }
+
+            @Override
+            public void onDoorClosed()
+            {
+            }
+
+            @Override
+            public void onEnterFloor(int floor)
+            {
+            }
+
+            @Override
+            public void onGo(int floor)
+            {
+                pressed.add(floor);
+            }
+        };
+        Lift concurrentLift = new Lift(cfg, MoveStrategies.SIMPLE_NEAREST, wheel, goListener);
+        PressCoalescer concurrentCoalescer = new PressCoalescer(cfg, concurrentLift, wheel, 1);
+        actor.start();
+        try {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 100_000; i++) {
+                        concurrentCoalescer.go(ThreadLocalRandom.current().nextInt(1, 11));
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            awaitPressed(pressed, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+
+            // после всех пачек новое нажатие тоже доходит до лифта
+            pressed.clear();
+            concurrentCoalescer.go(4);
+            awaitPressed(pressed, 4);
+        }
+        finally {
+            wheel.stop();
+            actor.stop();
+        }
+    }
+
+    private static void awaitPressed(Set<Integer> pressed, Integer... floors) throws InterruptedException
+    {
+        List<Integer> expected = Arrays.asList(floors);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!pressed.containsAll(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertTrue(pressed.containsAll(expected));
+    }
+
+}
@@ -0,0 +1,325 @@
+package ru.nekludov.chatfuel.lift.journal;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.nekludov.chatfuel.lift.model.CompositeListener;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+import ru.nekludov.chatfuel.lift.sim.VirtualTimeScheduler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+public class LiftJournalTest
+{
+
+    static final int FLOORTIME = 2;
+    static final int OCTIME = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    Lift.Config cfg = new Lift.Config()
+    {
+        @Override
+        public int getFloorCount()
+        {
+            return 10;
+        }
+
+        @Override
+        public int getLowestFloor()
+        {
+            return -1;
+        }
+
+        @Override
+        public int getFloorHeight()
+        {
+            return FLOORTIME * 10;
+        }
+
+        @Override
+        public int getLiftSpeed()
+        {
+            return 10;
+        }
+
+        @Override
+        public long getOpenCloseTime()
+        {
+            return OCTIME;
+        }
+    };
+
+    VirtualTimeScheduler scheduler;
+    LiftJournal journal;
+    Lift lift;
+    List<Integer> opened = new ArrayList<>();
+    // снимки пишутся сразу, если тест не задал другой executor
+    Executor executor = Runnable::run;
+    List<Throwable> errors = new ArrayList<>();
+
+    /**
+     * "Запуск" лифта: журнал из каталога, новый лифт, восстановление.
+     */
+    void start(int capacity) throws IOException
+    {
+        scheduler = new VirtualTimeScheduler();
+        journal = new LiftJournal(folder.getRoot().toPath(), cfg, capacity, executor, errors::add);
+        lift = new Lift(cfg, MoveStrategies.LOOK, scheduler, new CompositeListener(journal, new Lift.Listener()
+        {
+            @Override
+            public void onDoorOpened()
+            {
+                opened.add(lift.getCurrentFloor());
+            }
+
+            @Override
+            public void onDoorClosed()
+            {
+            }
+
+            @Override
+            public void onEnterFloor(int floor)
+            {
+            }
+        }));
+        journal.restore(lift);
+    }
+
+    /**
+     * "Падение" процесса: состояние в памяти теряется, на диске остается то, что успели записать.
+     */
+    void crash() throws IOException
+    {
+        journal.close();
+        opened.clear();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        journal.close();
+    }
+
+    @Test
+    public void testEmptyJournal() throws IOException
+    {
+        start(100);
+        Assert.assertEquals(Lift.NO_FLOOR, journal.getCurrentFloor());
+        Assert.assertEquals(1, lift.getCurrentFloor());
+        Assert.assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    public void testPendingRequestsSurviveRestart() throws IOException
+    {
+        start(100);
+        lift.go(7);
+        lift.call(3, Lift.Direction.DOWN);
+        lift.call(-1);
+        scheduler.runUntil(3 * FLOORTIME);
+        Assert.assertEquals(4, lift.getCurrentFloor());
+        crash();
+
+        start(100);
+        Assert.assertEquals(4, lift.getCurrentFloor());
+        scheduler.runAll();
+        // вызов "вниз" с 3-го обслужен по пути с 7-го вниз
+        Assert.assertEquals("[7, 3, -1]", opened.toString());
+    }
+
+    @Test
+    public void testServedRequestsAreNotRepeated() throws IOException
+    {
+        start(100);
+        lift.call(5);
+        lift.go(2);
+        scheduler.runAll();
+        Assert.assertEquals("[2, 5]", opened.toString());
+        crash();
+
+        start(100);
+        Assert.assertEquals(5, lift.getCurrentFloor());
+        scheduler.runAll();
+        Assert.assertTrue(opened.isEmpty());
+    }
+
+    @Test
+    public void testWaitingRequestsSurviveRestart() throws IOException
+    {
+        start(100);
+        lift.go(-1);
+        lift.request(3, 7);
+        scheduler.runUntil(FLOORTIME);
+        Assert.assertEquals(0, lift.getCurrentFloor());
+        crash();
+        // еще один перезапуск: запрос переходит из журнала в снимок
+        start(100);
+        crash();
+
+        start(100);
+        scheduler.runAll();
+        // пассажир с 3-го этажа не потерял этаж назначения
+        Assert.assertEquals("[-1, 3, 7]", opened.toString());
+        crash();
+
+        start(100);
+        scheduler.runAll();
+        Assert.assertTrue(opened.isEmpty());
+    }
+
+    @Test
+    public void testBoardedRequestIsNotRepeated() throws IOException
+    {
+        start(100);
+        lift.call(1);
+        Assert.assertEquals("[1]", opened.toString());
+        // пассажир вошел сразу: ждать на этаже некому
+        lift.request(1, 4);
+        scheduler.runUntil(scheduler.now() + OCTIME + FLOORTIME);
+        crash();
+
+        start(100);
+        scheduler.runAll();
+        Assert.assertEquals("[4]", opened.toString());
+    }
+
+    @Test
+    public void testRecoveryAfterManyCompactions() throws IOException
+    {
+        start(4);
+        for (int i = 0; i < 20; i++) {
+            lift.go(i % 2 == 0 ? 8 : -1);
+            scheduler.runAll();
+        }
+        lift.go(6);
+        lift.call(2, Lift.Direction.UP);
+        scheduler.runUntil(scheduler.now() + FLOORTIME);
+        crash();
+
+        // журнал не растет: не больше capacity записей сверх снимка
+        Assert.assertEquals(2 * (8 + 5 * 8), Files.size(folder.getRoot().toPath().resolve(LiftJournal.JOURNAL_FILE)));
+
+        start(4);
+        Assert.assertEquals(0, lift.getCurrentFloor());
+        scheduler.runAll();
+        Assert.assertEquals("[2, 6]", opened.toString());
+    }
+
+    @Test
+    public void testSnapshotWithoutJournalClear() throws IOException
+    {
+        start(100);
+        lift.go(5);
+        scheduler.runUntil(FLOORTIME);
+        crash();
+
+        // сбой между записью снимка и очисткой журнала: журнал предыдущего поколения не применяется
+        Path journalFile = folder.getRoot().toPath().resolve(LiftJournal.JOURNAL_FILE);
+        byte[] oldJournal = Files.readAllBytes(journalFile);
+        start(100);
+        crash();
+        Files.write(journalFile, oldJournal);
+
+        start(100);
+        Assert.assertEquals(2, lift.getCurrentFloor());
+        scheduler.runAll();
+        Assert.assertEquals("[5]", opened.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAnotherBuilding() throws IOException
+    {
+        start(100);
+        crash();
+        new LiftJournal(folder.getRoot().toPath(), new Lift.Config()
+        {
+            @Override
+            public int getFloorCount()
+            {
+                return 20;
+            }
+
+            @Override
+            public int getFloorHeight()
+            {
+                return 1;
+            }
+
+            @Override
+            public int getLiftSpeed()
+            {
+                return 1;
+            }
+
+            @Override
+            public long getOpenCloseTime()
+            {
+                return 1;
+            }
+        }, 100, executor, errors::add);
+    }
+
+    @Test
+    public void testCrashBeforeSnapshotIsSaved() throws IOException
+    {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        executor = tasks::add;
+        start(4);
+        lift.go(8);
+        scheduler.runUntil(5 * FLOORTIME);
+        Assert.assertEquals(6, lift.getCurrentFloor());
+        // сегмент заполнился, снимок еще не записан - лифт не ждет его
+        Assert.assertEquals(1, tasks.size());
+
+        Path snapshotFile = folder.getRoot().toPath().resolve(LiftJournal.SNAPSHOT_FILE);
+        Path journalFile = folder.getRoot().toPath().resolve(LiftJournal.JOURNAL_FILE);
+        byte[] oldSnapshot = Files.readAllBytes(snapshotFile);
+        byte[] journalBytes = Files.readAllBytes(journalFile);
+        tasks.poll().run();
+        crash();
+        // сбой до сохранения снимка: восстанавливаемся по прежнему снимку и обоим сегментам
+        Files.write(snapshotFile, oldSnapshot);
+        Files.write(journalFile, journalBytes);
+
+        executor = Runnable::run;
+        start(4);
+        Assert.assertEquals(6, lift.getCurrentFloor());
+        scheduler.runAll();
+        Assert.assertEquals("[8]", opened.toString());
+        Assert.assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testSnapshotErrorDoesNotStopLift() throws IOException
+    {
+        start(4);
+        // снимок нельзя записать: на месте временного файла каталог
+        Files.createDirectory(folder.getRoot().toPath().resolve(LiftJournal.SNAPSHOT_FILE + ".tmp"));
+        lift.go(8);
+        scheduler.runAll();
+        Assert.assertEquals("[8]", opened.toString());
+        Assert.assertEquals(1, errors.size());
+        Assert.assertTrue(errors.get(0) instanceof IOException);
+        crash();
+
+        // журнал остановился на заполненных сегментах: последняя запись (лифт приехал) потеряна
+        Files.delete(folder.getRoot().toPath().resolve(LiftJournal.SNAPSHOT_FILE + ".tmp"));
+        start(4);
+        Assert.assertEquals(8, journal.getCurrentFloor());
+        scheduler.runAll();
+        Assert.assertEquals("[8]", opened.toString());
+    }
+
+}
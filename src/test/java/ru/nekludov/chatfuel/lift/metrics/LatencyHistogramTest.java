@@ -0,0 +1,100 @@
+package ru.nekludov.chatfuel.lift.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest
+{
+
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void testEmpty()
+    {
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99), 0);
+        Assert.assertEquals(0, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void testSmallValuesAreExact()
+    {
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(10, histogram.getCount());
+        Assert.assertEquals(5.5, histogram.getMean(), 1e-9);
+        Assert.assertEquals(5, histogram.getValueAtPercentile(50));
+        Assert.assertEquals(10, histogram.getValueAtPercentile(100));
+        Assert.assertEquals(1, histogram.getValueAtPercentile(0));
+        Assert.assertEquals(10, histogram.getMax());
+    }
+
+    @Test
+    public void testRelativeError()
+    {
+        for (long value = 1; value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+            int index = histogram.indexOf(value);
+            long high = histogram.highestValueAt(index);
+            Assert.assertTrue(high >= value);
+            Assert.assertTrue((double) (high - value) / value <= 1.0 / 32);
+            Assert.assertEquals(index, histogram.indexOf(high));
+        }
+        Assert.assertEquals(Long.MAX_VALUE, histogram.highestValueAt(histogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        Assert.assertEquals(500_000, histogram.getValueAtPercentile(50), 500_000 / 32);
+        Assert.assertEquals(990_000, histogram.getValueAtPercentile(99), 990_000 / 32);
+        Assert.assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException
+    {
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(40_000, histogram.getCount());
+        Assert.assertEquals(9_999, histogram.getMax());
+    }
+
+    @Test
+    public void testAdd()
+    {
+        LatencyHistogram other = new LatencyHistogram();
+        for (int i = 1; i <= 50; i++) {
+            histogram.record(i);
+            other.record(50 + i);
+        }
+        histogram.add(other);
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(100, histogram.getMax());
+        Assert.assertEquals(50.5, histogram.getMean(), 1e-9);
+        Assert.assertEquals(50, histogram.getValueAtPercentile(50), 1);
+    }
+
+    @Test
+    public void testReset()
+    {
+        histogram.record(100);
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMax());
+    }
+
+}
@@ -0,0 +1,111 @@
+package ru.nekludov.chatfuel.lift.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+import ru.nekludov.chatfuel.lift.sim.VirtualTimeScheduler;
+
+import javax.management.ObjectName;
+
+public class LiftMetricsTest
+{
+
+    static final int FLOORTIME = 2;
+    static final int OCTIME = 5;
+
+    Lift.Config cfg = new Lift.Config()
+    {
+        @Override
+        public int getFloorCount()
+        {
+            return 10;
+        }
+
+        @Override
+        public int getFloorHeight()
+        {
+            return FLOORTIME * 10;
+        }
+
+        @Override
+        public int getLiftSpeed()
+        {
+            return 10;
+        }
+
+        @Override
+        public long getOpenCloseTime()
+        {
+            return OCTIME;
+        }
+    };
+
+    VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+
+    LiftMetrics metrics = new LiftMetrics(cfg, scheduler::now);
+
+    Lift lift = new Lift(cfg, MoveStrategies.LOOK, scheduler, metrics);
+
+    @Test
+    public void testWaitAndRide()
+    {
+        lift.call(5);
+        scheduler.runUntil(4 * FLOORTIME);
+        lift.go(8);
+        // повторное нажатие не сдвигает начало поездки
+        scheduler.schedule(OCTIME - 1, () -> lift.go(8));
+        scheduler.runAll();
+
+        Assert.assertEquals(1, metrics.getWaitCount());
+        Assert.assertEquals(4 * FLOORTIME, metrics.getWaitMax());
+        Assert.assertEquals(1, metrics.getRideCount());
+        Assert.assertEquals(3 * FLOORTIME + OCTIME, metrics.getRideMax());
+        Assert.assertEquals(2, metrics.getDoorCycles());
+        Assert.assertEquals(7, metrics.getFloorsTraveled());
+    }
+
+    @Test
+    public void testDirectionalCallsAreTimedSeparately()
+    {
+        lift.go(9);
+        lift.call(5, Lift.Direction.DOWN);
+        lift.call(5, Lift.Direction.UP);
+        scheduler.runUntil(4 * FLOORTIME);
+
+        // по пути вверх обслужен только попутный вызов
+        Assert.assertEquals(1, metrics.getWaitCount());
+        Assert.assertEquals(4 * FLOORTIME, metrics.getWaitMax());
+
+        scheduler.runAll();
+        Assert.assertEquals(2, metrics.getWaitCount());
+        Assert.assertEquals(12 * FLOORTIME + 2 * OCTIME, metrics.getWaitMax());
+    }
+
+    @Test
+    public void testReset()
+    {
+        lift.call(3);
+        scheduler.runAll();
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getWaitCount());
+        Assert.assertEquals(0, metrics.getDoorCycles());
+    }
+
+    @Test
+    public void testRegisterAfterUnregister()
+    {
+        LiftMetrics other = new LiftMetrics(cfg, scheduler::now);
+        ObjectName name = metrics.registerMBean("test-lift");
+        try {
+            other.registerMBean("test-lift");
+            Assert.fail("Duplicate MBean name");
+        }
+        catch (IllegalStateException e) {
+            // имя занято
+        }
+        metrics.unregisterMBean(name);
+        other.unregisterMBean(other.registerMBean("test-lift"));
+    }
+
+}
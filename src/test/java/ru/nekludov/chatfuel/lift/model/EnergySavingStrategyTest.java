@@ -0,0 +1,126 @@
+package ru.nekludov.chatfuel.lift.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ru.nekludov.chatfuel.lift.sim.VirtualTimeScheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class EnergySavingStrategyTest
+{
+
+    static final int FLOORTIME = 3;
+    static final int OCTIME = 2;
+    static final long HOLD = 20;
+
+    Lift.Config cfg = new Lift.Config()
+    {
+        @Override
+        public int getFloorCount()
+        {
+            return 10;
+        }
+
+        @Override
+        public int getFloorHeight()
+        {
+            return FLOORTIME;
+        }
+
+        @Override
+        public int getLiftSpeed()
+        {
+            return 1;
+        }
+
+        @Override
+        public long getOpenCloseTime()
+        {
+            return OCTIME;
+        }
+    };
+
+    VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+
+    List<String> opened = new ArrayList<>();
+
+    Lift[] lifts = new Lift[1];
+
+    Lift lift = lifts[0] = new Lift(cfg, new EnergySavingStrategy(MoveStrategies.LOOK, HOLD, 3), scheduler,
+            new Lift.Listener()
+            {
+                @Override
+                public void onDoorOpened()
+                {
+                    opened.add(lifts[0].getCurrentFloor() + "@" + scheduler.now());
+                }
+
+                @Override
+                public void onDoorClosed()
+                {
+                }
+
+                @Override
+                public void onEnterFloor(int floor)
+                {
+                }
+            });
+
+    @Test
+    public void testIdleLiftCollectsRequests()
+    {
+        lift.call(6);
+        scheduler.runUntil(10);
+        Assert.assertEquals(1, lift.getCurrentFloor());
+        lift.call(8);
+        lift.call(4);
+        scheduler.runAll();
+
+        // третий этаж с вызовом прерывает ожидание; одна поездка вверх вместо поездки на 6-й и возвращения
+        Assert.assertEquals(Arrays.asList("4@19", "6@27", "8@35"), opened);
+        Assert.assertEquals(3, lift.getStarts());
+        Assert.assertEquals(0, lift.getReversals());
+    }
+
+    @Test
+    public void testEnoughRequestsEndHolding()
+    {
+        lift.call(4);
+        scheduler.runUntil(5);
+        // третий запрос прерывает ожидание
+        lift.call(6);
+        lift.go(8);
+        scheduler.runAll();
+        Assert.assertEquals(Arrays.asList("4@14", "6@22", "8@30"), opened);
+    }
+
+    @Test
+    public void testCallOnLiftFloorIsServedWhileHolding()
+    {
+        lift.call(6);
+        scheduler.runUntil(5);
+        lift.call(1);
+        scheduler.runAll();
+        // ожидание не продлевается
+        Assert.assertEquals(Arrays.asList("1@5", "6@35"), opened);
+    }
+
+    @Test
+    public void testEnergyCounters()
+    {
+        lift = lifts[0] = new Lift(cfg, MoveStrategies.SIMPLE_NEAREST, scheduler, new CompositeListener());
+        lift.go(5);
+        scheduler.runAll();
+        lift.go(2);
+        scheduler.runAll();
+
+        Assert.assertEquals(2, lift.getStarts());
+        Assert.assertEquals(1, lift.getReversals());
+        Assert.assertEquals(7, lift.getFloorsTraveled());
+        Assert.assertEquals(2, lift.getDoorCycles());
+        Assert.assertEquals(2 * 5 + 7 + 2 * 0.5, EnergyModel.DEFAULT.energy(lift), 1e-9);
+    }
+
+}
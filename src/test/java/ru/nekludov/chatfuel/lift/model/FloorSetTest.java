@@ -0,0 +1,87 @@
+package ru.nekludov.chatfuel.lift.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+public class FloorSetTest
+{
+
+    @Test
+    public void testSetAndClear()
+    {
+        FloorSet set = new FloorSet(-2, 10);
+        Assert.assertTrue(set.isEmpty());
+
+        set.set(-2);
+        set.set(0);
+        set.set(10);
+        Assert.assertTrue(set.get(-2));
+        Assert.assertTrue(set.get(0));
+        Assert.assertFalse(set.get(1));
+        Assert.assertFalse(set.get(11));
+        Assert.assertEquals(3, set.cardinality());
+        Assert.assertEquals("[-2, 0, 10]", set.toString());
+
+        set.clear(0);
+        Assert.assertFalse(set.get(0));
+        set.clear();
+        Assert.assertTrue(set.isEmpty());
+        Assert.assertEquals(Lift.NO_FLOOR, set.nextSetFloor(-2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetOutOfRange()
+    {
+        new FloorSet(1, 10).set(11);
+    }
+
+    @Test
+    public void testNearest()
+    {
+        FloorSet set = new FloorSet(-5, 300);
+        set.set(-5);
+        set.set(70);
+        set.set(250);
+
+        Assert.assertEquals(-5, set.nextSetFloor(-100));
+        Assert.assertEquals(70, set.nextSetFloor(-4));
+        Assert.assertEquals(70, set.nextSetFloor(70));
+        Assert.assertEquals(250, set.nextSetFloor(71));
+        Assert.assertEquals(Lift.NO_FLOOR, set.nextSetFloor(251));
+
+        Assert.assertEquals(250, set.previousSetFloor(1000));
+        Assert.assertEquals(70, set.previousSetFloor(249));
+        Assert.assertEquals(-5, set.previousSetFloor(69));
+        Assert.assertEquals(Lift.NO_FLOOR, set.previousSetFloor(-6));
+    }
+
+    @Test
+    public void testRandomAgainstTreeSet()
+    {
+        Random random = new Random(7);
+        // больше 4096 этажей - задействовано несколько слов верхнего уровня
+        FloorSet set = new FloorSet(-100, 9000);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 20000; i++) {
+            int floor = -100 + random.nextInt(9101);
+            if (random.nextInt(3) == 0) {
+                set.clear(floor);
+                expected.remove(floor);
+            }
+            else if (random.nextInt(50) == 0) {
+                set.set(floor);
+                expected.add(floor);
+            }
+            int probe = -100 + random.nextInt(9101);
+            Integer up = expected.ceiling(probe);
+            Integer down = expected.floor(probe);
+            Assert.assertEquals(up == null ? Lift.NO_FLOOR : up, set.nextSetFloor(probe));
+            Assert.assertEquals(down == null ? Lift.NO_FLOOR : down, set.previousSetFloor(probe));
+        }
+        Assert.assertEquals(expected.size(), set.cardinality());
+    }
+
+}
@@ -0,0 +1,127 @@
+package ru.nekludov.chatfuel.lift.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KinematicsTest
+{
+
+    /**
+     * Этаж 300 см, скорость 150 см/с, времена в миллисекундах.
+     */
+    static Lift.Config config(int height, int acceleration, int jerk)
+    {
+        return new Lift.Config()
+        {
+            @Override
+            public int getFloorCount()
+            {
+                return 20;
+            }
+
+            @Override
+            public int getFloorHeight()
+            {
+                return height;
+            }
+
+            @Override
+            public int getLiftSpeed()
+            {
+                return 150;
+            }
+
+            @Override
+            public long getOpenCloseTime()
+            {
+                return 2;
+            }
+
+            @Override
+            public int getAcceleration()
+            {
+                return acceleration;
+            }
+
+            @Override
+            public int getJerk()
+            {
+                return jerk;
+            }
+
+            @Override
+            public int getTimeResolution()
+            {
+                return 1000;
+            }
+        };
+    }
+
+    @Test
+    public void testConstantSpeed()
+    {
+        Kinematics kinematics = new Kinematics(config(300, 0, 0));
+        Assert.assertEquals(0, kinematics.travelTime(0));
+        Assert.assertEquals(2000, kinematics.travelTime(1));
+        Assert.assertEquals(20000, kinematics.travelTime(10));
+        for (int k = 0; k <= 10; k++) {
+            Assert.assertEquals(k * 2000, kinematics.passTime(k, 10));
+        }
+    }
+
+    @Test
+    public void testAcceleration()
+    {
+        Kinematics kinematics = new Kinematics(config(300, 100, 0));
+        // разгон до 150 см/с за 1,5 с на 112,5 см, столько же торможение
+        Assert.assertEquals(3500, kinematics.travelTime(1));
+        Assert.assertEquals(21500, kinematics.travelTime(10));
+        Assert.assertEquals(2750, kinematics.passTime(1, 10));
+        Assert.assertEquals(21500 - 2750, kinematics.passTime(9, 10));
+
+        // до полной скорости не разогнаться: 50 см разгона и 50 см торможения по 1 с
+        Assert.assertEquals(2000, new Kinematics(config(100, 100, 0)).travelTime(1));
+    }
+
+    @Test
+    public void testJerk()
+    {
+        Kinematics kinematics = new Kinematics(config(300, 100, 100));
+        // ускорение нарастает 1 с, держится 0,5 с и спадает 1 с: разгон 2,5 с на 187,5 см
+        Assert.assertEquals(22500, kinematics.travelTime(10));
+        Assert.assertTrue(kinematics.travelTime(1) > new Kinematics(config(300, 100, 0)).travelTime(1));
+
+        long previous = 0;
+        for (int k = 1; k <= 10; k++) {
+            long time = kinematics.passTime(k, 10);
+            Assert.assertTrue(time > previous);
+            // профиль симметричный
+            Assert.assertEquals(kinematics.travelTime(10) - time, kinematics.passTime(10 - k, 10), 1);
+            previous = time;
+        }
+        Assert.assertEquals(kinematics.travelTime(10), previous);
+    }
+
+    @Test
+    public void testLongRunIsFaster()
+    {
+        Kinematics kinematics = new Kinematics(config(300, 100, 100));
+        for (int n = 2; n < 20; n++) {
+            Assert.assertTrue(kinematics.travelTime(n) < kinematics.travelTime(n - 1) + kinematics.travelTime(1));
+        }
+    }
+
+    @Test
+    public void testPassTimes()
+    {
+        Kinematics kinematics = new Kinematics(config(300, 100, 100));
+        for (int n = 0; n < 10; n++) {
+            long[] times = kinematics.passTimes(n);
+            Assert.assertEquals(n + 1, times.length);
+            for (int floor = 0; floor <= n; floor++) {
+                Assert.assertEquals(kinematics.passTime(floor, n), times[floor]);
+            }
+        }
+    }
+
+}
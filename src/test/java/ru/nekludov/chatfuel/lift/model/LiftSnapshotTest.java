@@ -0,0 +1,173 @@
+package ru.nekludov.chatfuel.lift.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ru.nekludov.chatfuel.lift.sim.VirtualTimeScheduler;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LiftSnapshotTest
+{
+
+    static final int FLOORTIME = 2;
+    static final int OCTIME = 5;
+
+    Lift.Config cfg = new Lift.Config()
+    {
+        @Override
+        public int getFloorCount()
+        {
+            return 10;
+        }
+
+        @Override
+        public int getFloorHeight()
+        {
+            return FLOORTIME * 10;
+        }
+
+        @Override
+        public int getLiftSpeed()
+        {
+            return 10;
+        }
+
+        @Override
+        public long getOpenCloseTime()
+        {
+            return OCTIME;
+        }
+    };
+
+    Lift.Listener silent = new Lift.Listener()
+    {
+        @Override
+        public void onDoorOpened()
+        {
+        }
+
+        @Override
+        public void onDoorClosed()
+        {
+        }
+
+        @Override
+        public void onEnterFloor(int floor)
+        {
+        }
+    };
+
+    VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+
+    Lift lift = new Lift(cfg, MoveStrategies.SIMPLE_NEAREST, scheduler, silent);
+
+    {
+        lift.enableSnapshots();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSnapshotsAreDisabledByDefault()
+    {
+        new Lift(cfg, MoveStrategies.SIMPLE_NEAREST, scheduler, silent).getSnapshot();
+    }
+
+    @Test
+    public void testInitialSnapshot()
+    {
+        LiftSnapshot snapshot = lift.getSnapshot();
+        Assert.assertEquals(0, snapshot.getVersion());
+        Assert.assertEquals(1, snapshot.getFloor());
+        Assert.assertFalse(snapshot.isMoving());
+        Assert.assertFalse(snapshot.isDoorOpen());
+        Assert.assertEquals(Lift.NO_FLOOR, snapshot.getTargetFloor());
+        Assert.assertFalse(snapshot.hasRequests());
+    }
+
+    @Test
+    public void testSnapshotFollowsTransitions()
+    {
+        lift.go(3);
+        lift.call(5, Lift.Direction.DOWN);
+        LiftSnapshot moving = lift.getSnapshot();
+        Assert.assertTrue(moving.isMoving());
+        Assert.assertEquals(Lift.Direction.UP, moving.getDirection());
+        Assert.assertEquals(3, moving.getTargetFloor());
+        Assert.assertTrue(moving.isGoPressed(3));
+        Assert.assertTrue(moving.isCalled(5, Lift.Direction.DOWN));
+        Assert.assertTrue(moving.isCalled(5, Lift.Direction.NONE));
+        Assert.assertFalse(moving.isCalled(5, Lift.Direction.UP));
+
+        scheduler.runUntil(2 * FLOORTIME);
+        LiftSnapshot open = lift.getSnapshot();
+        Assert.assertTrue(open.getVersion() > moving.getVersion());
+        Assert.assertEquals(3, open.getFloor());
+        Assert.assertTrue(open.isDoorOpen());
+        Assert.assertFalse(open.isGoPressed(3));
+
+        lift.board(2);
+        Assert.assertEquals(2, lift.getSnapshot().getLoad());
+        Assert.assertEquals(open.getVersion() + 1, lift.getSnapshot().getVersion());
+
+        scheduler.runAll();
+        LiftSnapshot idle = lift.getSnapshot();
+        Assert.assertEquals(5, idle.getFloor());
+        Assert.assertFalse(idle.isMoving());
+        Assert.assertFalse(idle.isDoorOpen());
+        Assert.assertFalse(idle.hasRequests());
+        // старые снимки не меняются
+        Assert.assertEquals(3, open.getFloor());
+        Assert.assertTrue(moving.isGoPressed(3));
+
+        // повторное нажатие уже нажатой кнопки состояние не меняет - новой версии нет
+        lift.call(7);
+        long version = lift.getSnapshot().getVersion();
+        lift.call(7);
+        Assert.assertEquals(version, lift.getSnapshot().getVersion());
+    }
+
+    @Test
+    public void testUnchangedButtonsAreShared()
+    {
+        lift.go(5);
+        LiftSnapshot before = lift.getSnapshot();
+        scheduler.runUntil(FLOORTIME);
+        LiftSnapshot after = lift.getSnapshot();
+
+        Assert.assertEquals(2, after.getFloor());
+        Assert.assertSame(before.goes, after.goes);
+        Assert.assertSame(before.upCalls, after.upCalls);
+    }
+
+    @Test
+    public void testReaderThreadSeesConsistentSnapshots() throws Exception
+    {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            long version = -1;
+            while (running.get()) {
+                LiftSnapshot snapshot = lift.getSnapshot();
+                if (snapshot.getVersion() < version || snapshot.isMoving() && snapshot.isDoorOpen()) {
+                    failure.set(snapshot.toString());
+                    return;
+                }
+                version = snapshot.getVersion();
+            }
+        });
+        reader.start();
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                lift.go(1 + i % cfg.getFloorCount());
+                scheduler.runAll();
+            }
+        }
+        finally {
+            running.set(false);
+            reader.join();
+        }
+        Assert.assertNull(failure.get());
+        Assert.assertTrue(lift.getSnapshot().getVersion() > 20_000);
+    }
+
+}
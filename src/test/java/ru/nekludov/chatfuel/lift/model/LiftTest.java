@@ -4,9 +4,12 @@ import org.easymock.EasyMock;
 import org.easymock.IMocksControl;
 import org.junit.Assert;
 import org.junit.Test;
+import ru.nekludov.chatfuel.lift.sim.VirtualTimeScheduler;
 
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Набор тестов может быть не полным (например, возможно, следует полнее протестировать взаимодействие лифта с MoveStrategy).
@@ -50,48 +53,7 @@ public class LiftTest
         }
     };
 
-    long currentTime = STARTTIME;
-
-    TestScheduler scheduler = new TestScheduler();
-    class TestScheduler implements Lift.Scheduler {
-
-        private final SortedSet<Scheduled> scheduled = new TreeSet<>();
-
-        @Override
-        public void schedule(long delay, Runnable command)
-        {
-            Scheduled s = new Scheduled(currentTime + delay, command);
-            scheduled.add(s);
-        }
-
-        void executeScheduled()
-        {
-            while (!scheduled.isEmpty()) {
-                Scheduled next = scheduled.first();
-                scheduled.remove(next);
-                currentTime = Math.max(currentTime, next.time);
-                next.command.run();
-            }
-        }
-
-        class Scheduled implements Comparable<Scheduled>
-        {
-            long time;
-            Runnable command;
-
-            public Scheduled(long time, Runnable command)
-            {
-                this.time = time;
-                this.command = command;
-            }
-
-            @Override
-            public int compareTo(Scheduled o)
-            {
-                return (int) (time - o.time); // предполагаем, что у нас в тестах значения времени "за int" не выйдут
-            }
-        }
-    };
+    VirtualTimeScheduler scheduler = new VirtualTimeScheduler(STARTTIME);
 
     Lift.Listener listener = new Lift.Listener()
     {
@@ -99,21 +61,21 @@ public class LiftTest
         public void onDoorOpened()
         {
             System.out.println("*** OPEN");
-            timedListener.onDoorOpened(currentTime);
+            timedListener.onDoorOpened(scheduler.now());
         }
 
         @Override
         public void onDoorClosed()
         {
             System.out.println("*** CLOSE");
-            timedListener.onDoorClosed(currentTime);
+            timedListener.onDoorClosed(scheduler.now());
         }
 
         @Override
         public void onEnterFloor(int floor)
         {
             System.out.println("*** FLOOR " + floor);
-            timedListener.onEnterFloor(currentTime, floor);
+            timedListener.onEnterFloor(scheduler.now(), floor);
         }
     };
 
@@ -188,6 +150,28 @@ public class LiftTest
         });
     }
 
+    @Test
+    public void testPress_Batch()
+    {
+        ButtonPresses presses = new ButtonPresses(1, cfg.getFloorCount());
+        presses.go(5);
+        presses.go(5);
+        presses.call(3, Lift.Direction.NONE);
+        presses.call(6, Lift.Direction.DOWN);
+
+        checkMove(2, 3);
+        checkMove(4, 5);
+        checkMove(6);
+        test(() -> lift.press(presses));
+        Assert.assertTrue(presses.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPress_WrongFloorRange()
+    {
+        lift.press(new ButtonPresses(0, cfg.getFloorCount()));
+    }
+
     @Test
     public void testGo_SameFloor_OpenCloseDoor()
     {
@@ -309,11 +293,498 @@ public class LiftTest
         });
     }
 
+    @Test
+    public void testLook_KeepsDirection()
+    {
+        lift = new Lift(cfg, MoveStrategies.LOOK, scheduler, listener);
+
+        // вызовы приходят, пока лифт стоит с открытыми дверями на 5-м этаже:
+        // 4-й ближе, но лифт приехал снизу и сначала обслуживает 7-й
+        checkMove(2, 3, 4, 5);
+        checkMove(6, 7);
+        checkMove(6, 5, 4);
+        test(() -> {
+            lift.go(5);
+            scheduler.schedule(4 * FLOORTIME + 1, () -> {
+                lift.call(4);
+                lift.call(7);
+            });
+        });
+    }
+
+    @Test
+    public void testDirectionalCall_OppositeIsSkippedOnTheWay()
+    {
+        lift = new Lift(cfg, MoveStrategies.LOOK, scheduler, listener);
+
+        checkMove(2, 3, 4, 5, 6);
+        checkMove(5, 4, 3);
+        test(() -> {
+            lift.go(6);
+            lift.call(3, Lift.Direction.DOWN);
+        });
+    }
+
+    @Test
+    public void testDirectionalCall_SameDirectionStops()
+    {
+        lift = new Lift(cfg, MoveStrategies.LOOK, scheduler, listener);
+
+        checkMove(2, 3);
+        checkMove(4, 5, 6);
+        test(() -> {
+            lift.go(6);
+            lift.call(3, Lift.Direction.UP);
+        });
+    }
+
+    @Test
+    public void testDirectionalCall_BothDirectionsOnFloor()
+    {
+        lift = new Lift(cfg, MoveStrategies.LOOK, scheduler, listener);
+
+        // на 4-м ждут и вверх, и вниз: по пути вверх забираем только едущих вверх
+        checkMove(2, 3, 4);
+        checkMove(5, 6);
+        checkMove(5, 4);
+        test(() -> {
+            lift.go(6);
+            lift.call(4, Lift.Direction.UP);
+            lift.call(4, Lift.Direction.DOWN);
+        });
+    }
+
+    @Test
+    public void testDirectionalCall_NearestServesBothDirectionsInOneStop()
+    {
+        // SIMPLE_NEAREST все равно вернулась бы на 5-й за вызовом вниз - забираем его в ту же остановку
+        checkMove(2, 3, 4, 5);
+        checkMove(6, 7, 8);
+        test(() -> {
+            lift.go(5);
+            lift.call(5, Lift.Direction.DOWN);
+            lift.go(8);
+        });
+    }
+
+    @Test
+    public void testDirectionalCall_InvalidDirection()
+    {
+        checkIllegalFloor(() -> lift.call(cfg.getFloorCount(), Lift.Direction.UP));
+        checkIllegalFloor(() -> lift.call(1, Lift.Direction.DOWN));
+    }
+
+    @Test
+    public void testRequest_DestinationPressedOnBoarding()
+    {
+        checkMove(2, 3);
+        checkMove(4, 5, 6, 7);
+        test(() -> lift.request(3, 7));
+    }
+
+    @Test
+    public void testRequest_DoorOpenBoardsAtOnce()
+    {
+        checkDoor();
+        checkMove(2, 3, 4);
+        test(() -> {
+            lift.call(1);
+            lift.request(1, 4);
+        });
+    }
+
+    @Test
+    public void testRequest_OppositeDirectionWaits()
+    {
+        lift = new Lift(cfg, MoveStrategies.LOOK, scheduler, listener);
+        // едущий вверх лифт не забирает на 4-м пассажира вниз - на 1-й он поедет после разворота
+        checkMove(2, 3, 4, 5);
+        checkMove(6);
+        checkMove(7, 8);
+        checkMove(7, 6, 5, 4);
+        checkMove(3, 2, 1);
+        test(() -> {
+            lift.go(6);
+            scheduler.runUntil(2 * FLOORTIME);
+            lift.request(4, 1);
+            lift.request(5, 8);
+        });
+    }
+
+    @Test
+    public void testFull_PassesHallCalls()
+    {
+        List<String> events = new ArrayList<>();
+        lift = loadedLift(2, events, 6);
+
+        lift.call(1);
+        lift.board(2);
+        lift.go(6);
+        lift.call(4, Lift.Direction.UP);
+        scheduler.runAll();
+        // полный лифт проезжает 4-й, а когда на 6-м выходят пассажиры - возвращается за вызовом
+        Assert.assertEquals(Arrays.asList("open 1@0", "board 2", "open 6@30", "alight 2", "open 4@51"), events);
+        Assert.assertEquals(0, lift.getLoad());
+    }
+
+    @Test
+    public void testFull_StopsOnlyForGo()
+    {
+        List<String> events = new ArrayList<>();
+        lift = loadedLift(2, events, 5);
+
+        lift.call(1);
+        lift.board(2);
+        Assert.assertTrue(lift.isFull());
+        lift.go(5);
+        lift.call(3);
+        lift.call(5, Lift.Direction.UP);
+        scheduler.runAll();
+        // на 5-м остановка по кнопке в лифте: заодно обслуживается и вызов оттуда
+        Assert.assertEquals(Arrays.asList("open 1@0", "board 2", "open 5@27", "alight 2", "open 3@48"), events);
+    }
+
+    @Test
+    public void testFull_RequestWaitsForRoom()
+    {
+        List<String> events = new ArrayList<>();
+        lift = loadedLift(2, events, 7);
+
+        lift.call(1);
+        lift.board(2);
+        lift.go(5);
+        lift.go(7);
+        lift.request(5, 8);
+        scheduler.runAll();
+        // на 5-м остановка по кнопке в лифте, но никто не вышел: пассажир с 5-го ждет и не теряет этаж назначения
+        Assert.assertEquals(Arrays.asList("open 1@0", "board 2", "open 5@27", "open 7@48", "alight 2",
+                "open 5@69", "open 8@93"), events);
+    }
+
+    @Test
+    public void testFull_RequestBoardsWhenPassengersAlight()
+    {
+        List<String> events = new ArrayList<>();
+        lift = loadedLift(2, events, 5);
+
+        lift.call(1);
+        lift.board(2);
+        lift.go(5);
+        lift.request(5, 8);
+        scheduler.runAll();
+        // на 5-м пассажиры вышли - ожидающий вошел, и лифт везет его на 8-й
+        Assert.assertEquals(Arrays.asList("open 1@0", "board 2", "open 5@27", "alight 2", "open 8@51"), events);
+    }
+
+    @Test
+    public void testBoardAndAlight_WrongState()
+    {
+        lift = loadedLift(2, new ArrayList<>(), Lift.NO_FLOOR);
+        try {
+            lift.board(1);
+            Assert.fail("Boarded with closed door");
+        }
+        catch (IllegalStateException e) {
+            // двери закрыты
+        }
+        lift.call(1);
+        checkIllegalFloor(() -> lift.board(3));
+        checkIllegalFloor(() -> lift.alight(1));
+        lift.board(2);
+        lift.alight(1);
+        Assert.assertEquals(1, lift.getLoad());
+        Assert.assertFalse(lift.isFull());
+    }
+
+    /**
+     * Лифт LOOK заданной вместимости: события дверей и загрузки пишутся в events,
+     * на этаже alightFloor выходят все пассажиры.
+     */
+    private Lift loadedLift(int capacity, List<String> events, int alightFloor)
+    {
+        Lift[] lifts = new Lift[1];
+        lifts[0] = new Lift(new Lift.Config()
+        {
+            @Override
+            public int getFloorCount()
+            {
+                return 10;
+            }
+
+            @Override
+            public int getFloorHeight()
+            {
+                return HEIGHT;
+            }
+
+            @Override
+            public int getLiftSpeed()
+            {
+                return SPEED;
+            }
+
+            @Override
+            public long getOpenCloseTime()
+            {
+                return OCTIME;
+            }
+
+            @Override
+            public int getCapacity()
+            {
+                return capacity;
+            }
+        }, MoveStrategies.LOOK, scheduler, new Lift.Listener()
+        {
+            @Override
+            public void onDoorOpened()
+            {
+                events.add("open " + lifts[0].getCurrentFloor() + "@" + scheduler.now());
+                if (lifts[0].getCurrentFloor() == alightFloor && lifts[0].getLoad() > 0) {
+                    lifts[0].alight(lifts[0].getLoad());
+                }
+            }
+
+            @Override
+            public void onDoorClosed()
+            {
+            }
+
+            @Override
+            public void onEnterFloor(int floor)
+            {
+            }
+
+            @Override
+            public void onBoard(int passengers)
+            {
+                events.add("board " + passengers);
+            }
+
+            @Override
+            public void onAlight(int passengers)
+            {
+                events.add("alight " + passengers);
+            }
+        });
+        return lifts[0];
+    }
+
+    @Test
+    public void testBasementsAndHighRise()
+    {
+        lift = new Lift(new Lift.Config()
+        {
+            @Override
+            public int getFloorCount()
+            {
+                return 120;
+            }
+
+            @Override
+            public int getLowestFloor()
+            {
+                return -2;
+            }
+
+            @Override
+            public int getFloorHeight()
+            {
+                return HEIGHT;
+            }
+
+            @Override
+            public int getLiftSpeed()
+            {
+                return SPEED;
+            }
+
+            @Override
+            public long getOpenCloseTime()
+            {
+                return OCTIME;
+            }
+        }, MoveStrategies.SIMPLE_NEAREST, scheduler, listener);
+
+        checkMove(0, -1, -2);
+        test(() -> lift.call(-2));
+
+        checkIllegalFloor(() -> lift.go(-3));
+        checkIllegalFloor(() -> lift.go(118));
+
+        checkMove(-1, 0, 1, 2);
+        test(() -> lift.go(2));
+
+        for (int f = 3; f <= 117; f++) {
+            checkEnterFloor(f);
+        }
+        checkDoor();
+        test(() -> lift.go(117));
+    }
+
+    @Test
+    public void testAcceleration_RunIsScheduledFromProfile()
+    {
+        List<String> events = new ArrayList<>();
+        lift = new Lift(KinematicsTest.config(300, 100, 100), MoveStrategies.SIMPLE_NEAREST, scheduler,
+                new Lift.Listener()
+                {
+                    @Override
+                    public void onDoorOpened()
+                    {
+                        events.add("open@" + scheduler.now());
+                    }
+
+                    @Override
+                    public void onDoorClosed()
+                    {
+                        events.add("close@" + scheduler.now());
+                    }
+
+                    @Override
+                    public void onEnterFloor(int floor)
+                    {
+                        events.add(floor + "@" + scheduler.now());
+                    }
+                });
+        Kinematics kinematics = lift.getKinematics();
+
+        lift.go(6);
+        scheduler.runAll();
+
+        List<String> expected = new ArrayList<>();
+        for (int k = 1; k <= 5; k++) {
+            expected.add((1 + k) + "@" + kinematics.passTime(k, 5));
+        }
+        long arrival = kinematics.travelTime(5);
+        expected.add("open@" + arrival);
+        expected.add("close@" + (arrival + 2000));
+        Assert.assertEquals(expected, events);
+        // одна поездка на 5 этажей быстрее пяти поездок по этажу
+        Assert.assertTrue(arrival < 5 * kinematics.travelTime(1));
+    }
+
+    @Test
+    public void testExpress_SingleArrivalEvent()
+    {
+        List<String> events = new ArrayList<>();
+        lift = expressLift(events);
+
+        lift.go(20);
+        // одно событие прибытия вместо события на каждый этаж
+        Assert.assertEquals(1, scheduler.size());
+        scheduler.runAll();
+
+        List<String> expected = new ArrayList<>();
+        for (int f = 2; f <= 20; f++) {
+            expected.add(f + "@" + 19 * FLOORTIME);
+        }
+        expected.add("open@" + 19 * FLOORTIME);
+        expected.add("close@" + (19 * FLOORTIME + OCTIME));
+        Assert.assertEquals(expected, events);
+    }
+
+    @Test
+    public void testExpress_RequestInsideSegmentShortensRun()
+    {
+        List<String> events = new ArrayList<>();
+        lift = expressLift(events);
+
+        lift.go(20);
+        scheduler.runUntil(4 * FLOORTIME + 1);
+        lift.call(10, Lift.Direction.UP);
+        // проеханные этажи сообщаются при сокращении поездки
+        Assert.assertEquals("[2@13, 3@13, 4@13, 5@13]", events.toString());
+        events.clear();
+        scheduler.runUntil(9 * FLOORTIME + OCTIME);
+
+        Assert.assertEquals(Arrays.asList("6@27", "7@27", "8@27", "9@27", "10@27", "open@27", "close@42"), events);
+        events.clear();
+        scheduler.runAll();
+        Assert.assertEquals("close@" + (19 * FLOORTIME + 2 * OCTIME), events.get(events.size() - 1));
+    }
+
+    @Test
+    public void testExpress_RequestOutsideSegmentWaits()
+    {
+        List<String> events = new ArrayList<>();
+        lift = expressLift(events);
+
+        lift.go(10);
+        scheduler.runUntil(4 * FLOORTIME + 1);
+        // этаж уже проехали, встречный вызов и этаж дальше остановки не меняют поездку
+        lift.go(3);
+        lift.call(6, Lift.Direction.DOWN);
+        lift.go(15);
+        Assert.assertTrue(events.isEmpty());
+        scheduler.runUntil(9 * FLOORTIME);
+        Assert.assertEquals("open@27", events.get(events.size() - 1));
+
+        scheduler.runAll();
+        Assert.assertEquals(Arrays.asList("open@27", "open@57", "open@99", "open@123"),
+                events.stream().filter(e -> e.startsWith("open")).collect(Collectors.toList()));
+    }
+
+    private Lift expressLift(List<String> events)
+    {
+        return new Lift(new Lift.Config()
+        {
+            @Override
+            public int getFloorCount()
+            {
+                return 30;
+            }
+
+            @Override
+            public int getFloorHeight()
+            {
+                return HEIGHT;
+            }
+
+            @Override
+            public int getLiftSpeed()
+            {
+                return SPEED;
+            }
+
+            @Override
+            public long getOpenCloseTime()
+            {
+                return OCTIME;
+            }
+
+            @Override
+            public boolean isExpress()
+            {
+                return true;
+            }
+        }, MoveStrategies.LOOK, scheduler, new Lift.Listener()
+        {
+            @Override
+            public void onDoorOpened()
+            {
+                events.add("open@" + scheduler.now());
+            }
+
+            @Override
+            public void onDoorClosed()
+            {
+                events.add("close@" + scheduler.now());
+            }
+
+            @Override
+            public void onEnterFloor(int floor)
+            {
+                events.add(floor + "@" + scheduler.now());
+            }
+        });
+    }
+
     private void test(Runnable action)
     {
         mocks.replay();
         action.run();
-        scheduler.executeScheduled();
+        scheduler.runAll();
         mocks.verify();
         mocks.reset();
     }
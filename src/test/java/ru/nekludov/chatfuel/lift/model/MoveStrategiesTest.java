@@ -3,43 +3,134 @@ package ru.nekludov.chatfuel.lift.model;
 import org.junit.Assert;
 import org.junit.Test;
 
-import java.util.BitSet;
-
 public class MoveStrategiesTest
 {
 
     Lift.MoveStrategy moveStrategy;
 
-    BitSet callbs = new BitSet(10);
-    BitSet gobs = new BitSet(10);
+    FloorSet callbs = new FloorSet(1, 10);
+    FloorSet gobs = new FloorSet(1, 10);
 
     @Test
     public void testSimpleNearest()
     {
         moveStrategy = MoveStrategies.SIMPLE_NEAREST;
-        check(5, null, null);
-        check(5, 5, null);
+        check(5, Lift.NO_FLOOR, Lift.NO_FLOOR);
+        check(5, 5, Lift.NO_FLOOR);
         check(5, 6, 6);
 
         callbs.set(6);
-        check(5, null, 6);
+        check(5, Lift.NO_FLOOR, 6);
         callbs.set(5);
-        check(5, null, 5);
+        check(5, Lift.NO_FLOOR, 5);
 
         gobs.set(4);
         callbs.clear();
         callbs.set(6);
-        check(5, null, 6);
+        check(5, Lift.NO_FLOOR, 6);
 
         callbs.clear();
         callbs.set(7);
-        check(5, null, 4);
+        check(5, Lift.NO_FLOOR, 4);
+
+        callbs.clear();
+        gobs.clear();
+        gobs.set(3);
+        gobs.set(9);
+        callbs.set(2);
+        callbs.set(7);
+        check(5, Lift.NO_FLOOR, 7);
+        gobs.set(4);
+        check(5, Lift.NO_FLOOR, 4);
+    }
+
+    @Test
+    public void testSimpleNearest_Basements()
+    {
+        moveStrategy = MoveStrategies.SIMPLE_NEAREST;
+        callbs = new FloorSet(-3, 200);
+        gobs = new FloorSet(-3, 200);
+
+        callbs.set(-2);
+        check(1, Lift.NO_FLOOR, -2);
+        gobs.set(150);
+        check(1, Lift.NO_FLOOR, -2);
+        check(100, Lift.NO_FLOOR, 150);
+        check(0, 150, 150);
+    }
+
+    @Test
+    public void testLook()
+    {
+        moveStrategy = MoveStrategies.LOOK;
+        FloorSet upbs = new FloorSet(1, 10);
+        FloorSet downbs = new FloorSet(1, 10);
+        gobs.clear();
+
+        checkDirectional(upbs, downbs, 5, Lift.Direction.UP, Lift.NO_FLOOR);
+
+        // без направления - ближайший
+        downbs.set(3);
+        upbs.set(8);
+        checkDirectional(upbs, downbs, 5, Lift.Direction.NONE, 3);
+
+        // вверх: попутный вызов вверх на 8-м, встречный вниз на 3-м ждет
+        checkDirectional(upbs, downbs, 5, Lift.Direction.UP, 8);
+        gobs.set(7);
+        checkDirectional(upbs, downbs, 5, Lift.Direction.UP, 7);
+
+        // вверх, но попутных нет: едем к самому верхнему вызову вниз
+        gobs.clear();
+        upbs.clear();
+        downbs.set(9);
+        checkDirectional(upbs, downbs, 5, Lift.Direction.UP, 9);
+
+        // вверху никого - разворот к ближайшей остановке вниз
+        downbs.clear(9);
+        checkDirectional(upbs, downbs, 5, Lift.Direction.UP, 3);
+
+        // вниз: вызов вверх на 4-м не попутный, вниз на 3-м - попутный
+        upbs.set(4);
+        checkDirectional(upbs, downbs, 5, Lift.Direction.DOWN, 3);
+        downbs.clear();
+        // попутных нет: к самому нижнему вызову вверх
+        upbs.set(2);
+        checkDirectional(upbs, downbs, 5, Lift.Direction.DOWN, 2);
+    }
+
+    @Test
+    public void testScan()
+    {
+        moveStrategy = MoveStrategies.SCAN;
+        FloorSet upbs = new FloorSet(1, 10);
+        FloorSet downbs = new FloorSet(1, 10);
+        gobs.clear();
+
+        checkDirectional(upbs, downbs, 5, Lift.Direction.UP, Lift.NO_FLOOR);
+
+        gobs.set(7);
+        checkDirectional(upbs, downbs, 5, Lift.Direction.UP, 7);
+
+        // впереди никого - сначала до крайнего этажа
+        gobs.clear();
+        gobs.set(2);
+        checkDirectional(upbs, downbs, 5, Lift.Direction.UP, 10);
+        checkDirectional(upbs, downbs, 10, Lift.Direction.UP, 2);
+
+        downbs.set(8);
+        checkDirectional(upbs, downbs, 5, Lift.Direction.UP, 10);
+    }
+
+    private void check(int current, int target, int expected)
+    {
+        Assert.assertEquals("Wrong target floor", expected,
+                moveStrategy.getTargetFloor(callbs, callbs, gobs, current, target, Lift.Direction.NONE));
     }
 
-    private void check(int current, Integer target, Integer expected)
+    private void checkDirectional(FloorSet upbs, FloorSet downbs, int current, Lift.Direction direction, int expected)
     {
         Assert.assertEquals("Wrong target floor", expected,
-                moveStrategy.getTargetFloor(callbs, gobs, current, target));
+                moveStrategy.getTargetFloor(upbs, downbs, gobs, current, Lift.NO_FLOOR, direction));
     }
 
 
@@ -0,0 +1,155 @@
+package ru.nekludov.chatfuel.lift.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ru.nekludov.chatfuel.lift.sim.VirtualTimeScheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ParkingStrategyTest
+{
+
+    static final int FLOORTIME = 3;
+    static final int OCTIME = 2;
+
+    // сутки из 1000 единиц: утро - первая половина, вечер - вторая
+    static final long DAY = 1000;
+
+    Lift.Config cfg = new Lift.Config()
+    {
+        @Override
+        public int getFloorCount()
+        {
+            return 10;
+        }
+
+        @Override
+        public int getFloorHeight()
+        {
+            return FLOORTIME;
+        }
+
+        @Override
+        public int getLiftSpeed()
+        {
+            return 1;
+        }
+
+        @Override
+        public long getOpenCloseTime()
+        {
+            return OCTIME;
+        }
+    };
+
+    VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+
+    ParkingStrategy parking = new ParkingStrategy(cfg, MoveStrategies.LOOK, scheduler::now, DAY, 2, 10 * DAY);
+
+    FloorSet empty = new FloorSet(1, 10);
+
+    @Test
+    public void testNoHistory_StaysIdle()
+    {
+        Assert.assertEquals(Lift.NO_FLOOR, parking.getParkingFloor());
+        Assert.assertEquals(Lift.NO_FLOOR,
+                parking.getTargetFloor(empty, empty, empty, 5, Lift.NO_FLOOR, Lift.Direction.NONE));
+    }
+
+    @Test
+    public void testParkingFloorByTimeOfDay()
+    {
+        callAt(100, 1, 1, 1, 7);
+        callAt(600, 9, 9, 3);
+
+        scheduler.runUntil(DAY + 200);
+        Assert.assertEquals(1, parking.getParkingFloor());
+        Assert.assertEquals(1, parking.getTargetFloor(empty, empty, empty, 5, Lift.NO_FLOOR, Lift.Direction.NONE));
+        // уже на месте
+        Assert.assertEquals(Lift.NO_FLOOR,
+                parking.getTargetFloor(empty, empty, empty, 1, Lift.NO_FLOOR, Lift.Direction.NONE));
+
+        scheduler.runUntil(DAY + 700);
+        Assert.assertEquals(9, parking.getParkingFloor());
+    }
+
+    @Test
+    public void testRecentCallsOutweighOld()
+    {
+        callAt(100, 2, 2, 2);
+        // через 3 периода полураспада вес старых вызовов - 3/8
+        callAt(30 * DAY + 100, 6);
+        Assert.assertEquals(6, parking.getParkingFloor());
+    }
+
+    @Test
+    public void testRequestsCancelParking()
+    {
+        callAt(100, 1, 1);
+        Assert.assertEquals(1, parking.getTargetFloor(empty, empty, empty, 5, Lift.NO_FLOOR, Lift.Direction.NONE));
+        FloorSet calls = new FloorSet(1, 10);
+        calls.set(8);
+        // лифт едет вниз на парковку, появился вызов с 8-го этажа
+        Assert.assertEquals(8, parking.getTargetFloor(calls, calls, empty, 5, 1, Lift.Direction.DOWN));
+    }
+
+    @Test
+    public void testOppositeCallOnParkingWayIsServed()
+    {
+        callAt(100, 1, 1, 1);
+        List<String> opened = new ArrayList<>();
+        Lift[] lifts = new Lift[1];
+        Lift lift = lifts[0] = new Lift(cfg, parking, scheduler, new CompositeListener(parking, new Lift.Listener()
+        {
+            @Override
+            public void onDoorOpened()
+            {
+                opened.add(lifts[0].getCurrentFloor() + "@" + scheduler.now());
+            }
+
+            @Override
+            public void onDoorClosed()
+            {
+            }
+
+            @Override
+            public void onEnterFloor(int floor)
+            {
+            }
+        }));
+        lift.go(8);
+        // на 8-м этаже лифт в 121, двери закрываются в 123, дальше едет на парковку вниз
+        scheduler.runUntil(133);
+        Assert.assertEquals(5, lift.getCurrentFloor());
+        // вызов вверх на этаже, к которому лифт подъезжает
+        lift.call(4, Lift.Direction.UP);
+        scheduler.runAll();
+        // встречный вызов обслужен сразу, а не после парковки
+        Assert.assertEquals(Arrays.asList("8@121", "4@135"), opened);
+        Assert.assertEquals(1, lift.getCurrentFloor());
+    }
+
+    @Test
+    public void testIdleLiftParks()
+    {
+        Lift lift = new Lift(cfg, parking, scheduler, parking);
+        scheduler.runUntil(100);
+        // утром лифт вызывают с 4-го этажа
+        lift.call(4);
+        scheduler.runAll();
+        lift.go(8);
+        scheduler.runAll();
+        Assert.assertEquals(4, lift.getCurrentFloor());
+    }
+
+    private void callAt(long time, int... floors)
+    {
+        scheduler.runUntil(time);
+        for (int floor : floors) {
+            parking.onCall(floor, Lift.Direction.NONE);
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package ru.nekludov.chatfuel.lift.net;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CommandParserTest
+{
+
+    List<String> commands = new ArrayList<>();
+
+    CommandParser parser = new CommandParser(new CommandHandler()
+    {
+        @Override
+        public void call(int floor, Lift.Direction direction)
+        {
+            commands.add("call " + floor + " " + direction);
+        }
+
+        @Override
+        public void go(int floor)
+        {
+            commands.add("go " + floor);
+        }
+    }, () -> commands.add("error"));
+
+    void parse(String text)
+    {
+        parser.parse(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void testCommands()
+    {
+        parse("q1\nu3\r\nd-2\n\nw10\n");
+        Assert.assertEquals("[call 1 NONE, call 3 UP, call -2 DOWN, go 10]", commands.toString());
+    }
+
+    @Test
+    public void testCommandSplitAcrossBuffers()
+    {
+        parse("w");
+        parse("1");
+        parse("2");
+        Assert.assertTrue(commands.isEmpty());
+        parse("\nq");
+        parse("7\n");
+        Assert.assertEquals("[go 12, call 7 NONE]", commands.toString());
+    }
+
+    @Test
+    public void testInvalidLinesAreSkipped()
+    {
+        parse("x5\nq\nq-\nw1a\nq1234567890\nexit\nw4\n");
+        Assert.assertEquals("[error, error, error, error, error, error, go 4]", commands.toString());
+    }
+
+}
@@ -0,0 +1,134 @@
+package ru.nekludov.chatfuel.lift.net;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import ru.nekludov.chatfuel.lift.model.Lift;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class LiftServerTest
+{
+
+    BlockingQueue<String> commands = new LinkedBlockingQueue<>();
+
+    List<Throwable> errors = new ArrayList<>();
+
+    LiftServer server;
+
+    List<Socket> clients = new ArrayList<>();
+
+    LiftServer startServer() throws Exception
+    {
+        server = new LiftServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new CommandHandler()
+        {
+            @Override
+            public void call(int floor, Lift.Direction direction)
+            {
+                commands.add("call " + floor + " " + direction);
+            }
+
+            @Override
+            public void go(int floor)
+            {
+                commands.add("go " + floor);
+            }
+        }, errors::add);
+        server.start();
+        return server;
+    }
+
+    Socket connect() throws Exception
+    {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(5000);
+        clients.add(socket);
+        return socket;
+    }
+
+    static void send(Socket socket, String text) throws Exception
+    {
+        OutputStream out = socket.getOutputStream();
+        out.write(text.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    static BufferedReader reader(Socket socket) throws Exception
+    {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        for (Socket client : clients) {
+            client.close();
+        }
+        if (server != null) {
+            server.stop();
+        }
+        Assert.assertTrue(errors.toString(), errors.isEmpty());
+    }
+
+    @Test
+    public void testCommandsAreRouted() throws Exception
+    {
+        startServer();
+        Socket client = connect();
+        send(client, "q5\nw1");
+        send(client, "2\nd-1\n");
+
+        Assert.assertEquals("call 5 NONE", commands.poll(5, TimeUnit.SECONDS));
+        Assert.assertEquals("go 12", commands.poll(5, TimeUnit.SECONDS));
+        Assert.assertEquals("call -1 DOWN", commands.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testInvalidCommandIsAnswered() throws Exception
+    {
+        startServer();
+        Socket client = connect();
+        BufferedReader in = reader(client);
+        send(client, "hello\nq3\n");
+
+        Assert.assertEquals("ERROR", in.readLine());
+        Assert.assertEquals("call 3 NONE", commands.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testEventsAreStreamedToAllClients() throws Exception
+    {
+        startServer();
+        BufferedReader first = reader(connect());
+        BufferedReader second = reader(connect());
+        // дожидаемся, пока сервер примет оба соединения
+        send(clients.get(0), "q1\n");
+        send(clients.get(1), "q1\n");
+        commands.poll(5, TimeUnit.SECONDS);
+        commands.poll(5, TimeUnit.SECONDS);
+
+        server.onEnterFloor(2);
+        server.onEnterFloor(-10);
+        server.onDoorOpened();
+        server.onDoorClosed();
+
+        for (BufferedReader in : new BufferedReader[] {first, second}) {
+            Assert.assertEquals("ENTER FLOOR 2", in.readLine());
+            Assert.assertEquals("ENTER FLOOR -10", in.readLine());
+            Assert.assertEquals("DOOR OPEN", in.readLine());
+            Assert.assertEquals("DOOR CLOSE", in.readLine());
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+package ru.nekludov.chatfuel.lift.sim;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.nekludov.chatfuel.lift.model.Lift;
+import ru.nekludov.chatfuel.lift.model.MoveStrategies;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TraceReplayTest
+{
+
+    static final int FLOORTIME = 2;
+    static final int OCTIME = 5;
+
+    static final String TRACE = "# time,command\n"
+            + "0,q5\r\n"
+            + "8,w9\n"
+            + "\n"
+            + "10,q-1\n"
+            + "10,u3\n"
+            + "40,w42\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    Lift.Config cfg = new Lift.Config()
+    {
+        @Override
+        public int getFloorCount()
+        {
+            return 12;
+        }
+
+        @Override
+        public int getLowestFloor()
+        {
+            return -1;
+        }
+
+        @Override
+        public int getFloorHeight()
+        {
+            return FLOORTIME;
+        }
+
+        @Override
+        public int getLiftSpeed()
+        {
+            return 1;
+        }
+
+        @Override
+        public long getOpenCloseTime()
+        {
+            return OCTIME;
+        }
+    };
+
+    List<String> events = new ArrayList<>();
+
+    Path write(String text) throws IOException
+    {
+        Path file = folder.newFile().toPath();
+        Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    @Test
+    public void testReadText() throws IOException
+    {
+        Assert.assertEquals(5, TraceReader.read(write(TRACE), (t, c, f) -> events.add("" + t + c + f)));
+        Assert.assertEquals("[0q5, 8w9, 10q-1, 10u3, 40w42]", events.toString());
+    }
+
+    @Test
+    public void testSmallWindows() throws IOException
+    {
+        // строки попадают на границы окон отображения
+        for (int window = 16; window < 20; window++) {
+            events.clear();
+            TraceReader.read(write(TRACE + "41,q1"), (t, c, f) -> events.add("" + t + c + f), window);
+            Assert.assertEquals("[0q5, 8w9, 10q-1, 10u3, 40w42, 41q1]", events.toString());
+        }
+    }
+
+    @Test
+    public void testBinary() throws IOException
+    {
+        Path binary = folder.newFile().toPath();
+        Assert.assertEquals(5, TraceReader.convertToBinary(write(TRACE), binary));
+        Assert.assertEquals(4 + 5 * 16, Files.size(binary));
+        TraceReader.read(binary, (t, c, f) -> events.add("" + t + c + f), 40);
+        Assert.assertEquals("[0q5, 8w9, 10q-1, 10u3, 40w42]", events.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadLine() throws IOException
+    {
+        TraceReader.read(write("0,q5\n5,x5\n"), (t, c, f) -> events.add("" + t + c + f));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTimeGoesBack() throws IOException
+    {
+        TraceReader.read(write("5,q5\n4,q4\n"), (t, c, f) -> events.add("" + t + c + f));
+    }
+
+    @Test
+    public void testReplay() throws IOException
+    {
+        TraceReplay replay = new TraceReplay(cfg, MoveStrategies.LOOK);
+        replay.replay(write(TRACE));
+
+        Assert.assertEquals(5, replay.getEvents());
+        // этажа 42 в доме нет
+        Assert.assertEquals(1, replay.getRejected());
+        // вызов "вверх" с 3-го не обслуживается по пути вниз к -1, только после разворота
+        Assert.assertEquals(3, replay.getMetrics().getWaitCount());
+        Assert.assertEquals(4 * FLOORTIME, replay.getMetrics().getWaitTime().getValueAtPercentile(0));
+        Assert.assertEquals(1, replay.getMetrics().getRideCount());
+        Assert.assertEquals(replay.getFinishTime(), 4 * FLOORTIME + OCTIME + 4 * FLOORTIME + OCTIME
+                + 10 * FLOORTIME + OCTIME + 4 * FLOORTIME + OCTIME);
+    }
+
+}
@@ -0,0 +1,96 @@
+package ru.nekludov.chatfuel.lift.sim;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class VirtualTimeSchedulerTest
+{
+
+    VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+
+    List<String> log = new ArrayList<>();
+
+    @Test
+    public void testOrderByTime()
+    {
+        scheduler.schedule(30, () -> log.add("c" + scheduler.now()));
+        scheduler.schedule(10, () -> log.add("a" + scheduler.now()));
+        scheduler.schedule(20, () -> log.add("b" + scheduler.now()));
+
+        Assert.assertEquals(3, scheduler.runAll());
+        Assert.assertEquals(Arrays.asList("a10", "b20", "c30"), log);
+        Assert.assertEquals(30, scheduler.now());
+    }
+
+    @Test
+    public void testSameTimeKeepsScheduleOrder()
+    {
+        for (int i = 0; i < 100; i++) {
+            int n = i;
+            scheduler.schedule(5, () -> log.add(String.valueOf(n)));
+        }
+        scheduler.runAll();
+
+        Assert.assertEquals(100, log.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(String.valueOf(i), log.get(i));
+        }
+    }
+
+    @Test
+    public void testNestedScheduling()
+    {
+        scheduler.schedule(10, () -> {
+            log.add("outer" + scheduler.now());
+            scheduler.schedule(0, () -> log.add("zero" + scheduler.now()));
+            scheduler.schedule(5, () -> log.add("inner" + scheduler.now()));
+        });
+        scheduler.schedule(10, () -> log.add("second" + scheduler.now()));
+        scheduler.runAll();
+
+        Assert.assertEquals(Arrays.asList("outer10", "second10", "zero10", "inner15"), log);
+    }
+
+    @Test
+    public void testRunUntil()
+    {
+        scheduler.schedule(10, () -> log.add("a"));
+        scheduler.schedule(20, () -> log.add("b"));
+
+        Assert.assertEquals(1, scheduler.runUntil(15));
+        Assert.assertEquals(15, scheduler.now());
+        Assert.assertEquals(1, scheduler.size());
+        Assert.assertEquals(20, scheduler.nextTime());
+
+        Assert.assertEquals(1, scheduler.runUntil(20));
+        Assert.assertTrue(scheduler.isEmpty());
+        Assert.assertEquals(Arrays.asList("a", "b"), log);
+    }
+
+    @Test
+    public void testRandomOrder()
+    {
+        Random random = new Random(1);
+        long[] last = {-1};
+        for (int i = 0; i < 10000; i++) {
+            scheduler.schedule(random.nextInt(1000), () -> {
+                Assert.assertTrue(scheduler.now() >= last[0]);
+                last[0] = scheduler.now();
+            });
+        }
+        Assert.assertEquals(10000, scheduler.runAll());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPastTime()
+    {
+        scheduler.runUntil(10);
+        scheduler.scheduleAt(5, () -> {});
+    }
+
+}